@@ -0,0 +1,220 @@
+package org.obapanel.jedis.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Combiner of increments on redis keys, that sends many increments with few commands
+ *
+ * The increments on the same key that arrive within a short window are summed, and sent as only one
+ * INCRBY; all the keys of the window are sent in one pipelined call. The window is closed before
+ * if the number of increments reaches the maximum batch size.
+ * Every caller gets a future that is completed with the value of the key after the combined increment
+ * (the same for all the callers of the key in the window), or with the error of redis.
+ *
+ * CAUTION: a failed future does not mean that the increment has not been applied: the error may arrive
+ * after redis has executed the commands (e.g. a read timeout or a lost connection).
+ * Do not retry a failed increment blindly, or it may be applied twice.
+ *
+ * There is only one combiner for every pool in the JVM, shared by all its users, so it can not be
+ * configured nor closed once created; its configuration is given the first time it is requested.
+ * Its thread stops when there is nothing to send, and starts again with the next increment.
+ * The pools are held weakly, and the combiners of closed pools are discarded; so a combiner does not keep
+ * its pool alive, and the increments sent after the pool is closed fail
+ *
+ * CAUTION: futures are completed from the combiner thread, dependent actions must be quick or
+ * be executed with other executor
+ */
+public final class JedisWriteCombiner {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisWriteCombiner.class);
+
+    public static final long DEFAULT_WINDOW_MILIS = 2L;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    private static final long THREAD_KEEP_ALIVE_MILIS = 60_000L;
+
+    // JedisPool does not override equals, so the keys are compared by identity
+    private static final Map<JedisPool, JedisWriteCombiner> INSTANCES = new WeakHashMap<>();
+
+    /**
+     * Returns the combiner of the pool, creating it the first time with the default configuration
+     * If it already exists, it is returned with its configuration
+     * @param jedisPool Pool of connections
+     * @return shared combiner
+     */
+    public static synchronized JedisWriteCombiner forPool(JedisPool jedisPool) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        removeClosedPools();
+        return INSTANCES.computeIfAbsent(jedisPool,
+                k -> new JedisWriteCombiner(jedisPool, DEFAULT_WINDOW_MILIS, DEFAULT_MAX_BATCH_SIZE));
+    }
+
+    /**
+     * Returns the combiner of the pool, creating it the first time with the given configuration
+     * If it already exists, the configuration must be the same
+     * @param jedisPool Pool of connections
+     * @param windowMilis maximum time in miliseconds that an increment waits to be combined with others
+     * @param maxBatchSize number of increments that closes the window and sends them at the moment
+     * @return shared combiner
+     */
+    public static synchronized JedisWriteCombiner forPool(JedisPool jedisPool, long windowMilis, int maxBatchSize) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        if (windowMilis <= 0) throw new IllegalArgumentException("Window time must be more than zero");
+        if (maxBatchSize <= 0) throw new IllegalArgumentException("Batch size must be more than zero");
+        removeClosedPools();
+        JedisWriteCombiner jedisWriteCombiner = INSTANCES.computeIfAbsent(jedisPool,
+                k -> new JedisWriteCombiner(jedisPool, windowMilis, maxBatchSize));
+        if (jedisWriteCombiner.windowMilis != windowMilis || jedisWriteCombiner.maxBatchSize != maxBatchSize) {
+            throw new IllegalStateException("JedisWriteCombiner of the pool already exists with other configuration");
+        }
+        return jedisWriteCombiner;
+    }
+
+    /**
+     * Discards the combiners of closed pools, the pending increments are sent (and fail) before its thread stops
+     */
+    private static void removeClosedPools() {
+        Iterator<Map.Entry<JedisPool, JedisWriteCombiner>> iterator = INSTANCES.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<JedisPool, JedisWriteCombiner> entry = iterator.next();
+            if (entry.getKey().isClosed()) {
+                LOG.debug("removeClosedPools combiner removed");
+                entry.getValue().scheduledExecutorService.shutdown();
+                iterator.remove();
+            }
+        }
+    }
+
+    private final WeakReference<JedisPool> jedisPoolReference;
+    private final long windowMilis;
+    private final int maxBatchSize;
+    private final ScheduledThreadPoolExecutor scheduledExecutorService;
+    private Map<String, PendingIncrement> pendingIncrements = new LinkedHashMap<>();
+    private int pendingOperations = 0;
+    private boolean flushScheduled = false;
+    private boolean immediateFlushQueued = false;
+
+    private JedisWriteCombiner(JedisPool jedisPool, long windowMilis, int maxBatchSize) {
+        this.jedisPoolReference = new WeakReference<>(jedisPool);
+        this.windowMilis = windowMilis;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduledExecutorService = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName("JedisWriteCombiner_thread");
+            return thread;
+        });
+        this.scheduledExecutorService.setKeepAliveTime(THREAD_KEEP_ALIVE_MILIS, TimeUnit.MILLISECONDS);
+        this.scheduledExecutorService.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Maximum time that an increment waits to be combined with others
+     * @return time in miliseconds
+     */
+    public long getWindowMilis() {
+        return windowMilis;
+    }
+
+    /**
+     * Number of increments that closes the window and sends them at the moment
+     * @return batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Adds an increment (or decrement, if negative) to the key, to be sent with the others of the window
+     * @param key key to increment
+     * @param delta value to add
+     * @return future with the value of the key after the combined increment, see the caution about errors
+     */
+    public synchronized CompletableFuture<Long> incrBy(String key, long delta) {
+        if (key == null || key.trim().isEmpty()) throw new IllegalArgumentException("Key can not be null nor empty nor whitespace");
+        PendingIncrement pendingIncrement = pendingIncrements.computeIfAbsent(key, k -> new PendingIncrement());
+        pendingIncrement.delta += delta;
+        pendingOperations++;
+        if (pendingOperations >= maxBatchSize) {
+            if (!immediateFlushQueued) {
+                scheduledExecutorService.execute(this::flush);
+                immediateFlushQueued = true;
+                flushScheduled = true;
+            }
+        } else if (!flushScheduled) {
+            scheduledExecutorService.schedule(this::flush, windowMilis, TimeUnit.MILLISECONDS);
+            flushScheduled = true;
+        }
+        return pendingIncrement.future.thenApply(v -> v);
+    }
+
+    /**
+     * Number of increments waiting to be sent
+     * @return pending increments
+     */
+    public synchronized int pendingOperations() {
+        return pendingOperations;
+    }
+
+    /**
+     * Sends all the pending increments now, with one pipelined call
+     * It can be called before the application stops, so no increment waits for the window
+     */
+    public void flush() {
+        Map<String, PendingIncrement> toSend;
+        synchronized (this) {
+            toSend = pendingIncrements;
+            pendingIncrements = new LinkedHashMap<>();
+            pendingOperations = 0;
+            flushScheduled = false;
+            immediateFlushQueued = false;
+        }
+        if (toSend.isEmpty()) {
+            return;
+        }
+        List<PendingIncrement> increments = new ArrayList<>(toSend.values());
+        try {
+            JedisPool jedisPool = jedisPoolReference.get();
+            if (jedisPool == null || jedisPool.isClosed()) {
+                throw new IllegalStateException("JedisPool of the combiner is closed");
+            }
+            List<Response<Long>> responses = new ArrayList<>(toSend.size());
+            try (Jedis jedis = jedisPool.getResource()) {
+                Pipeline pipeline = jedis.pipelined();
+                for (Map.Entry<String, PendingIncrement> entry : toSend.entrySet()) {
+                    responses.add(pipeline.incrBy(entry.getKey(), entry.getValue().delta));
+                }
+                pipeline.sync();
+            }
+            LOG.debug("flush keys {}", toSend.size());
+            for (int i = 0; i < increments.size(); i++) {
+                increments.get(i).future.complete(responses.get(i).get());
+            }
+        } catch (RuntimeException e) {
+            LOG.error("flush error sending {} keys", toSend.size(), e);
+            increments.forEach(pendingIncrement -> pendingIncrement.future.completeExceptionally(e));
+        }
+    }
+
+    private static class PendingIncrement {
+        private long delta = 0L;
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+    }
+
+}
@@ -0,0 +1,253 @@
+package org.obapanel.jedis.common;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Subscriber to redis channels that uses only one connection and one thread
+ * for all the channels and listeners of a pool in the JVM
+ *
+ * Every class that needs to wait for a message should use this subscriber
+ * instead of using its own connection and thread.
+ * Channels are subscribed when the first listener is added and unsubscribed when the last one is removed.
+ * If the connection is lost, it is reopened and all the channels are subscribed again
+ *
+ * CAUTION: listeners are called from the subscriber thread, they must be quick and never block
+ * (they should only notify other threads)
+ * Messages published before the subscription is confirmed are lost, see awaitSubscription
+ */
+public final class SharedJedisSubscriber {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SharedJedisSubscriber.class);
+
+    public static final String CONTROL_CHANNEL = "SharedJedisSubscriber:control";
+
+    private static final long RECONNECT_WAIT_MILLIS = 1000L;
+
+    private static final Map<JedisPool, SharedJedisSubscriber> INSTANCES = new IdentityHashMap<>();
+
+    /**
+     * Returns the shared subscriber of the pool, creating it the first time
+     * @param jedisPool Pool of connections
+     * @return shared subscriber
+     */
+    public static synchronized SharedJedisSubscriber forPool(JedisPool jedisPool) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        return INSTANCES.computeIfAbsent(jedisPool, SharedJedisSubscriber::new);
+    }
+
+    private final JedisPool jedisPool;
+    private final Map<String, Set<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+    private final Set<String> confirmedChannels = ConcurrentHashMap.newKeySet();
+    private InternalPubSub pubSub;
+    private Thread thread;
+    private boolean ready = false;
+    private boolean closed = false;
+
+    private SharedJedisSubscriber(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    /**
+     * Adds a listener to a channel, subscribing the channel if it is the first listener
+     * @param channel Channel name
+     * @param listener Listener that will receive the messages
+     */
+    public synchronized void subscribe(String channel, Consumer<String> listener) {
+        if (closed) throw new IllegalStateException("SharedJedisSubscriber is closed");
+        Set<Consumer<String>> channelListeners = listeners.computeIfAbsent(channel, k -> new CopyOnWriteArraySet<>());
+        boolean newChannel = channelListeners.isEmpty();
+        channelListeners.add(listener);
+        if (thread == null) {
+            startThread();
+        } else if (newChannel && ready) {
+            pubSub.subscribe(channel);
+        }
+    }
+
+    /**
+     * Removes a listener of a channel, unsubscribing the channel if it was the last listener
+     * @param channel Channel name
+     * @param listener Listener to remove
+     */
+    public synchronized void unsubscribe(String channel, Consumer<String> listener) {
+        Set<Consumer<String>> channelListeners = listeners.get(channel);
+        if (channelListeners != null && channelListeners.remove(listener) && channelListeners.isEmpty()) {
+            listeners.remove(channel);
+            confirmedChannels.remove(channel);
+            if (ready) {
+                pubSub.unsubscribe(channel);
+            }
+        }
+    }
+
+    /**
+     * Waits until redis has confirmed the subscription to the channel
+     * After this, no message on the channel will be lost
+     * @param channel Channel name
+     * @param timeout Maximum time to wait
+     * @param unit Unit of timeout
+     * @return true if subscription is confirmed, false if the time has passed
+     * @throws InterruptedException if interrupted
+     */
+    public synchronized boolean awaitSubscription(String channel, long timeout, TimeUnit unit) throws InterruptedException {
+        long timeLimit = System.currentTimeMillis() + unit.toMillis(timeout);
+        long remaining = unit.toMillis(timeout);
+        while (!confirmedChannels.contains(channel) && remaining > 0) {
+            wait(remaining);
+            remaining = timeLimit - System.currentTimeMillis();
+        }
+        return confirmedChannels.contains(channel);
+    }
+
+    /**
+     * Checks if redis has confirmed the subscription to the channel
+     * @param channel Channel name
+     * @return true if subscribed
+     */
+    public boolean isSubscribed(String channel) {
+        return confirmedChannels.contains(channel);
+    }
+
+    /**
+     * Stops the subscriber and releases its connection
+     * Listeners will not receive more messages
+     */
+    public void close() {
+        synchronized (SharedJedisSubscriber.class) {
+            INSTANCES.remove(jedisPool);
+        }
+        synchronized (this) {
+            closed = true;
+            listeners.clear();
+            confirmedChannels.clear();
+            if (ready) {
+                pubSub.unsubscribe();
+            }
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private void startThread() {
+        thread = new Thread(this::runSubscription);
+        thread.setDaemon(true);
+        thread.setName("SharedJedisSubscriber_thread");
+        thread.start();
+    }
+
+    /**
+     * Subscriber thread loop, it will be blocked into the subscription
+     * and it will reconnect if the connection is lost
+     */
+    private void runSubscription() {
+        while (isRunning()) {
+            List<String> channels = new ArrayList<>();
+            InternalPubSub currentPubSub = new InternalPubSub();
+            synchronized (this) {
+                pubSub = currentPubSub;
+                channels.add(CONTROL_CHANNEL);
+                channels.addAll(listeners.keySet());
+                currentPubSub.initialChannels.addAll(channels);
+            }
+            try (Jedis jedis = jedisPool.getResource()) {
+                LOG.debug("runSubscription subscribing {} channels", channels.size());
+                jedis.subscribe(currentPubSub, channels.toArray(new String[0]));
+            } catch (RuntimeException e) {
+                LOG.error("runSubscription error on subscription, retrying", e);
+            }
+            synchronized (this) {
+                ready = false;
+                confirmedChannels.clear();
+                notifyAll();
+            }
+            if (isRunning()) {
+                try {
+                    Thread.sleep(RECONNECT_WAIT_MILLIS);
+                } catch (InterruptedException e) {
+                    LOG.debug("runSubscription interrupted");
+                }
+            }
+        }
+        LOG.debug("runSubscription ended");
+    }
+
+    private synchronized boolean isRunning() {
+        return !closed && !jedisPool.isClosed();
+    }
+
+    /**
+     * Executed when redis confirms the control channel, the first one
+     * The channels added while the connection was being made are subscribed now
+     */
+    private synchronized void onControlSubscribed(InternalPubSub currentPubSub) {
+        if (closed) {
+            currentPubSub.unsubscribe();
+            return;
+        }
+        ready = true;
+        List<String> pendingChannels = new ArrayList<>();
+        for (String channel : listeners.keySet()) {
+            if (!currentPubSub.initialChannels.contains(channel)) {
+                pendingChannels.add(channel);
+            }
+        }
+        if (!pendingChannels.isEmpty()) {
+            currentPubSub.subscribe(pendingChannels.toArray(new String[0]));
+        }
+    }
+
+    private synchronized void onChannelSubscribed(String channel) {
+        if (listeners.containsKey(channel)) {
+            confirmedChannels.add(channel);
+            notifyAll();
+        }
+    }
+
+    private void onChannelMessage(String channel, String message) {
+        Set<Consumer<String>> channelListeners = listeners.get(channel);
+        if (channelListeners != null) {
+            for (Consumer<String> listener : channelListeners) {
+                try {
+                    listener.accept(message);
+                } catch (RuntimeException e) {
+                    LOG.error("onChannelMessage error on listener of channel {}", channel, e);
+                }
+            }
+        }
+    }
+
+    private class InternalPubSub extends JedisPubSub {
+
+        private final Set<String> initialChannels = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void onSubscribe(String channel, int subscribedChannels) {
+            if (CONTROL_CHANNEL.equals(channel)) {
+                onControlSubscribed(this);
+            } else {
+                onChannelSubscribed(channel);
+            }
+        }
+
+        @Override
+        public void onMessage(String channel, String message) {
+            onChannelMessage(channel, message);
+        }
+    }
+
+}
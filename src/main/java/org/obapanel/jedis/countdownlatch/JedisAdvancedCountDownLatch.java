@@ -25,6 +25,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
  *
  * For this cause, I prefer the JedisCountDownLatch implementation with polling.
  * But this is here for anyone to use or refactor
+ *
+ * See JedisNotifiedCountDownLatch, that waits for the message with a shared subscriber,
+ * with timeout and interruption as usual
  */
 @Deprecated
 public class JedisAdvancedCountDownLatch {
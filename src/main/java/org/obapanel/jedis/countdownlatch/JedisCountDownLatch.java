@@ -1,10 +1,14 @@
 package org.obapanel.jedis.countdownlatch;
 
+import org.obapanel.jedis.common.JedisWriteCombiner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.params.SetParams;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -17,6 +21,9 @@ import java.util.concurrent.TimeUnit;
  * The first created CountDownLatch assings the intial count to the shared value
  *
  * In this implementation, a thread that is waiting checks periodically the value of the counter in redis (polling)
+ * To be notified without a waiting thread, use onZero or toCompletableFuture with a watcher pool
+ * With write combining, the countdowns of many threads with countDownAsync are sent together
+ * (see JedisWriteCombiner)
  *
  *
  */
@@ -29,6 +36,8 @@ public class JedisCountDownLatch {
     private final Jedis jedis;
     private final String name;
     private int waitTimeMilis = 150;
+    private JedisCountDownLatchWatcher watcher;
+    private JedisWriteCombiner writeCombiner;
 
 
     /**
@@ -54,6 +63,28 @@ public class JedisCountDownLatch {
         return this;
     }
 
+    /**
+     * Sets the pool whose shared watcher will be used by onZero and toCompletableFuture
+     * @param jedisPool pool of connections
+     * @return this
+     */
+    public JedisCountDownLatch withWatcherPool(JedisPool jedisPool){
+        this.watcher = JedisCountDownLatchWatcher.forPool(jedisPool);
+        return this;
+    }
+
+    /**
+     * Sets the pool whose shared write combiner will be used by countDownAsync
+     * The combiner is created with the default configuration if it does not exist,
+     * use JedisWriteCombiner.forPool before to configure it
+     * @param jedisPool pool of connections
+     * @return this
+     */
+    public JedisCountDownLatch withWriteCombining(JedisPool jedisPool){
+        this.writeCombiner = JedisWriteCombiner.forPool(jedisPool);
+        return this;
+    }
+
     /**
      * Checks if count is more than zero and creates the shared value if doesn't exists
      * @param count Initial count
@@ -65,6 +96,22 @@ public class JedisCountDownLatch {
         jedis.set(name, String.valueOf(count), new SetParams().nx());
     }
 
+    /**
+     * Returns the countdownlatch name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the connection of the countdownlatch
+     * @return jedis
+     */
+    Jedis getJedis() {
+        return jedis;
+    }
+
     /**
      * Wait until interrupted or shared value reaches zero
      * @throws InterruptedException if interrupted
@@ -96,6 +143,29 @@ public class JedisCountDownLatch {
     }
 
 
+    /**
+     * Returns a future that will be completed when the shared value reaches zero
+     * No thread waits for it, the shared watcher of the pool checks the value
+     * @return future
+     */
+    public CompletableFuture<Void> toCompletableFuture() {
+        if (watcher == null) {
+            throw new IllegalStateException("No watcher pool on countdownlatch " + name + ", use withWatcherPool");
+        }
+        return watcher.watch(name);
+    }
+
+    /**
+     * Executes the action when the shared value reaches zero
+     * No thread waits for it, the shared watcher of the pool checks the value
+     * @param action action to execute
+     * @param executor executor of the action
+     * @return future of the action
+     */
+    public CompletableFuture<Void> onZero(Runnable action, Executor executor) {
+        return toCompletableFuture().thenRunAsync(action, executor);
+    }
+
     /**
      * Decreases by one unit the share value
      * @return the current value, after operation
@@ -106,6 +176,19 @@ public class JedisCountDownLatch {
         return value != null ? value : -1;
     }
 
+    /**
+     * Decreases by one unit the share value, combined with other countdowns if write combining is set
+     * Without write combining, the value is decreased at the moment
+     * If the future fails, the value may have been decreased or not, do not count down again blindly
+     * @return future with the value after the operation (after all the combined countdowns)
+     */
+    public CompletableFuture<Long> countDownAsync() {
+        if (writeCombiner == null) {
+            return CompletableFuture.completedFuture(countDown());
+        }
+        return writeCombiner.incrBy(name, -1L);
+    }
+
 
     /**
      * Get the current shared value, or -1 if it doen't exists
@@ -0,0 +1,117 @@
+package org.obapanel.jedis.countdownlatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Utils to wait on many JedisCountDownLatch at the same time
+ *
+ * Instead of waiting on every latch one after another, all the latches are checked with only one MGET
+ * every wait time; so the wait lasts as the slowest latch and not the sum of all of them.
+ * The connection of the first latch is used for the reads
+ */
+public final class JedisCountDownLatchUtils {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisCountDownLatchUtils.class);
+
+    public static final int DEFAULT_WAIT_TIME_MILIS = 150;
+
+    private JedisCountDownLatchUtils() {
+        // Only static
+    }
+
+    /**
+     * Waits until all the latches reach zero or time passes
+     * @param latches latches to wait
+     * @param timeout Maximim time to wait
+     * @param unit wait time unit
+     * @return the latches that have reached zero, all of them if not timeout
+     * @throws InterruptedException if interrupted
+     */
+    public static List<JedisCountDownLatch> awaitAll(List<JedisCountDownLatch> latches, long timeout, TimeUnit unit) throws InterruptedException {
+        return awaitAll(latches, timeout, unit, DEFAULT_WAIT_TIME_MILIS);
+    }
+
+    /**
+     * Waits until all the latches reach zero or time passes
+     * @param latches latches to wait
+     * @param timeout Maximim time to wait
+     * @param unit wait time unit
+     * @param waitTimeMilis time between reads
+     * @return the latches that have reached zero, all of them if not timeout
+     * @throws InterruptedException if interrupted
+     */
+    public static List<JedisCountDownLatch> awaitAll(List<JedisCountDownLatch> latches, long timeout, TimeUnit unit, int waitTimeMilis) throws InterruptedException {
+        return await(latches, timeout, unit, waitTimeMilis, true);
+    }
+
+    /**
+     * Waits until any of the latches reaches zero or time passes
+     * @param latches latches to wait
+     * @param timeout Maximim time to wait
+     * @param unit wait time unit
+     * @return the latches that have reached zero, empty if timeout
+     * @throws InterruptedException if interrupted
+     */
+    public static List<JedisCountDownLatch> awaitAny(List<JedisCountDownLatch> latches, long timeout, TimeUnit unit) throws InterruptedException {
+        return awaitAny(latches, timeout, unit, DEFAULT_WAIT_TIME_MILIS);
+    }
+
+    /**
+     * Waits until any of the latches reaches zero or time passes
+     * @param latches latches to wait
+     * @param timeout Maximim time to wait
+     * @param unit wait time unit
+     * @param waitTimeMilis time between reads
+     * @return the latches that have reached zero, empty if timeout
+     * @throws InterruptedException if interrupted
+     */
+    public static List<JedisCountDownLatch> awaitAny(List<JedisCountDownLatch> latches, long timeout, TimeUnit unit, int waitTimeMilis) throws InterruptedException {
+        return await(latches, timeout, unit, waitTimeMilis, false);
+    }
+
+    private static List<JedisCountDownLatch> await(List<JedisCountDownLatch> latches, long timeout, TimeUnit unit, int waitTimeMilis, boolean all) throws InterruptedException {
+        if (latches == null || latches.isEmpty()) throw new IllegalArgumentException("Latches can not be null nor empty");
+        long timeStampToWait = System.currentTimeMillis() + unit.toMillis(timeout);
+        List<JedisCountDownLatch> reachedZero = reachedZero(latches);
+        while(!isDone(latches, reachedZero, all) && timeStampToWait > System.currentTimeMillis()) {
+            Thread.sleep(waitTimeMilis);
+            reachedZero = reachedZero(latches);
+        }
+        return reachedZero;
+    }
+
+    private static boolean isDone(List<JedisCountDownLatch> latches, List<JedisCountDownLatch> reachedZero, boolean all) {
+        return all ? reachedZero.size() == latches.size() : !reachedZero.isEmpty();
+    }
+
+    /**
+     * Reads all the latches with one call
+     * As JedisCountDownLatch.await, a latch that doesn't exist is considered at zero
+     * @param latches latches to read
+     * @return latches that have reached zero
+     */
+    private static List<JedisCountDownLatch> reachedZero(List<JedisCountDownLatch> latches) {
+        Jedis jedis = latches.get(0).getJedis();
+        String[] names = new String[latches.size()];
+        for (int i = 0; i < latches.size(); i++) {
+            names[i] = latches.get(i).getName();
+        }
+        List<String> values = jedis.mget(names);
+        List<JedisCountDownLatch> reachedZero = new ArrayList<>();
+        for (int i = 0; i < latches.size(); i++) {
+            String value = values.get(i);
+            if (value == null || value.isEmpty() || Long.parseLong(value) <= 0) {
+                reachedZero.add(latches.get(i));
+            }
+        }
+        LOG.debug("reachedZero {} of {}", reachedZero.size(), latches.size());
+        return reachedZero;
+    }
+
+}
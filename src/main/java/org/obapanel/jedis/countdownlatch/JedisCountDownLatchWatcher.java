@@ -0,0 +1,161 @@
+package org.obapanel.jedis.countdownlatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watcher of JedisCountDownLatch that completes futures when the latches reach zero, without waiting threads
+ *
+ * There is only one watcher (and one thread) for every pool in the JVM; it reads all the watched latches
+ * with only one MGET every wait time, and completes and forgets the ones that have reached zero.
+ * If there are no latches to watch, nothing is read.
+ * As JedisCountDownLatch.await, a latch that doesn't exist is considered at zero
+ *
+ * CAUTION: futures are completed from the watcher thread, dependent actions must be quick or
+ * be executed with other executor
+ */
+public final class JedisCountDownLatchWatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisCountDownLatchWatcher.class);
+
+    public static final long DEFAULT_WAIT_TIME_MILIS = 150L;
+
+    private static final Map<JedisPool, JedisCountDownLatchWatcher> INSTANCES = new IdentityHashMap<>();
+
+    /**
+     * Returns the watcher of the pool, creating it the first time
+     * @param jedisPool Pool of connections
+     * @return shared watcher
+     */
+    public static synchronized JedisCountDownLatchWatcher forPool(JedisPool jedisPool) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        return INSTANCES.computeIfAbsent(jedisPool, JedisCountDownLatchWatcher::new);
+    }
+
+    private final JedisPool jedisPool;
+    private final Map<String, CompletableFuture<Void>> watched = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduledExecutorService;
+    private ScheduledFuture<?> scheduledFuture;
+    private long waitTimeMilis = DEFAULT_WAIT_TIME_MILIS;
+    private boolean closed = false;
+
+    private JedisCountDownLatchWatcher(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    /**
+     * Sets the waiting time between reads on Redis
+     * It applies from the next watched latch if the watcher is running
+     * @param waitTimeMilis time to wait in miliseconds
+     * @return this
+     */
+    public synchronized JedisCountDownLatchWatcher withWaitingTimeMilis(long waitTimeMilis) {
+        if (waitTimeMilis <= 0) throw new IllegalArgumentException("Waiting time must be more than zero");
+        this.waitTimeMilis = waitTimeMilis;
+        return this;
+    }
+
+    /**
+     * Returns a future that will be completed when the latch reaches zero
+     * All calls for the same latch get dependents of the same watch, so cancelling one does not affect others
+     * @param name name of the latch
+     * @return future
+     */
+    public synchronized CompletableFuture<Void> watch(String name) {
+        if (closed) throw new IllegalStateException("JedisCountDownLatchWatcher is closed");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        CompletableFuture<Void> future = watched.computeIfAbsent(name, k -> new CompletableFuture<>());
+        if (scheduledFuture == null) {
+            startWatching();
+        }
+        return future.thenApply(v -> v);
+    }
+
+    /**
+     * Number of latches that are watched now
+     * @return watched latches
+     */
+    public int watchedLatches() {
+        return watched.size();
+    }
+
+    private void startWatching() {
+        if (scheduledExecutorService == null) {
+            scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                thread.setName("JedisCountDownLatchWatcher_thread");
+                return thread;
+            });
+        }
+        scheduledFuture = scheduledExecutorService.scheduleWithFixedDelay(this::check, 0, waitTimeMilis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads all the watched latches with one call, and completes the ones at zero
+     * When there are no more latches, the watcher stops until a new one is watched
+     */
+    private void check() {
+        try {
+            List<String> names = new ArrayList<>(watched.keySet());
+            if (names.isEmpty()) {
+                stopIfEmpty();
+                return;
+            }
+            List<String> values;
+            try (Jedis jedis = jedisPool.getResource()) {
+                values = jedis.mget(names.toArray(new String[0]));
+            }
+            for (int i = 0; i < names.size(); i++) {
+                String value = values.get(i);
+                if (value == null || value.isEmpty() || Long.parseLong(value) <= 0) {
+                    CompletableFuture<Void> future = watched.remove(names.get(i));
+                    LOG.debug("check latch {} reached zero", names.get(i));
+                    if (future != null) {
+                        future.complete(null);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.error("check error reading latches, retrying", e);
+        }
+    }
+
+    private synchronized void stopIfEmpty() {
+        if (watched.isEmpty() && scheduledFuture != null) {
+            scheduledFuture.cancel(false);
+            scheduledFuture = null;
+        }
+    }
+
+    /**
+     * Stops the watcher, the pending futures are cancelled
+     */
+    public void close() {
+        synchronized (JedisCountDownLatchWatcher.class) {
+            INSTANCES.remove(jedisPool);
+        }
+        synchronized (this) {
+            closed = true;
+            if (scheduledExecutorService != null) {
+                scheduledExecutorService.shutdownNow();
+            }
+            watched.values().forEach(future -> future.cancel(false));
+            watched.clear();
+        }
+    }
+
+}
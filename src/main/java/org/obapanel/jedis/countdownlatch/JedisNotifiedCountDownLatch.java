@@ -0,0 +1,241 @@
+package org.obapanel.jedis.countdownlatch;
+
+import org.obapanel.jedis.common.SharedJedisSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Jedis implemetation of a CountDownLatch that waits for a message instead of polling
+ *
+ * Like JedisAdvancedCountDownLatch, but without its drawbacks:
+ * - Connections are taken from the pool for every operation and returned at once
+ * - The message is received by the shared subscriber of the pool, with only one connection and one thread
+ *   for all the latches (and other primitives) of the JVM
+ * - Waiting threads sleep on a local monitor, so await can have a timeout and can be interrupted as usual
+ *
+ * The countdown script publishes a message when the counter reaches zero.
+ * After the subscription is confirmed, the counter is read again, so a message sent before subscribing is not lost.
+ * As messages can be lost (e.g. a reconnection), waiters check redis every safety wait time anyway.
+ *
+ * The first created CountDownLatch assings the intial count to the shared value
+ * Call close when the latch will not be used again, to stop receiving messages
+ */
+public class JedisNotifiedCountDownLatch implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisNotifiedCountDownLatch.class);
+    private static final Long LONG_NULL_VALUE = -1L;
+
+    public static final String JEDIS_NOTIFIED_COUNTDOWNLATCH_CHANNEL_PREFIX = "JedisNotifiedCountDownLatchChannel:";
+    public static final String ZERO = "0";
+
+    public static final String COUNTDOWNLATCH_LUA_SCRIPT = "" +
+            "local latch = redis.call('decr', KEYS[1]); " + "\n" +
+            "if (latch <= 0) then " + "\n" +
+            "    redis.call('publish', KEYS[2], ARGV[1]); " + "\n" +
+            "end " + "\n" +
+            "return latch; ";
+
+    private final JedisPool jedisPool;
+    private final String name;
+    private final String channelName;
+    private final Object zeroMonitor = new Object();
+    private final Consumer<String> zeroListener = this::onZeroMessage;
+    private boolean reachedZero = false;
+    private boolean subscribed = false;
+    private long safetyWaitMilis = 1000L;
+
+    /**
+     * Creates a new shared CountDownLatch
+     * @param jedisPool Pool of connections
+     * @param name Shared name
+     * @param count Initial count
+     */
+    public JedisNotifiedCountDownLatch(JedisPool jedisPool, String name, long count) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        this.jedisPool = jedisPool;
+        this.name = name;
+        this.channelName = JEDIS_NOTIFIED_COUNTDOWNLATCH_CHANNEL_PREFIX + name;
+        init(count);
+    }
+
+    /**
+     * Maximum time to wait for a message before checking redis again
+     * @param safetyWaitMilis time in milis
+     * @return this
+     */
+    public JedisNotifiedCountDownLatch withSafetyWaitMilis(long safetyWaitMilis) {
+        if (safetyWaitMilis <= 0) throw new IllegalArgumentException("Safety wait time must be more than zero");
+        this.safetyWaitMilis = safetyWaitMilis;
+        return this;
+    }
+
+    /**
+     * Checks if count is more than zero and creates the shared value if doesn't exists
+     * @param count Initial count
+     */
+    private void init(long count){
+        if (count <= 0) {
+            throw new IllegalArgumentException("initial count on countdownlatch must be always more than zero");
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.set(name, String.valueOf(count), new SetParams().nx());
+        }
+    }
+
+    /**
+     * Returns the countdownlatch name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Wait until interrupted or shared value reaches zero
+     * @throws InterruptedException if interrupted
+     */
+    public void await() throws InterruptedException {
+        waitForZero(Long.MAX_VALUE);
+    }
+
+    /**
+     * Wait until interrupted or shared value reaches zero or time passes
+     * @param timeout Maximim time to wait
+     * @param unit wait time unit
+     * @return true if counter has reached zero, false if maximum wait time reached
+     * @throws InterruptedException if interrupted
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return waitForZero(System.currentTimeMillis() + unit.toMillis(timeout));
+    }
+
+    /**
+     * Waits for the zero message until the time limit
+     * The counter is read after subscribing and after every safety wait
+     * @param timeMax system time limit
+     * @return true if counter has reached zero
+     * @throws InterruptedException if interrupted
+     */
+    private boolean waitForZero(long timeMax) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException("Interrupted before waiting on countdownlatch " + name);
+        }
+        while (true) {
+            if (isReachedZero() || getCount() <= 0) {
+                return true;
+            }
+            long remaining = timeMax - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            if (lazySubscribe()) {
+                // Check again, the message may have been sent before the subscription
+                continue;
+            }
+            synchronized (zeroMonitor) {
+                if (!reachedZero) {
+                    zeroMonitor.wait(Math.min(safetyWaitMilis, remaining));
+                }
+            }
+        }
+    }
+
+    /**
+     * Subscribes to the zero message the first time it is needed
+     * @return true if it has been subscribed now
+     * @throws InterruptedException if interrupted
+     */
+    private boolean lazySubscribe() throws InterruptedException {
+        SharedJedisSubscriber sharedJedisSubscriber;
+        synchronized (zeroMonitor) {
+            if (subscribed) {
+                return false;
+            }
+            subscribed = true;
+            sharedJedisSubscriber = SharedJedisSubscriber.forPool(jedisPool);
+        }
+        LOG.debug("lazySubscribe countdownlatch {}", name);
+        sharedJedisSubscriber.subscribe(channelName, zeroListener);
+        sharedJedisSubscriber.awaitSubscription(channelName, safetyWaitMilis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private boolean isReachedZero() {
+        synchronized (zeroMonitor) {
+            return reachedZero;
+        }
+    }
+
+    private void onZeroMessage(String message) {
+        synchronized (zeroMonitor) {
+            reachedZero = true;
+            zeroMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Decreases by one unit the share value, and sends the message if it reaches zero
+     * @return the current value, after operation
+     */
+    public long countDown() {
+        Object oresult;
+        try (Jedis jedis = jedisPool.getResource()) {
+            oresult = jedis.eval(COUNTDOWNLATCH_LUA_SCRIPT, Arrays.asList(name, channelName), Arrays.asList(ZERO));
+        }
+        LOG.debug("countDown name {} value {}", name, oresult);
+        return oresult != null ? Long.parseLong(oresult.toString()) : -1;
+    }
+
+    /**
+     * Get the current shared value, or -1 if it doen't exists
+     * @return current value
+     */
+    public long getCount() {
+        String value;
+        try (Jedis jedis = jedisPool.getResource()) {
+            value = jedis.get(name);
+        }
+        if (value != null && !value.isEmpty()) {
+            return Long.parseLong(value);
+        } else {
+            return LONG_NULL_VALUE;
+        }
+    }
+
+    /**
+     * Stops receiving messages
+     * The latch can be used again, but it will subscribe again if it needs to wait
+     */
+    @Override
+    public void close() {
+        boolean wasSubscribed;
+        synchronized (zeroMonitor) {
+            wasSubscribed = subscribed;
+            subscribed = false;
+        }
+        if (wasSubscribed) {
+            SharedJedisSubscriber.forPool(jedisPool).unsubscribe(channelName, zeroListener);
+        }
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUE DESTROYING THIS COUNTDOWNLATCH AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public void destroy(){
+        close();
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(name);
+        }
+    }
+
+}
@@ -0,0 +1,293 @@
+package org.obapanel.jedis.countdownlatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jedis implemetation of a CountDownLatch that can be used again, round after round
+ *
+ * Alongside the count, the latch stores a generation number and the last completed generation (in a redis hash).
+ * When the count of a generation reaches zero, that generation is completed; and a reset starts atomically
+ * the next generation with a new count. Waiters wait for a generation to be completed, so a reset made
+ * just after the completion does not keep them waiting.
+ * CAUTION: a generation that is reset before its count reaches zero is never completed, so its waiters
+ * are not released (await without time limit waits forever); reset only completed generations, or wait with time limit
+ * If the latch does not exist in redis (destroyed or expired), every generation is considered completed
+ * and the waiters are released, as JedisCountDownLatch does with a missing value
+ *
+ * In this implementation, a thread that is waiting checks periodically the latch in redis (polling)
+ * The first created CountDownLatch assings the intial count to the shared value, generation zero
+ */
+public class JedisResettableCountDownLatch {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisResettableCountDownLatch.class);
+    private static final Long LONG_NULL_VALUE = -1L;
+
+    public static final String COUNT = "count";
+    public static final String GENERATION = "generation";
+    public static final String COMPLETED = "completed";
+    public static final String INITIAL_COUNT = "initialCount";
+
+    // KEYS: latch
+    // ARGV: initial count
+    public static final String RESETTABLE_INIT_LUA_SCRIPT = "" +
+            "if redis.call('exists', KEYS[1]) == 0 then " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + COUNT + "', ARGV[1]); " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + GENERATION + "', 0); " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + COMPLETED + "', -1); " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + INITIAL_COUNT + "', ARGV[1]); " + "\n" +
+            "end " + "\n" +
+            "return 1; ";
+
+    // KEYS: latch
+    // ARGV: generation to count down, or -1 for the current one
+    // Returns the count after operation, or -1 if the generation is not the current one
+    public static final String RESETTABLE_COUNTDOWN_LUA_SCRIPT = "" +
+            "local generation = redis.call('hget', KEYS[1], '" + GENERATION + "'); " + "\n" +
+            "if generation == false or (ARGV[1] ~= '-1' and ARGV[1] ~= generation) then " + "\n" +
+            "    return -1; " + "\n" +
+            "end " + "\n" +
+            "local count = tonumber(redis.call('hget', KEYS[1], '" + COUNT + "')); " + "\n" +
+            "if count > 0 then " + "\n" +
+            "    count = redis.call('hincrby', KEYS[1], '" + COUNT + "', -1); " + "\n" +
+            "    if count == 0 then " + "\n" +
+            "        redis.call('hset', KEYS[1], '" + COMPLETED + "', generation); " + "\n" +
+            "    end " + "\n" +
+            "end " + "\n" +
+            "return count; ";
+
+    // KEYS: latch
+    // ARGV: expected current generation or -1 for any, new count or -1 for the initial count
+    // Returns the new generation, or -1 if the generation is not the expected one
+    public static final String RESETTABLE_RESET_LUA_SCRIPT = "" +
+            "local generation = redis.call('hget', KEYS[1], '" + GENERATION + "'); " + "\n" +
+            "if generation == false or (ARGV[1] ~= '-1' and ARGV[1] ~= generation) then " + "\n" +
+            "    return -1; " + "\n" +
+            "end " + "\n" +
+            "local count = ARGV[2]; " + "\n" +
+            "if count == '-1' then " + "\n" +
+            "    count = redis.call('hget', KEYS[1], '" + INITIAL_COUNT + "'); " + "\n" +
+            "end " + "\n" +
+            "redis.call('hset', KEYS[1], '" + COUNT + "', count); " + "\n" +
+            "return redis.call('hincrby', KEYS[1], '" + GENERATION + "', 1); ";
+
+    private final Jedis jedis;
+    private final String name;
+    private int waitTimeMilis = 150;
+
+    /**
+     * Creates a new shared resettable CountDownLatch
+     * @param jedis Jedis connection
+     * @param name Shared name
+     * @param count Initial count, also the count of every reset without count
+     */
+    public JedisResettableCountDownLatch(Jedis jedis, String name, long count) {
+        if (jedis == null) throw new IllegalArgumentException("Jedis can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        this.jedis = jedis;
+        this.name = name;
+        init(count);
+    }
+
+    /**
+     * Sets the waiting time between queries on Redis while waiting
+     * @param waitTimeMilis time to wait in miliseconds
+     * @return this
+     */
+    public JedisResettableCountDownLatch withWaitingTimeMilis(int waitTimeMilis){
+        this.waitTimeMilis = waitTimeMilis;
+        return this;
+    }
+
+    /**
+     * Checks if count is more than zero and creates the shared value if doesn't exists
+     * @param count Initial count
+     */
+    private void init(long count){
+        checkCount(count);
+        jedis.eval(RESETTABLE_INIT_LUA_SCRIPT, Collections.singletonList(name), Collections.singletonList(String.valueOf(count)));
+    }
+
+    private void checkCount(long count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("initial count on countdownlatch must be always more than zero");
+        }
+    }
+
+    /**
+     * Returns the countdownlatch name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Wait until interrupted or the current generation is completed
+     * @return the generation waited
+     * @throws InterruptedException if interrupted
+     */
+    public long await() throws InterruptedException {
+        long generation = getGeneration();
+        await(generation);
+        return generation;
+    }
+
+    /**
+     * Wait until interrupted or the generation is completed
+     * @param generation generation to wait
+     * @throws InterruptedException if interrupted
+     */
+    public void await(long generation) throws InterruptedException {
+        while(!isCompleted(generation)) {
+            Thread.sleep(waitTimeMilis);
+        }
+    }
+
+    /**
+     * Wait until interrupted or the current generation is completed or time passes
+     * @param timeout Maximim time to wait
+     * @param unit wait time unit
+     * @return true if generation has been completed, false if maximum wait time reached
+     * @throws InterruptedException if interrupted
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(getGeneration(), timeout, unit);
+    }
+
+    /**
+     * Wait until interrupted or the generation is completed or time passes
+     * @param generation generation to wait
+     * @param timeout Maximim time to wait
+     * @param unit wait time unit
+     * @return true if generation has been completed, false if maximum wait time reached
+     * @throws InterruptedException if interrupted
+     */
+    public boolean await(long generation, long timeout, TimeUnit unit) throws InterruptedException {
+        long timeStampToWait = System.currentTimeMillis() + unit.toMillis(timeout);
+        boolean completed = false;
+        while(timeStampToWait > System.currentTimeMillis()) {
+            completed = isCompleted(generation);
+            if (completed){
+                break;
+            }
+            Thread.sleep(waitTimeMilis);
+        }
+        return completed;
+    }
+
+    /**
+     * Checks if a generation has been completed (its count has reached zero)
+     * If the latch doesn't exist, it is considered completed
+     * @param generation generation to check
+     * @return true if completed
+     */
+    public boolean isCompleted(long generation) {
+        String completed = jedis.hget(name, COMPLETED);
+        return completed == null || Long.parseLong(completed) >= generation;
+    }
+
+    /**
+     * Decreases by one unit the count of the current generation
+     * @return the current value, after operation
+     */
+    public long countDown() {
+        return redisCountDown(LONG_NULL_VALUE);
+    }
+
+    /**
+     * Decreases by one unit the count only if the generation is the current one
+     * So a late worker of a previous round does not count on the next one
+     * @param generation generation to count down
+     * @return the current value, after operation, or -1 if the generation is not the current one
+     */
+    public long countDown(long generation) {
+        return redisCountDown(generation);
+    }
+
+    private long redisCountDown(long generation) {
+        Object oresult = jedis.eval(RESETTABLE_COUNTDOWN_LUA_SCRIPT, Collections.singletonList(name),
+                Collections.singletonList(String.valueOf(generation)));
+        LOG.debug("countDown name {} generation {} value {}", name, generation, oresult);
+        return oresult != null ? Long.parseLong(oresult.toString()) : -1;
+    }
+
+    /**
+     * Starts the next generation with the initial count
+     * If the current generation is not completed, its waiters will never be released
+     * @return the new generation
+     */
+    public long reset() {
+        return redisReset(LONG_NULL_VALUE, LONG_NULL_VALUE);
+    }
+
+    /**
+     * Starts the next generation with a new count
+     * If the current generation is not completed, its waiters will never be released
+     * @param count count of the new generation
+     * @return the new generation
+     */
+    public long reset(long count) {
+        checkCount(count);
+        return redisReset(LONG_NULL_VALUE, count);
+    }
+
+    /**
+     * Starts the next generation with a new count, only if the current generation is the expected one
+     * So if many processes try to reset after a round, only one does it
+     * @param generation expected current generation
+     * @param count count of the new generation
+     * @return the new generation, or -1 if the current generation is not the expected one
+     */
+    public long reset(long generation, long count) {
+        checkCount(count);
+        return redisReset(generation, count);
+    }
+
+    private long redisReset(long generation, long count) {
+        Object oresult = jedis.eval(RESETTABLE_RESET_LUA_SCRIPT, Collections.singletonList(name),
+                Arrays.asList(String.valueOf(generation), String.valueOf(count)));
+        LOG.debug("reset name {} generation {} count {} result {}", name, generation, count, oresult);
+        return oresult != null ? Long.parseLong(oresult.toString()) : -1;
+    }
+
+    /**
+     * Get the current count, or -1 if it doen't exists
+     * @return current value
+     */
+    public long getCount() {
+        return getLongField(COUNT);
+    }
+
+    /**
+     * Get the current generation, or -1 if it doen't exists
+     * @return current generation
+     */
+    public long getGeneration() {
+        return getLongField(GENERATION);
+    }
+
+    private long getLongField(String field) {
+        String value = jedis.hget(name, field);
+        if (value != null && !value.isEmpty()) {
+            return Long.parseLong(value);
+        } else {
+            return LONG_NULL_VALUE;
+        }
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUE DESTROYING THIS COUNTDOWNLATCH AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public void destroy(){
+        jedis.del(name);
+    }
+
+}
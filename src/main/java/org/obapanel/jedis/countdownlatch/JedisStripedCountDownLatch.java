@@ -0,0 +1,231 @@
+package org.obapanel.jedis.countdownlatch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jedis implemetation of a CountDownLatch for a lot of threads or processes counting down at the same time
+ *
+ * The count is split in stripes (sub counters, independent keys) and every countDown decrements only one
+ * of them, chosen in the client by the hash of the worker (the thread, or a given key), so the decrements
+ * do not meet on the same key. If the stripe of a worker is already at zero, the decrement is undone and
+ * it goes to the next stripe.
+ * A summary counter keeps the stripes that are not at zero; only the decrement that sets a stripe to zero
+ * touches it, and the one that sets it to zero sets the done flag. So await only reads the done flag,
+ * one key, as JedisCountDownLatch does.
+ * Every command uses only one key, so the stripes can be on different nodes of a cluster
+ *
+ * In this implementation, a thread that is waiting checks periodically the done flag in redis (polling)
+ * All the latches with the same name must have the same count and stripes
+ * The first created CountDownLatch assings the intial count to the shared values
+ */
+public class JedisStripedCountDownLatch {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisStripedCountDownLatch.class);
+    private static final Long LONG_NULL_VALUE = -1L;
+
+    public static final String STRIPE_SUFFIX = ":stripe:";
+    public static final String REMAINING_STRIPES_SUFFIX = ":remainingStripes";
+    public static final String DONE_SUFFIX = ":done";
+    public static final String DONE = "1";
+
+    private final Jedis jedis;
+    private final String name;
+    private final int stripes;
+    private final String stripePrefix;
+    private int waitTimeMilis = 150;
+
+    /**
+     * Creates a new shared striped CountDownLatch
+     * @param jedis Jedis connection
+     * @param name Shared name
+     * @param count Initial count
+     * @param stripes Number of stripes, if count is less the stripes will be count
+     */
+    public JedisStripedCountDownLatch(Jedis jedis, String name, long count, int stripes) {
+        if (jedis == null) throw new IllegalArgumentException("Jedis can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        if (stripes <= 0) throw new IllegalArgumentException("stripes must be more than zero");
+        this.jedis = jedis;
+        this.name = name;
+        this.stripes = (int) Math.max(1L, Math.min(stripes, count));
+        this.stripePrefix = name + STRIPE_SUFFIX;
+        init(count);
+    }
+
+    /**
+     * Sets the waiting time between queries on Redis while waiting
+     * @param waitTimeMilis time to wait in miliseconds
+     * @return this
+     */
+    public JedisStripedCountDownLatch withWaitingTimeMilis(int waitTimeMilis){
+        this.waitTimeMilis = waitTimeMilis;
+        return this;
+    }
+
+    /**
+     * Checks if count is more than zero and creates the shared values if don't exist
+     * The stripes are created before the summary counter, and no value is overwritten,
+     * so many latches can be created at the same time
+     * @param count Initial count
+     */
+    private void init(long count){
+        if (count <= 0) {
+            throw new IllegalArgumentException("initial count on countdownlatch must be always more than zero");
+        }
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < stripes; i++) {
+            long stripeCount = count / stripes + (i < count % stripes ? 1 : 0);
+            pipeline.set(stripePrefix + i, String.valueOf(stripeCount), new SetParams().nx());
+        }
+        pipeline.set(name + REMAINING_STRIPES_SUFFIX, String.valueOf(stripes), new SetParams().nx());
+        pipeline.sync();
+    }
+
+    /**
+     * Returns the countdownlatch name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of stripes
+     * @return stripes
+     */
+    public int getStripes() {
+        return stripes;
+    }
+
+    /**
+     * Wait until interrupted or the latch reaches zero
+     * @throws InterruptedException if interrupted
+     */
+    public void await() throws InterruptedException {
+        while(!isDone()) {
+            Thread.sleep(waitTimeMilis);
+        }
+    }
+
+    /**
+     * Wait until interrupted or the latch reaches zero or time passes
+     * @param timeout Maximim time to wait
+     * @param unit wait time unit
+     * @return true if counter has reached zero, false if maximum wait time reached
+     * @throws InterruptedException if interrupted
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        long timeStampToWait = System.currentTimeMillis() + unit.toMillis(timeout);
+        boolean reachedZero = false;
+        while(timeStampToWait > System.currentTimeMillis()) {
+            reachedZero = isDone();
+            if (reachedZero){
+                break;
+            }
+            Thread.sleep(waitTimeMilis);
+        }
+        return reachedZero;
+    }
+
+    /**
+     * Checks if the latch has reached zero, with only one read
+     * @return true if done
+     */
+    public boolean isDone() {
+        return DONE.equals(jedis.get(name + DONE_SUFFIX));
+    }
+
+    /**
+     * Decreases by one unit the stripe of the current thread
+     * @return the count of the decremented stripe after operation, or -1 if all the stripes were at zero
+     */
+    public long countDown() {
+        return countDown(Thread.currentThread().getId());
+    }
+
+    /**
+     * Decreases by one unit the stripe of the worker
+     * @param workerKey Key of the worker, to choose the stripe
+     * @return the count of the decremented stripe after operation, or -1 if all the stripes were at zero
+     */
+    public long countDown(String workerKey) {
+        return countDown(workerKey.hashCode());
+    }
+
+    private long countDown(long workerHash) {
+        int firstStripe = (int) Math.floorMod(workerHash, (long) stripes);
+        for (int n = 0; n < stripes; n++) {
+            String stripe = stripePrefix + ((firstStripe + n) % stripes);
+            long value = jedis.decr(stripe);
+            if (value > 0) {
+                LOG.debug("countDown name {} stripe {} value {}", name, stripe, value);
+                return value;
+            } else if (value == 0) {
+                onStripeExhausted(stripe);
+                return value;
+            }
+            // The stripe was already at zero, undo and try the next one
+            jedis.incr(stripe);
+        }
+        LOG.debug("countDown name {} all stripes at zero", name);
+        return LONG_NULL_VALUE;
+    }
+
+    /**
+     * Only the decrement that sets a stripe to zero arrives here, once for every stripe
+     * @param stripe stripe that has reached zero
+     */
+    private void onStripeExhausted(String stripe) {
+        long remainingStripes = jedis.decr(name + REMAINING_STRIPES_SUFFIX);
+        LOG.debug("countDown name {} stripe {} exhausted remainingStripes {}", name, stripe, remainingStripes);
+        if (remainingStripes <= 0) {
+            jedis.set(name + DONE_SUFFIX, DONE);
+        }
+    }
+
+    /**
+     * Get the current count, the sum of all stripes, or -1 if it doen't exists
+     * This reads all the stripes, use isDone to check if it has reached zero
+     * @return current value
+     */
+    public long getCount() {
+        List<String> values = jedis.mget(stripeNames().toArray(new String[0]));
+        long count = 0;
+        boolean exists = false;
+        for (String value : values) {
+            if (value != null && !value.isEmpty()) {
+                exists = true;
+                count += Long.parseLong(value);
+            }
+        }
+        return exists ? count : LONG_NULL_VALUE;
+    }
+
+    private List<String> stripeNames() {
+        List<String> stripeNames = new ArrayList<>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            stripeNames.add(stripePrefix + i);
+        }
+        return stripeNames;
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUES DESTROYING THIS COUNTDOWNLATCH AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public void destroy(){
+        stripeNames().forEach(jedis::del);
+        jedis.del(name + REMAINING_STRIPES_SUFFIX);
+        jedis.del(name + DONE_SUFFIX);
+    }
+
+}
@@ -0,0 +1,405 @@
+package org.obapanel.jedis.cyclicbarrier;
+
+import org.obapanel.jedis.common.SharedJedisSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Jedis implemetation of a CyclicBarrier
+ *
+ * It makes a number of parties, in one or many different processes, wait until all of them have arrived.
+ * Then, all can resume the execution, and the barrier can be used again for the next cycle.
+ * All the CyclicBarrier on different threads and processes must share the same name and parties to synchronize.
+ *
+ * The barrier is a redis hash with the generation (cycle), the arrived parties and the broken generation.
+ * An arrival is one script that tells the party if it is the last one; the last one trips the barrier,
+ * starting the next generation, and publishes a message so the others wake at once.
+ * If there is a barrier action, the last party executes it before tripping the barrier.
+ *
+ * As with java.util.concurrent.CyclicBarrier, if a party times out or is interrupted while waiting, or
+ * the barrier action fails, the barrier is broken and the others get a BrokenBarrierException.
+ * A broken barrier must be reset to be used again.
+ *
+ * Messages are received by the shared subscriber of the pool; as messages can be lost (e.g. a reconnection),
+ * waiters check redis every safety wait time anyway.
+ * Call close when the barrier will not be used again, to stop receiving messages
+ */
+public class JedisCyclicBarrier implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisCyclicBarrier.class);
+
+    public static final String JEDIS_CYCLICBARRIER_CHANNEL_PREFIX = "JedisCyclicBarrierChannel:";
+
+    public static final String GENERATION = "generation";
+    public static final String ARRIVED = "arrived";
+    public static final String BROKEN = "broken";
+
+    public static final long ARRIVAL_BROKEN = -1L;
+    public static final long ARRIVAL_TOO_MANY = -2L;
+
+    // Common part of scripts: trip function
+    // KEYS: barrier, channel
+    private static final String CYCLICBARRIER_LUA_SCRIPT_PART = "" +
+            "local generation = tonumber(redis.call('hget', KEYS[1], '" + GENERATION + "') or '0'); " + "\n" +
+            "local broken = tonumber(redis.call('hget', KEYS[1], '" + BROKEN + "') or '-1'); " + "\n" +
+            "local function trip() " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + ARRIVED + "', 0); " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + GENERATION + "', generation + 1); " + "\n" +
+            "    redis.call('publish', KEYS[2], generation); " + "\n" +
+            "end " + "\n";
+
+    // ARGV: parties, trip now (1/0)
+    // Returns { arrival index or -1 if broken or -2 if too many parties, generation }
+    public static final String CYCLICBARRIER_AWAIT_LUA_SCRIPT = CYCLICBARRIER_LUA_SCRIPT_PART +
+            "if broken == generation then " + "\n" +
+            "    return { " + ARRIVAL_BROKEN + ", generation }; " + "\n" +
+            "end " + "\n" +
+            "local parties = tonumber(ARGV[1]); " + "\n" +
+            "local arrived = redis.call('hincrby', KEYS[1], '" + ARRIVED + "', 1); " + "\n" +
+            "if arrived > parties then " + "\n" +
+            "    redis.call('hincrby', KEYS[1], '" + ARRIVED + "', -1); " + "\n" +
+            "    return { " + ARRIVAL_TOO_MANY + ", generation }; " + "\n" +
+            "end " + "\n" +
+            "if arrived == parties and ARGV[2] == '1' then " + "\n" +
+            "    trip(); " + "\n" +
+            "end " + "\n" +
+            "return { parties - arrived, generation }; ";
+
+    // ARGV: generation
+    // Returns 1 if tripped, 0 if the generation was broken or already tripped
+    public static final String CYCLICBARRIER_TRIP_LUA_SCRIPT = CYCLICBARRIER_LUA_SCRIPT_PART +
+            "if generation == tonumber(ARGV[1]) and broken ~= generation then " + "\n" +
+            "    trip(); " + "\n" +
+            "    return 1; " + "\n" +
+            "end " + "\n" +
+            "return 0; ";
+
+    // ARGV: generation
+    // Returns 1 if broken now, 0 if the generation was already broken or tripped
+    public static final String CYCLICBARRIER_BREAK_LUA_SCRIPT = CYCLICBARRIER_LUA_SCRIPT_PART +
+            "if generation == tonumber(ARGV[1]) and broken ~= generation then " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + BROKEN + "', generation); " + "\n" +
+            "    redis.call('publish', KEYS[2], generation); " + "\n" +
+            "    return 1; " + "\n" +
+            "end " + "\n" +
+            "return 0; ";
+
+    // Breaks the current generation if there are parties waiting, and starts the next one
+    public static final String CYCLICBARRIER_RESET_LUA_SCRIPT = CYCLICBARRIER_LUA_SCRIPT_PART +
+            "if tonumber(redis.call('hget', KEYS[1], '" + ARRIVED + "') or '0') > 0 then " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + BROKEN + "', generation); " + "\n" +
+            "end " + "\n" +
+            "trip(); " + "\n" +
+            "return generation + 1; ";
+
+    private final JedisPool jedisPool;
+    private final String name;
+    private final int parties;
+    private final Runnable barrierAction;
+    private final String channelName;
+    private final List<String> keys;
+    private final Object tripMonitor = new Object();
+    private final Consumer<String> tripListener = this::onTripMessage;
+    private long messageCount = 0L;
+    private boolean subscribed = false;
+    private long safetyWaitMilis = 1000L;
+
+    /**
+     * Creates a new shared CyclicBarrier
+     * @param jedisPool Pool of connections
+     * @param name Shared name
+     * @param parties Number of parties
+     */
+    public JedisCyclicBarrier(JedisPool jedisPool, String name, int parties) {
+        this(jedisPool, name, parties, null);
+    }
+
+    /**
+     * Creates a new shared CyclicBarrier
+     * @param jedisPool Pool of connections
+     * @param name Shared name
+     * @param parties Number of parties
+     * @param barrierAction Action executed by the last party that arrives, before the others resume; can be null
+     */
+    public JedisCyclicBarrier(JedisPool jedisPool, String name, int parties, Runnable barrierAction) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        if (parties <= 0) throw new IllegalArgumentException("parties on cyclicbarrier must be always more than zero");
+        this.jedisPool = jedisPool;
+        this.name = name;
+        this.parties = parties;
+        this.barrierAction = barrierAction;
+        this.channelName = JEDIS_CYCLICBARRIER_CHANNEL_PREFIX + name;
+        this.keys = Arrays.asList(name, channelName);
+    }
+
+    /**
+     * Maximum time to wait for a message before checking redis again
+     * @param safetyWaitMilis time in milis
+     * @return this
+     */
+    public JedisCyclicBarrier withSafetyWaitMilis(long safetyWaitMilis) {
+        if (safetyWaitMilis <= 0) throw new IllegalArgumentException("Safety wait time must be more than zero");
+        this.safetyWaitMilis = safetyWaitMilis;
+        return this;
+    }
+
+    /**
+     * Returns the cyclicbarrier name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of parties
+     * @return parties
+     */
+    public int getParties() {
+        return parties;
+    }
+
+    /**
+     * Waits until all parties have arrived
+     * @return the arrival index of this party, parties - 1 for the first one and zero for the last
+     * @throws InterruptedException if interrupted, the barrier is broken
+     * @throws BrokenBarrierException if the barrier is or gets broken while waiting
+     */
+    public int await() throws InterruptedException, BrokenBarrierException {
+        try {
+            return doAwait(Long.MAX_VALUE);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timeout without time limit on cyclicbarrier " + name, e);
+        }
+    }
+
+    /**
+     * Waits until all parties have arrived or time passes
+     * @param timeout Maximim time to wait
+     * @param unit wait time unit
+     * @return the arrival index of this party, parties - 1 for the first one and zero for the last
+     * @throws InterruptedException if interrupted, the barrier is broken
+     * @throws BrokenBarrierException if the barrier is or gets broken while waiting
+     * @throws TimeoutException if the time passes, the barrier is broken
+     */
+    public int await(long timeout, TimeUnit unit) throws InterruptedException, BrokenBarrierException, TimeoutException {
+        return doAwait(System.currentTimeMillis() + unit.toMillis(timeout));
+    }
+
+    private int doAwait(long timeMax) throws InterruptedException, BrokenBarrierException, TimeoutException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException("Interrupted before waiting on cyclicbarrier " + name);
+        }
+        long[] arrival = redisArrive();
+        long index = arrival[0];
+        long generation = arrival[1];
+        LOG.debug("await cyclicbarrier {} generation {} index {}", name, generation, index);
+        if (index == ARRIVAL_BROKEN) {
+            throw new BrokenBarrierException();
+        } else if (index == ARRIVAL_TOO_MANY) {
+            throw new IllegalStateException("More than " + parties + " parties on cyclicbarrier " + name);
+        } else if (index == 0 && barrierAction != null) {
+            runBarrierActionAndTrip(generation);
+        } else if (index > 0) {
+            waitForTrip(generation, timeMax);
+        }
+        return (int) index;
+    }
+
+    private void runBarrierActionAndTrip(long generation) throws BrokenBarrierException {
+        try {
+            barrierAction.run();
+        } catch (RuntimeException e) {
+            redisBreak(generation);
+            throw e;
+        }
+        if (!redisScript(CYCLICBARRIER_TRIP_LUA_SCRIPT, generation)) {
+            throw new BrokenBarrierException();
+        }
+    }
+
+    /**
+     * Waits until the generation is tripped or broken
+     * The barrier is read after subscribing and after every message or safety wait
+     * @param generation generation to wait
+     * @param timeMax system time limit
+     */
+    private void waitForTrip(long generation, long timeMax) throws InterruptedException, BrokenBarrierException, TimeoutException {
+        try {
+            while (true) {
+                long currentMessageCount = getMessageCount();
+                if (isTripped(generation)) {
+                    return;
+                }
+                long remaining = timeMax - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    if (!redisBreak(generation) && isTripped(generation)) {
+                        // Tripped just before breaking it
+                        return;
+                    }
+                    throw new TimeoutException("Timeout waiting on cyclicbarrier " + name);
+                }
+                if (lazySubscribe()) {
+                    // Check again, the message may have been sent before the subscription
+                    continue;
+                }
+                synchronized (tripMonitor) {
+                    if (currentMessageCount == messageCount) {
+                        tripMonitor.wait(Math.min(safetyWaitMilis, remaining));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            redisBreak(generation);
+            throw e;
+        }
+    }
+
+    /**
+     * Checks if the generation has been tripped
+     * @param generation generation
+     * @return true if tripped
+     * @throws BrokenBarrierException if the generation has been broken
+     */
+    private boolean isTripped(long generation) throws BrokenBarrierException {
+        List<String> values;
+        try (Jedis jedis = jedisPool.getResource()) {
+            values = jedis.hmget(name, GENERATION, BROKEN);
+        }
+        if (values.get(1) != null && Long.parseLong(values.get(1)) == generation) {
+            throw new BrokenBarrierException();
+        }
+        return values.get(0) != null && Long.parseLong(values.get(0)) > generation;
+    }
+
+    /**
+     * Subscribes to the trip messages the first time it is needed
+     * @return true if it has been subscribed now
+     * @throws InterruptedException if interrupted
+     */
+    private boolean lazySubscribe() throws InterruptedException {
+        SharedJedisSubscriber sharedJedisSubscriber;
+        synchronized (tripMonitor) {
+            if (subscribed) {
+                return false;
+            }
+            subscribed = true;
+            sharedJedisSubscriber = SharedJedisSubscriber.forPool(jedisPool);
+        }
+        LOG.debug("lazySubscribe cyclicbarrier {}", name);
+        sharedJedisSubscriber.subscribe(channelName, tripListener);
+        sharedJedisSubscriber.awaitSubscription(channelName, safetyWaitMilis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private long getMessageCount() {
+        synchronized (tripMonitor) {
+            return messageCount;
+        }
+    }
+
+    private void onTripMessage(String message) {
+        synchronized (tripMonitor) {
+            messageCount++;
+            tripMonitor.notifyAll();
+        }
+    }
+
+    private long[] redisArrive() {
+        Object oresult;
+        try (Jedis jedis = jedisPool.getResource()) {
+            oresult = jedis.eval(CYCLICBARRIER_AWAIT_LUA_SCRIPT, keys,
+                    Arrays.asList(String.valueOf(parties), barrierAction == null ? "1" : "0"));
+        }
+        List<?> result = (List<?>) oresult;
+        return new long[]{ Long.parseLong(result.get(0).toString()), Long.parseLong(result.get(1).toString()) };
+    }
+
+    private boolean redisBreak(long generation) {
+        boolean broken = redisScript(CYCLICBARRIER_BREAK_LUA_SCRIPT, generation);
+        LOG.debug("break cyclicbarrier {} generation {} broken {}", name, generation, broken);
+        return broken;
+    }
+
+    private boolean redisScript(String script, long generation) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object oresult = jedis.eval(script, keys, Arrays.asList(String.valueOf(generation)));
+            return oresult != null && Long.parseLong(oresult.toString()) == 1L;
+        }
+    }
+
+    /**
+     * Resets the barrier for a new cycle
+     * If there are parties waiting, they get a BrokenBarrierException
+     */
+    public void reset() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.eval(CYCLICBARRIER_RESET_LUA_SCRIPT, keys, Collections.emptyList());
+        }
+    }
+
+    /**
+     * Checks if the barrier is broken
+     * @return true if broken
+     */
+    public boolean isBroken() {
+        List<String> values;
+        try (Jedis jedis = jedisPool.getResource()) {
+            values = jedis.hmget(name, GENERATION, BROKEN);
+        }
+        long generation = values.get(0) != null ? Long.parseLong(values.get(0)) : 0L;
+        return values.get(1) != null && Long.parseLong(values.get(1)) == generation;
+    }
+
+    /**
+     * Returns the number of parties waiting at the barrier
+     * @return parties waiting
+     */
+    public int getNumberWaiting() {
+        String arrived;
+        try (Jedis jedis = jedisPool.getResource()) {
+            arrived = jedis.hget(name, ARRIVED);
+        }
+        return arrived != null ? Integer.parseInt(arrived) : 0;
+    }
+
+    /**
+     * Stops receiving messages
+     * The barrier can be used again, but it will subscribe again if it needs to wait
+     */
+    @Override
+    public void close() {
+        boolean wasSubscribed;
+        synchronized (tripMonitor) {
+            wasSubscribed = subscribed;
+            subscribed = false;
+        }
+        if (wasSubscribed) {
+            SharedJedisSubscriber.forPool(jedisPool).unsubscribe(channelName, tripListener);
+        }
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUE DESTROYING THIS CYCLICBARRIER AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public void destroy(){
+        close();
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(name);
+        }
+    }
+
+}
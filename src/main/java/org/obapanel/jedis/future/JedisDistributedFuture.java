@@ -0,0 +1,394 @@
+package org.obapanel.jedis.future;
+
+import org.obapanel.jedis.common.SharedJedisSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Jedis implementation of a Future that can be completed only once, in one process, and read in many
+ *
+ * The result (a value, a failure or a cancellation) is stored with its state in a redis hash by one script,
+ * that also publishes the state and the result; so the waiting processes get the result in the message,
+ * without reading redis. Only the first completion is stored, the next ones are ignored.
+ *
+ * Waiters receive the message from the shared subscriber of the pool, with only one connection and one thread
+ * for all the futures (and other primitives) of the JVM; and they can block with get or use toCompletableFuture.
+ * After subscribing, the result is read again, so a result published before is not lost;
+ * and as messages can be lost (e.g. a reconnection), blocked waiters check redis every safety wait time anyway.
+ * The CompletableFuture views are checked the same way by one shared scheduler thread, until they are completed
+ * or the future is closed; no thread is blocked for them.
+ *
+ * Call close when the future will not be used again, to stop receiving messages
+ */
+public class JedisDistributedFuture implements Future<String>, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisDistributedFuture.class);
+
+    public static final String JEDIS_FUTURE_CHANNEL_PREFIX = "JedisDistributedFutureChannel:";
+
+    public static final String STATE = "state";
+    public static final String RESULT = "result";
+    public static final String STATE_DONE = "done";
+    public static final String STATE_FAILED = "failed";
+    public static final String STATE_CANCELLED = "cancelled";
+    public static final String MESSAGE_SEPARATOR = ":";
+
+    // KEYS: future, channel
+    // ARGV: state, result, expiration millis or 0
+    // Returns 1 if completed now, 0 if it was completed before
+    public static final String FUTURE_COMPLETE_LUA_SCRIPT = "" +
+            "if redis.call('hsetnx', KEYS[1], '" + STATE + "', ARGV[1]) == 0 then " + "\n" +
+            "    return 0; " + "\n" +
+            "end " + "\n" +
+            "redis.call('hset', KEYS[1], '" + RESULT + "', ARGV[2]); " + "\n" +
+            "if tonumber(ARGV[3]) > 0 then " + "\n" +
+            "    redis.call('pexpire', KEYS[1], ARGV[3]); " + "\n" +
+            "end " + "\n" +
+            "redis.call('publish', KEYS[2], ARGV[1] .. '" + MESSAGE_SEPARATOR + "' .. ARGV[2]); " + "\n" +
+            "return 1; ";
+
+    private static final ScheduledExecutorService SAFETY_CHECK_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r);
+        thread.setDaemon(true);
+        thread.setName("JedisDistributedFuture_safetyCheckThread");
+        return thread;
+    });
+
+    private final JedisPool jedisPool;
+    private final String name;
+    private final String channelName;
+    private final Object resultMonitor = new Object();
+    private final Consumer<String> resultListener = this::onResultMessage;
+    private final CompletableFuture<String> completableFuture = new CompletableFuture<>();
+    private String state = null;
+    private String result = null;
+    private boolean subscribed = false;
+    private ScheduledFuture<?> safetyCheck = null;
+    private long safetyWaitMilis = 1000L;
+    private long expirationMilis = 0L;
+
+    /**
+     * Creates a distributed future
+     * @param jedisPool Pool of connections
+     * @param name Shared name
+     */
+    public JedisDistributedFuture(JedisPool jedisPool, String name) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        this.jedisPool = jedisPool;
+        this.name = name;
+        this.channelName = JEDIS_FUTURE_CHANNEL_PREFIX + name;
+    }
+
+    /**
+     * Maximum time to wait for a message before checking redis again
+     * @param safetyWaitMilis time in milis
+     * @return this
+     */
+    public JedisDistributedFuture withSafetyWaitMilis(long safetyWaitMilis) {
+        if (safetyWaitMilis <= 0) throw new IllegalArgumentException("Safety wait time must be more than zero");
+        this.safetyWaitMilis = safetyWaitMilis;
+        return this;
+    }
+
+    /**
+     * Time that the result is kept in redis after completion; with zero (default) it is kept until destroyed
+     * @param expiration time
+     * @param timeUnit unit of time
+     * @return this
+     */
+    public JedisDistributedFuture withExpiration(long expiration, TimeUnit timeUnit) {
+        this.expirationMilis = timeUnit.toMillis(expiration);
+        return this;
+    }
+
+    /**
+     * Returns the future name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Completes the future with a value
+     * @param value value, can not be null
+     * @return true if completed now, false if it was completed before
+     */
+    public boolean complete(String value) {
+        if (value == null) throw new IllegalArgumentException("Value can not be null");
+        return redisComplete(STATE_DONE, value);
+    }
+
+    /**
+     * Completes the future with a failure
+     * The waiters will get an ExecutionException with the message, caused by an IllegalStateException
+     * @param message message of failure
+     * @return true if completed now, false if it was completed before
+     */
+    public boolean completeExceptionally(String message) {
+        return redisComplete(STATE_FAILED, message != null ? message : "");
+    }
+
+    /**
+     * Cancels the future, if it is not completed
+     * @param mayInterruptIfRunning ignored, there is no task
+     * @return true if cancelled now, false if it was completed before
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return redisComplete(STATE_CANCELLED, "");
+    }
+
+    private boolean redisComplete(String newState, String newResult) {
+        Object oresult;
+        try (Jedis jedis = jedisPool.getResource()) {
+            oresult = jedis.eval(FUTURE_COMPLETE_LUA_SCRIPT, Arrays.asList(name, channelName),
+                    Arrays.asList(newState, newResult, String.valueOf(expirationMilis)));
+        }
+        boolean completed = oresult != null && Long.parseLong(oresult.toString()) == 1L;
+        LOG.debug("complete future {} state {} completed {}", name, newState, completed);
+        if (completed) {
+            onResult(newState, newResult);
+        }
+        return completed;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return STATE_CANCELLED.equals(readState());
+    }
+
+    @Override
+    public boolean isDone() {
+        return readState() != null;
+    }
+
+    private String readState() {
+        synchronized (resultMonitor) {
+            if (state != null) {
+                return state;
+            }
+        }
+        checkRedis();
+        synchronized (resultMonitor) {
+            return state;
+        }
+    }
+
+    /**
+     * Waits for the result
+     * @return value
+     * @throws InterruptedException if interrupted
+     * @throws ExecutionException if completed with failure
+     * @throws CancellationException if cancelled
+     */
+    @Override
+    public String get() throws InterruptedException, ExecutionException {
+        try {
+            return get(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timeout without time limit on future " + name, e);
+        }
+    }
+
+    /**
+     * Waits for the result a limited time
+     * @param timeout Maximim time to wait
+     * @param unit wait time unit
+     * @return value
+     * @throws InterruptedException if interrupted
+     * @throws ExecutionException if completed with failure
+     * @throws CancellationException if cancelled
+     * @throws TimeoutException if time passes
+     */
+    @Override
+    public String get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long timeMax = unit.toMillis(timeout) >= Long.MAX_VALUE - System.currentTimeMillis() ?
+                Long.MAX_VALUE : System.currentTimeMillis() + unit.toMillis(timeout);
+        while (true) {
+            if (readState() != null) {
+                return reportResult();
+            }
+            long remaining = timeMax - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new TimeoutException("Timeout waiting on future " + name);
+            }
+            if (lazySubscribe(true)) {
+                // Check again, the message may have been sent before the subscription
+                continue;
+            }
+            synchronized (resultMonitor) {
+                if (state == null) {
+                    resultMonitor.wait(Math.min(safetyWaitMilis, remaining));
+                }
+            }
+        }
+    }
+
+    private String reportResult() throws ExecutionException {
+        String currentState;
+        String currentResult;
+        synchronized (resultMonitor) {
+            currentState = state;
+            currentResult = result;
+        }
+        if (STATE_FAILED.equals(currentState)) {
+            throw new ExecutionException(currentResult, new IllegalStateException(currentResult));
+        } else if (STATE_CANCELLED.equals(currentState)) {
+            throw new CancellationException("Future " + name + " cancelled");
+        } else {
+            return currentResult;
+        }
+    }
+
+    /**
+     * Returns a view of this future as CompletableFuture, without waiting threads
+     * It is completed when the result message arrives, or when redis is checked every safety wait time
+     * (if the message has been lost), until this future is closed
+     * Completing the returned CompletableFuture does not complete this future
+     * @return CompletableFuture
+     */
+    public CompletableFuture<String> toCompletableFuture() {
+        if (!completableFuture.isDone()) {
+            try {
+                lazySubscribe(false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            startSafetyCheck();
+        }
+        return completableFuture.thenApply(v -> v);
+    }
+
+    /**
+     * Checks redis every safety wait time with the shared scheduler, the first time at once
+     * (after subscribing, so a result published before is not lost)
+     */
+    private void startSafetyCheck() {
+        synchronized (resultMonitor) {
+            if (safetyCheck != null || state != null) {
+                return;
+            }
+            safetyCheck = SAFETY_CHECK_SCHEDULER.scheduleWithFixedDelay(this::scheduledCheck,
+                    0L, safetyWaitMilis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void scheduledCheck() {
+        try {
+            checkRedis();
+        } catch (RuntimeException e) {
+            LOG.error("scheduledCheck error on future {}", name, e);
+        }
+    }
+
+    /**
+     * Subscribes to the result message the first time it is needed
+     * @param awaitSubscription true to wait until the subscription is confirmed
+     * @return true if it has been subscribed now
+     * @throws InterruptedException if interrupted
+     */
+    private boolean lazySubscribe(boolean awaitSubscription) throws InterruptedException {
+        SharedJedisSubscriber sharedJedisSubscriber;
+        synchronized (resultMonitor) {
+            if (subscribed || state != null) {
+                return false;
+            }
+            subscribed = true;
+            sharedJedisSubscriber = SharedJedisSubscriber.forPool(jedisPool);
+        }
+        LOG.debug("lazySubscribe future {}", name);
+        sharedJedisSubscriber.subscribe(channelName, resultListener);
+        if (awaitSubscription) {
+            sharedJedisSubscriber.awaitSubscription(channelName, safetyWaitMilis, TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    private void checkRedis() {
+        List<String> values;
+        try (Jedis jedis = jedisPool.getResource()) {
+            values = jedis.hmget(name, STATE, RESULT);
+        }
+        if (values.get(0) != null) {
+            onResult(values.get(0), values.get(1) != null ? values.get(1) : "");
+        }
+    }
+
+    private void onResultMessage(String message) {
+        int pos = message.indexOf(MESSAGE_SEPARATOR);
+        if (pos > 0) {
+            onResult(message.substring(0, pos), message.substring(pos + 1));
+        }
+    }
+
+    /**
+     * Stores the result locally, wakes the waiters and completes the CompletableFuture
+     */
+    private void onResult(String newState, String newResult) {
+        synchronized (resultMonitor) {
+            if (state != null) {
+                return;
+            }
+            state = newState;
+            result = newResult;
+            resultMonitor.notifyAll();
+        }
+        if (STATE_FAILED.equals(newState)) {
+            completableFuture.completeExceptionally(new IllegalStateException(newResult));
+        } else if (STATE_CANCELLED.equals(newState)) {
+            completableFuture.cancel(false);
+        } else {
+            completableFuture.complete(newResult);
+        }
+        close();
+    }
+
+    /**
+     * Stops receiving messages and checking redis for the CompletableFuture views
+     */
+    @Override
+    public void close() {
+        boolean wasSubscribed;
+        synchronized (resultMonitor) {
+            wasSubscribed = subscribed;
+            subscribed = false;
+            if (safetyCheck != null) {
+                safetyCheck.cancel(false);
+                safetyCheck = null;
+            }
+        }
+        if (wasSubscribed) {
+            SharedJedisSubscriber.forPool(jedisPool).unsubscribe(channelName, resultListener);
+        }
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUE DESTROYING THIS FUTURE AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public void destroy(){
+        close();
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(name);
+        }
+    }
+
+}
@@ -19,11 +19,14 @@ public abstract class AbstractInterruptingJedisLock implements IJedisLock {
 
 
     private JedisLock jedisLock;
-    private Thread currentThread;
+    private volatile Thread currentThread;
+    private volatile InterruptingLockScope scope;
     private boolean forceTimeoutRedis;
     private long leaseTime;
     private TimeUnit timeUnit;
     private AtomicBoolean manualUnlock = new AtomicBoolean(false);
+    private final Object earlyInterruptMonitor = new Object();
+    private boolean earlyInterrupt = false;
     private long leaseTimeDiscountMillis;
     private long recoverFromInterruptionMillis;
 
@@ -48,12 +51,23 @@ public abstract class AbstractInterruptingJedisLock implements IJedisLock {
      * @param timeUnit  unit of the lease time
      */
     AbstractInterruptingJedisLock(Jedis jedis, String name, long leaseTime, TimeUnit timeUnit, boolean forceTimeoutRedis) {
+        this(forceTimeoutRedis ? new JedisLock(jedis, name, leaseTime, timeUnit) : new JedisLock(jedis, name),
+                leaseTime, timeUnit, forceTimeoutRedis);
+    }
+
+    /**
+     * Base constructor with the redis lock already created
+     * @param jedisLock Redis lock, it must have the lease time if forceTimeoutRedis is true
+     * @param leaseTime time to lease the lock and wait to interrupt the main thread
+     * @param timeUnit  unit of the lease time
+     * @param forceTimeoutRedis If jedis lock has a timeout or is released when the interrput occurs from java
+     */
+    AbstractInterruptingJedisLock(JedisLock jedisLock, long leaseTime, TimeUnit timeUnit, boolean forceTimeoutRedis) {
+        this.jedisLock = jedisLock;
         if (forceTimeoutRedis){
-            jedisLock = new JedisLock(jedis, name, leaseTime, timeUnit);
             this.leaseTimeDiscountMillis = 10L;
             this.recoverFromInterruptionMillis = 15L;
         } else {
-            jedisLock = new JedisLock(jedis, name);
             this.leaseTimeDiscountMillis = 0L;
             this.recoverFromInterruptionMillis = 10L;
         }
@@ -109,6 +123,17 @@ public abstract class AbstractInterruptingJedisLock implements IJedisLock {
         return jedisLock.getName();
     }
 
+    /**
+     * Execution scope of the current locking
+     * Tasks submitted into the scope will be cancelled and interrupted with the main thread
+     * when the lease time expires or the lock is unlocked
+     * A new scope is created every time the lock is obtained
+     * @return scope, null if the lock has never been obtained
+     */
+    public InterruptingLockScope getScope() {
+        return scope;
+    }
+
     @Override
     public synchronized void unlock() {
         jedisLock.unlock();
@@ -137,6 +162,11 @@ public abstract class AbstractInterruptingJedisLock implements IJedisLock {
      */
     private void afterLock(){
         currentThread = Thread.currentThread();
+        synchronized (earlyInterruptMonitor) {
+            earlyInterrupt = false;
+        }
+        scope = new InterruptingLockScope(getName());
+        JedisLockRevocation.register(this);
         startInterruptingThread();
     }
 
@@ -145,7 +175,19 @@ public abstract class AbstractInterruptingJedisLock implements IJedisLock {
      */
     private void afterUnLock(){
         manualUnlock.set(true);
+        JedisLockRevocation.unregister(this);
         stopInterruptingThread();
+        cancelScope();
+    }
+
+    /**
+     * Cancels the tasks of the current scope, if any
+     */
+    private void cancelScope() {
+        InterruptingLockScope currentScope = scope;
+        if (currentScope != null) {
+            currentScope.cancel();
+        }
     }
 
     /**
@@ -168,10 +210,11 @@ public abstract class AbstractInterruptingJedisLock implements IJedisLock {
     final void runInterruptThread() {
         try {
             long currentLeaseTime = timeUnit.toMillis( leaseTime );
-            long realTimeToSleep = jedisLock.getLeaseMoment() + currentLeaseTime - System.currentTimeMillis() - leaseTimeDiscountMillis;
+            long interruptTimeLimit = jedisLock.getLeaseMoment() + currentLeaseTime - leaseTimeDiscountMillis;
+            long realTimeToSleep = interruptTimeLimit - System.currentTimeMillis();
             LOG.debug("runInterruptThread realTimeToSleep {} leaseTime {} forceTimeoutRedis ", realTimeToSleep, currentLeaseTime, forceTimeoutRedis);
             if (realTimeToSleep > 0) {
-                Thread.sleep(realTimeToSleep);
+                waitUntilLeaseTimeOrEarlyInterrupt(interruptTimeLimit);
             } else {
                 LOG.error("runInterruptThread realTimeToSleep ERROR, sleepring 50");
                 Thread.sleep(50);
@@ -183,12 +226,43 @@ public abstract class AbstractInterruptingJedisLock implements IJedisLock {
     }
 
     /**
-     * Interrupts the main thread and unlocks the redis lock in remote
+     * Waits until the time limit has been reached, or an early interruption is requested
+     * @param interruptTimeLimit System time when the main thread must be interrupted
+     * @throws InterruptedException if the interrupting thread is stopped
+     */
+    private void waitUntilLeaseTimeOrEarlyInterrupt(long interruptTimeLimit) throws InterruptedException {
+        synchronized (earlyInterruptMonitor) {
+            long remaining = interruptTimeLimit - System.currentTimeMillis();
+            while (!earlyInterrupt && remaining > 0) {
+                earlyInterruptMonitor.wait(remaining);
+                remaining = interruptTimeLimit - System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Makes the interrupting thread interrupt the main thread and unlock now,
+     * without waiting for the lease time to expire
+     * It does not block, so it can be called from a listener
+     */
+    final void interruptBeforeLeaseTime() {
+        synchronized (earlyInterruptMonitor) {
+            LOG.debug("interruptBeforeLeaseTime lock {}", getName());
+            earlyInterrupt = true;
+            earlyInterruptMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Interrupts the main thread and the tasks of its scope, and unlocks the redis lock in remote
+     * Not synchronized, as the main thread can be holding the monitor while executing underLock
      */
-    private synchronized void interruptAndUnlock() {
-        if (!manualUnlock.get() && currentThread != null) {
-            LOG.debug("interruptAndUnlock interrupt current thread " + currentThread.getName());
-            currentThread.interrupt();
+    private void interruptAndUnlock() {
+        Thread threadToInterrupt = currentThread;
+        if (!manualUnlock.get() && threadToInterrupt != null) {
+            LOG.debug("interruptAndUnlock interrupt current thread " + threadToInterrupt.getName());
+            cancelScope();
+            threadToInterrupt.interrupt();
         }
         try {
             Thread.sleep(recoverFromInterruptionMillis);
@@ -196,5 +270,6 @@ public abstract class AbstractInterruptingJedisLock implements IJedisLock {
             //NOOP
         }
         jedisLock.unlock();
+        JedisLockRevocation.unregister(this);
     }
 }
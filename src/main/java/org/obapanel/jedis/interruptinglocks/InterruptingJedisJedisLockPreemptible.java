@@ -0,0 +1,242 @@
+package org.obapanel.jedis.interruptinglocks;
+
+import org.obapanel.jedis.common.SharedJedisSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Interrupting lock that can be preempted by waiters with more priority
+ *
+ * Waiters register themselves, with their priority, into a sorted set in redis next to the lock.
+ * When a waiter has more priority than the current holder, it sends a preemption message to the holder;
+ * the holder runs the same path as when the lease time expires (interrupt main thread and unlock) but at once.
+ * Only the waiter with the highest priority can take a free lock, so the preempting waiter gets the lock
+ * Waiters that stop trying are forgotten after a while (with the redis server time)
+ *
+ * The messages are received with the shared subscriber of the pool, so no connection or thread per lock is used
+ * All the locks with the same name must be preemptible to respect the priorities.
+ * A tryLock does not register the waiter nor preempts the holder
+ */
+public final class InterruptingJedisJedisLockPreemptible extends AbstractInterruptingJedisLock {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InterruptingJedisJedisLockPreemptible.class);
+
+    public static final String JEDIS_LOCK_PREEMPTION_CHANNEL_PREFIX = "JedisLockPreemptionChannel:";
+    public static final String PREEMPTION_WAITERS_SUFFIX = ":preemption:waiters";
+    public static final String PREEMPTION_WAITERS_TIMEOUT_SUFFIX = ":preemption:waitersTimeout";
+    public static final String PREEMPTION_HOLDER_PRIORITY_SUFFIX = ":preemption:holderPriority";
+
+    private static final long WAITER_TIMEOUT_MILLIS = 3000L;
+    private static final int WAIT_CYCLE_MILLIS = 50;
+
+    // KEYS: lock, waiters (by priority), waiters timeout (by expiration), holder priority, channel
+    // ARGV: value, priority, lease millis, waiter timeout millis, register waiter (1/0)
+    public static final String PREEMPTIBLE_LOCK_LUA_SCRIPT = "" +
+            "redis.replicate_commands(); " + "\n" +
+            "local time = redis.call('time'); " + "\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000); " + "\n" +
+            "local priority = tonumber(ARGV[2]); " + "\n" +
+            "for _, waiter in ipairs(redis.call('zrangebyscore', KEYS[3], '-inf', now)) do " + "\n" +
+            "    redis.call('zrem', KEYS[2], waiter); " + "\n" +
+            "end " + "\n" +
+            "redis.call('zremrangebyscore', KEYS[3], '-inf', now); " + "\n" +
+            "local top = redis.call('zrevrange', KEYS[2], 0, 0, 'withscores'); " + "\n" +
+            "if (top[1] == nil or top[1] == ARGV[1] or tonumber(top[2]) <= priority) and " + "\n" +
+            "        redis.call('set', KEYS[1], ARGV[1], 'nx', 'px', ARGV[3]) then " + "\n" +
+            "    redis.call('zrem', KEYS[2], ARGV[1]); " + "\n" +
+            "    redis.call('zrem', KEYS[3], ARGV[1]); " + "\n" +
+            "    redis.call('set', KEYS[4], ARGV[2], 'px', ARGV[3]); " + "\n" +
+            "    return 1; " + "\n" +
+            "end " + "\n" +
+            "if ARGV[5] == '1' then " + "\n" +
+            "    redis.call('zadd', KEYS[2], priority, ARGV[1]); " + "\n" +
+            "    redis.call('zadd', KEYS[3], now + tonumber(ARGV[4]), ARGV[1]); " + "\n" +
+            "    local holderPriority = redis.call('get', KEYS[4]); " + "\n" +
+            "    if (holderPriority ~= false and redis.call('exists', KEYS[1]) == 1 and tonumber(holderPriority) < priority) then " + "\n" +
+            "        redis.call('publish', KEYS[5], ARGV[2]); " + "\n" +
+            "    end " + "\n" +
+            "end " + "\n" +
+            "return 0; ";
+
+    public static final String REMOVE_WAITER_LUA_SCRIPT = "" +
+            "redis.call('zrem', KEYS[1], ARGV[1]); " + "\n" +
+            "redis.call('zrem', KEYS[2], ARGV[1]); " + "\n" +
+            "return 1; ";
+
+    private final PreemptibleJedisLock preemptibleJedisLock;
+    private final SharedJedisSubscriber sharedJedisSubscriber;
+    private final String channelName;
+    private final int priority;
+    private final Consumer<String> preemptionListener = this::onPreemptionMessage;
+    private Thread interruptingThread;
+
+    /**
+     * Main constructor
+     * @param jedis Client to generate the lock
+     * @param jedisPool Pool whose shared subscriber will receive the preemption messages
+     * @param name Lock name
+     * @param leaseTime Time to lease the lock
+     * @param timeUnit Unit of leaseTime
+     * @param priority Priority of this lock, more is more important
+     */
+    public InterruptingJedisJedisLockPreemptible(Jedis jedis, JedisPool jedisPool, String name, long leaseTime, TimeUnit timeUnit, int priority) {
+        this(new PreemptibleJedisLock(jedis, name, leaseTime, timeUnit, priority), jedisPool, leaseTime, timeUnit, priority);
+    }
+
+    private InterruptingJedisJedisLockPreemptible(PreemptibleJedisLock preemptibleJedisLock, JedisPool jedisPool, long leaseTime, TimeUnit timeUnit, int priority) {
+        super(preemptibleJedisLock, leaseTime, timeUnit, true);
+        this.preemptibleJedisLock = preemptibleJedisLock;
+        this.sharedJedisSubscriber = SharedJedisSubscriber.forPool(jedisPool);
+        this.channelName = JEDIS_LOCK_PREEMPTION_CHANNEL_PREFIX + preemptibleJedisLock.getName();
+        this.priority = priority;
+    }
+
+    /**
+     * Priority of this lock
+     * @return priority
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public synchronized boolean tryLock() {
+        preemptibleJedisLock.registerAsWaiter = false;
+        try {
+            return super.tryLock();
+        } finally {
+            preemptibleJedisLock.registerAsWaiter = true;
+        }
+    }
+
+    @Override
+    public synchronized boolean tryLockForAWhile(long time, TimeUnit unit) throws InterruptedException {
+        try {
+            boolean result = super.tryLockForAWhile(time, unit);
+            if (!result) {
+                preemptibleJedisLock.removeWaiter();
+            }
+            return result;
+        } catch (InterruptedException e) {
+            preemptibleJedisLock.removeWaiter();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void lockInterruptibly() throws InterruptedException {
+        try {
+            super.lockInterruptibly();
+        } catch (InterruptedException e) {
+            preemptibleJedisLock.removeWaiter();
+            throw e;
+        }
+    }
+
+    @Override
+    void startInterruptingThread() {
+        sharedJedisSubscriber.subscribe(channelName, preemptionListener);
+        interruptingThread = new Thread(() -> {
+            try {
+                runInterruptThread();
+            } finally {
+                sharedJedisSubscriber.unsubscribe(channelName, preemptionListener);
+            }
+        });
+        interruptingThread.setDaemon(true);
+        interruptingThread.setName(getName() + "_interruptingThread");
+        interruptingThread.start();
+    }
+
+    @Override
+    void stopInterruptingThread() {
+        sharedJedisSubscriber.unsubscribe(channelName, preemptionListener);
+        if (interruptingThread != null) {
+            interruptingThread.interrupt();
+        }
+    }
+
+    private void onPreemptionMessage(String message) {
+        try {
+            if (Integer.parseInt(message) > priority) {
+                LOG.debug("onPreemptionMessage lock {} preempted by priority {}", getName(), message);
+                interruptBeforeLeaseTime();
+            }
+        } catch (NumberFormatException e) {
+            LOG.error("onPreemptionMessage bad message {} on lock {}", message, getName());
+        }
+    }
+
+    /**
+     * Redis lock that respects the priority of the waiters
+     */
+    static final class PreemptibleJedisLock extends JedisLock {
+
+        private final int priority;
+        private final long leaseMillis;
+        private final List<String> keys;
+        private boolean registerAsWaiter = true;
+
+        PreemptibleJedisLock(Jedis jedis, String name, long leaseTime, TimeUnit timeUnit, int priority) {
+            super(jedis, name, leaseTime, timeUnit);
+            this.priority = priority;
+            this.leaseMillis = timeUnit.toMillis(leaseTime);
+            this.keys = Arrays.asList(name, name + PREEMPTION_WAITERS_SUFFIX, name + PREEMPTION_WAITERS_TIMEOUT_SUFFIX,
+                    name + PREEMPTION_HOLDER_PRIORITY_SUFFIX, JEDIS_LOCK_PREEMPTION_CHANNEL_PREFIX + name);
+            setWaitCylce(WAIT_CYCLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        synchronized boolean redisLock() {
+            List<String> values = Arrays.asList(getValue(), String.valueOf(priority), String.valueOf(leaseMillis),
+                    String.valueOf(WAITER_TIMEOUT_MILLIS), registerAsWaiter ? "1" : "0");
+            Object response = getJedis().eval(PREEMPTIBLE_LOCK_LUA_SCRIPT, keys, values);
+            boolean locked = response != null && Long.parseLong(response.toString()) == 1L;
+            if (locked) {
+                setLockMoment();
+            }
+            return locked;
+        }
+
+        /**
+         * Waiters are registered by the lock script in the waiters by priority, not in the waiters of JedisLock
+         */
+        @Override
+        void registerWaiter() {
+            // Registered by redisLock
+        }
+
+        /**
+         * Waiters by priority are removed by the lock script when they get the lock, or by removeWaiter
+         */
+        @Override
+        void unregisterWaiter() {
+            // Removed by redisLock or removeWaiter
+        }
+
+        /**
+         * Number of clients waiting by priority to get this lock
+         * @return number of waiters
+         */
+        @Override
+        public synchronized long getWaiters() {
+            Long waiters = getJedis().zcard(keys.get(1));
+            return waiters != null ? waiters : 0L;
+        }
+
+        /**
+         * Removes this lock from the waiters, as it is not trying anymore
+         */
+        synchronized void removeWaiter() {
+            getJedis().eval(REMOVE_WAITER_LUA_SCRIPT, keys.subList(1, 3), Arrays.asList(getValue()));
+        }
+    }
+
+}
@@ -0,0 +1,391 @@
+package org.obapanel.jedis.interruptinglocks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.obapanel.jedis.interruptinglocks.JedisLock.CLIENT_RESPONSE_OK;
+import static org.obapanel.jedis.interruptinglocks.JedisLock.UNLOCK_LUA_SCRIPT;
+
+/**
+ * Executor service that runs every task under its own leased redis lock
+ *
+ * For each submitted task, the name of the lock is obtained from the lock name function
+ * (which receives the task as it was submitted); the task waits until the lock is obtained,
+ * runs in the workers executor and it is cancelled (and interrupted) if the lease time expires.
+ * The lock is released when the task ends, one way or another.
+ *
+ * A single scheduler thread is used for all the tasks; it makes the attempts to obtain the locks
+ * of all the waiting tasks with one pipelined call to redis, and it controls the lease time of the running tasks.
+ * So no thread is needed for each lock.
+ *
+ * The locks are compatible with JedisLock locks with the same name.
+ * Shutting down this service also shuts down the workers executor.
+ */
+public class InterruptingJedisLockExecutorService extends AbstractExecutorService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InterruptingJedisLockExecutorService.class);
+
+    private static final long LEASE_TIME_DISCOUNT_MILLIS = 10L;
+
+    private final JedisPool jedisPool;
+    private final Function<Object, String> lockNameFunction;
+    private final long leaseTime;
+    private final TimeUnit timeUnit;
+    private final ExecutorService workers;
+    private final ScheduledExecutorService scheduler;
+    private final String valuePrefix;
+    private final AtomicLong valueSequence = new AtomicLong(0);
+    private final Queue<LockedTask<?>> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final Set<LockedTask<?>> runningTasks = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean acquireRoundScheduled = new AtomicBoolean(false);
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private long waitCycle = 100L;
+    private boolean shutdown = false;
+    private long activeTasks = 0;
+
+    /**
+     * Creates the executor service with a cached thread pool as workers
+     * @param jedisPool Pool of redis connections
+     * @param lockNameFunction Function that gives the lock name for each submitted task
+     * @param leaseTime Time to lease the lock of each task
+     * @param timeUnit Unit of leaseTime
+     */
+    public InterruptingJedisLockExecutorService(JedisPool jedisPool, Function<Object, String> lockNameFunction, long leaseTime, TimeUnit timeUnit) {
+        this(jedisPool, lockNameFunction, leaseTime, timeUnit, Executors.newCachedThreadPool());
+    }
+
+    /**
+     * Creates the executor service
+     * @param jedisPool Pool of redis connections
+     * @param lockNameFunction Function that gives the lock name for each submitted task
+     * @param leaseTime Time to lease the lock of each task
+     * @param timeUnit Unit of leaseTime
+     * @param workers Executor that will run the tasks, owned by this service from now on
+     */
+    public InterruptingJedisLockExecutorService(JedisPool jedisPool, Function<Object, String> lockNameFunction, long leaseTime, TimeUnit timeUnit, ExecutorService workers) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        if (lockNameFunction == null) throw new IllegalArgumentException("Lock name function can not be null");
+        if (leaseTime <= 0 || timeUnit == null) throw new IllegalArgumentException("Lease time must be more than zero, with unit");
+        this.jedisPool = jedisPool;
+        this.lockNameFunction = lockNameFunction;
+        this.leaseTime = leaseTime;
+        this.timeUnit = timeUnit;
+        this.workers = workers;
+        this.valuePrefix = System.currentTimeMillis() + "_" + ThreadLocalRandom.current().nextInt(1_000_000) + "_";
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName("InterruptingJedisLockExecutorService_scheduler");
+            return thread;
+        });
+    }
+
+    /**
+     * Time to wait between attempts to obtain the locks of the waiting tasks
+     * @param waitCycle time
+     * @param timeUnit unit of time
+     * @return this
+     */
+    public InterruptingJedisLockExecutorService withWaitCycle(long waitCycle, TimeUnit timeUnit) {
+        this.waitCycle = timeUnit.toMillis(waitCycle);
+        return this;
+    }
+
+    /**
+     * Lease time of the lock of each task
+     * @return leaseTime
+     */
+    public long getLeaseTime() {
+        return leaseTime;
+    }
+
+    /**
+     * Unit of the lease time
+     * @return timeUnit
+     */
+    public TimeUnit getTimeUnit() {
+        return timeUnit;
+    }
+
+    /**
+     * Number of tasks waiting to obtain their lock
+     * @return waiting tasks
+     */
+    public int getWaitingTasks() {
+        return pendingTasks.size();
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new LockedTask<>(runnable, Executors.callable(runnable, value));
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new LockedTask<>(callable, callable);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        LockedTask<?> lockedTask;
+        if (command instanceof LockedTask) {
+            lockedTask = (LockedTask<?>) command;
+        } else {
+            lockedTask = new LockedTask<>(command, Executors.callable(command));
+        }
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("InterruptingJedisLockExecutorService is shutdown");
+            }
+            activeTasks++;
+        }
+        pendingTasks.add(lockedTask);
+        scheduleAcquireRound(0L);
+    }
+
+    private void scheduleAcquireRound(long delay) {
+        if (acquireRoundScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::acquireRound, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Tries to obtain the locks of all waiting tasks with one pipelined call
+     * The tasks that obtain the lock are sent to the workers, the others wait for the next round
+     */
+    private void acquireRound() {
+        acquireRoundScheduled.set(false);
+        List<LockedTask<?>> tasks = new ArrayList<>();
+        LockedTask<?> task;
+        while ((task = pendingTasks.poll()) != null) {
+            if (!task.isDone()) {
+                tasks.add(task);
+            }
+        }
+        if (!tasks.isEmpty()) {
+            try {
+                List<Response<String>> responses = new ArrayList<>(tasks.size());
+                long leaseMillis = timeUnit.toMillis(leaseTime);
+                try (Jedis jedis = jedisPool.getResource()) {
+                    Pipeline pipeline = jedis.pipelined();
+                    for (LockedTask<?> lockedTask : tasks) {
+                        responses.add(pipeline.set(lockedTask.lockName, lockedTask.lockValue, new SetParams().nx().px(leaseMillis)));
+                    }
+                    pipeline.sync();
+                }
+                for (int i = 0; i < tasks.size(); i++) {
+                    if (CLIENT_RESPONSE_OK.equalsIgnoreCase(responses.get(i).get())) {
+                        startTask(tasks.get(i), leaseMillis);
+                    } else {
+                        pendingTasks.add(tasks.get(i));
+                    }
+                }
+            } catch (RuntimeException e) {
+                LOG.error("acquireRound error, tasks will wait for next round", e);
+                for (LockedTask<?> lockedTask : tasks) {
+                    if (!runningTasks.contains(lockedTask)) {
+                        // The SET may have been applied before the error, the lock is released by value
+                        unlock(lockedTask);
+                        if (!lockedTask.isDone()) {
+                            pendingTasks.add(lockedTask);
+                        }
+                    }
+                }
+            }
+        }
+        if (!pendingTasks.isEmpty()) {
+            scheduleAcquireRound(waitCycle);
+        }
+    }
+
+    private void startTask(LockedTask<?> lockedTask, long leaseMillis) {
+        synchronized (lockedTask) {
+            if (lockedTask.isDone()) {
+                // Cancelled while its lock was being obtained
+                unlock(lockedTask);
+                return;
+            }
+            // Under the same lock as the check, so afterTask always sees it running if it is locked
+            lockedTask.locked = true;
+            runningTasks.add(lockedTask);
+            lockedTask.deadline = scheduler.schedule(() -> expireTask(lockedTask),
+                    leaseMillis - LEASE_TIME_DISCOUNT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        try {
+            workers.execute(lockedTask);
+        } catch (RejectedExecutionException ree) {
+            LOG.error("startTask rejected by workers, cancelling task of lock {}", lockedTask.lockName, ree);
+            lockedTask.cancel(false);
+        }
+    }
+
+    private void expireTask(LockedTask<?> lockedTask) {
+        LOG.debug("expireTask lease time expired, interrupt task of lock {}", lockedTask.lockName);
+        lockedTask.cancel(true);
+    }
+
+    /**
+     * Executed once when a task ends, normally or not
+     * The lock is released before the result is available, except when the task is cancelled
+     * @param lockedTask task
+     */
+    private void afterTask(LockedTask<?> lockedTask) {
+        boolean locked;
+        synchronized (lockedTask) {
+            if (lockedTask.finished) return;
+            lockedTask.finished = true;
+            locked = lockedTask.locked;
+        }
+        if (locked) {
+            runningTasks.remove(lockedTask);
+            ScheduledFuture<?> deadline = lockedTask.deadline;
+            if (deadline != null) {
+                deadline.cancel(false);
+            }
+            unlock(lockedTask);
+        }
+        boolean terminateNow;
+        synchronized (this) {
+            activeTasks--;
+            terminateNow = shutdown && activeTasks == 0;
+        }
+        if (terminateNow) {
+            terminate();
+        }
+    }
+
+    private void unlock(LockedTask<?> lockedTask) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.eval(UNLOCK_LUA_SCRIPT, Arrays.asList(lockedTask.lockName), Arrays.asList(lockedTask.lockValue));
+        } catch (RuntimeException e) {
+            LOG.error("unlock error on lock {}, it will expire with its lease time", lockedTask.lockName, e);
+        }
+    }
+
+    private void terminate() {
+        workers.shutdown();
+        scheduler.shutdown();
+        terminated.countDown();
+    }
+
+    @Override
+    public void shutdown() {
+        boolean terminateNow;
+        synchronized (this) {
+            shutdown = true;
+            terminateNow = activeTasks == 0;
+        }
+        if (terminateNow) {
+            terminate();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        List<Runnable> notStarted = new ArrayList<>();
+        LockedTask<?> task;
+        while ((task = pendingTasks.poll()) != null) {
+            if (!task.isDone()) {
+                notStarted.add(task.originalTask instanceof Runnable ? (Runnable) task.originalTask : task);
+                task.cancel(false);
+            }
+        }
+        new ArrayList<>(runningTasks).forEach(t -> t.cancel(true));
+        return notStarted;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0 && workers.isTerminated();
+    }
+
+    /**
+     * Waits until all tasks have ended and the workers executor has terminated
+     * @param timeout Maximim time to wait
+     * @param unit wait time unit
+     * @return true if terminated, false if maximum wait time reached
+     * @throws InterruptedException if interrupted
+     */
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long timeLimit = System.currentTimeMillis() + unit.toMillis(timeout);
+        if (!terminated.await(timeout, unit)) {
+            return false;
+        }
+        return workers.awaitTermination(Math.max(0L, timeLimit - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Task that knows its lock
+     * @param <T> Result type
+     */
+    private class LockedTask<T> extends FutureTask<T> {
+
+        private final Object originalTask;
+        private final String lockName;
+        private final String lockValue;
+        private boolean locked = false;
+        private boolean finished = false;
+        private volatile ScheduledFuture<?> deadline;
+
+        LockedTask(Object originalTask, Callable<T> callable) {
+            super(callable);
+            this.originalTask = originalTask;
+            this.lockName = lockNameFunction.apply(originalTask);
+            if (lockName == null || lockName.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+            this.lockValue = lockName + "_" + valuePrefix + valueSequence.incrementAndGet();
+        }
+
+        @Override
+        protected void set(T result) {
+            afterTask(this);
+            super.set(result);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            afterTask(this);
+            super.setException(t);
+        }
+
+        @Override
+        protected void done() {
+            afterTask(this);
+        }
+    }
+
+}
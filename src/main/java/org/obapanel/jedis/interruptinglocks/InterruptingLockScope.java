@@ -0,0 +1,276 @@
+package org.obapanel.jedis.interruptinglocks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Execution scope bound to an interrupting lock
+ *
+ * The work that the lock holder fans out to other threads can be registered here;
+ * when the lease time expires (or the lock is unlocked) every task of the scope is cancelled,
+ * and the threads that are running them are interrupted, along with the thread that holds the lock.
+ * So the parallel work done under a lock is also bounded by the lock.
+ *
+ * A new scope is created every time the lock is obtained.
+ * Tasks submitted to an already cancelled scope will not be executed
+ *
+ * Parallel streams run into the common ForkJoinPool, which can not be stopped;
+ * run them into a pool created with newForkJoinPool to have them stopped with the scope
+ */
+public final class InterruptingLockScope {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InterruptingLockScope.class);
+
+    private final String name;
+    private final Set<Future<?>> futures = ConcurrentHashMap.newKeySet();
+    private final Set<Thread> threads = new HashSet<>();
+    private final List<ExecutorService> ownedExecutors = new ArrayList<>();
+    private boolean cancelled = false;
+
+    /**
+     * Creates a new scope
+     * @param name Name of the lock of the scope
+     */
+    InterruptingLockScope(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Name of the lock that created this scope
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * If the scope is cancelled, the lease time has expired or the lock has been unlocked
+     * @return true if cancelled
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Wraps a task so it will be interrupted when the scope is cancelled
+     * If it starts after cancellation, it will throw a CancellationException without running
+     * @param task Task to wrap
+     * @return wrapped task
+     */
+    public Runnable wrap(Runnable task) {
+        return () -> {
+            enter();
+            try {
+                task.run();
+            } finally {
+                exit();
+            }
+        };
+    }
+
+    /**
+     * Wraps a task so it will be interrupted when the scope is cancelled
+     * If it starts after cancellation, it will throw a CancellationException without running
+     * @param task Task to wrap
+     * @param <T> Return type of task
+     * @return wrapped task
+     */
+    public <T> Callable<T> wrap(Callable<T> task) {
+        return () -> {
+            enter();
+            try {
+                return task.call();
+            } finally {
+                exit();
+            }
+        };
+    }
+
+    /**
+     * Creates a view of the executor whose submitted tasks belong to this scope
+     * The tasks will be cancelled when the scope is cancelled
+     * Lifecycle methods (shutdown, awaitTermination...) act on the original executor
+     * @param executorService Executor to wrap
+     * @return a executor bound to this scope
+     */
+    public ExecutorService wrap(ExecutorService executorService) {
+        return new ScopedExecutorService(executorService);
+    }
+
+    /**
+     * Registers a future (a fork/join task, for example) to be cancelled with the scope
+     * If the scope is already cancelled, the future is cancelled now
+     * @param future Future to track
+     * @param <F> Future type
+     * @return the same future
+     */
+    public <F extends Future<?>> F track(F future) {
+        boolean cancelNow;
+        synchronized (this) {
+            cancelNow = cancelled;
+            if (!cancelNow) {
+                futures.add(future);
+            }
+        }
+        if (cancelNow) {
+            future.cancel(true);
+        }
+        return future;
+    }
+
+    /**
+     * Creates a new fork/join pool owned by the scope
+     * When the scope is cancelled, the pool is shutdown, so its pending tasks are cancelled
+     * and its running tasks interrupted.
+     * Use it to run parallel streams and recursive tasks under the lock
+     * @param parallelism Parallelism level of the pool
+     * @return new fork/join pool
+     */
+    public ForkJoinPool newForkJoinPool(int parallelism) {
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        boolean cancelNow;
+        synchronized (this) {
+            cancelNow = cancelled;
+            if (!cancelNow) {
+                ownedExecutors.add(forkJoinPool);
+            }
+        }
+        if (cancelNow) {
+            forkJoinPool.shutdownNow();
+        }
+        return forkJoinPool;
+    }
+
+    /**
+     * Cancels all the tasks and pools of the scope and interrupts the threads running them
+     * The scope can not be used after this
+     */
+    void cancel() {
+        List<ExecutorService> executorsToStop;
+        synchronized (this) {
+            if (cancelled) return;
+            cancelled = true;
+            executorsToStop = new ArrayList<>(ownedExecutors);
+            ownedExecutors.clear();
+            LOG.debug("cancel scope {} futures {} threads {} executors {}", name, futures.size(), threads.size(), executorsToStop.size());
+        }
+        futures.forEach(f -> f.cancel(true));
+        futures.clear();
+        synchronized (this) {
+            // Interrupted while holding the monitor, so a thread can not exit the scope
+            // and start an unrelated task before being interrupted
+            threads.forEach(Thread::interrupt);
+        }
+        executorsToStop.forEach(ExecutorService::shutdownNow);
+    }
+
+    private void enter() {
+        if (!enterIfNotCancelled()) {
+            throw new CancellationException("Scope of lock " + name + " is cancelled");
+        }
+    }
+
+    private synchronized boolean enterIfNotCancelled() {
+        if (!cancelled) {
+            threads.add(Thread.currentThread());
+        }
+        return !cancelled;
+    }
+
+    private synchronized void exit() {
+        threads.remove(Thread.currentThread());
+    }
+
+    /**
+     * Executor service view whose tasks are tracked into the scope
+     */
+    private class ScopedExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService executorService;
+
+        ScopedExecutorService(ExecutorService executorService) {
+            this.executorService = executorService;
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+            return track(new ScopedFutureTask<>(Executors.callable(runnable, value)));
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return track(new ScopedFutureTask<>(callable));
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executorService.execute(() -> {
+                // A task that starts after cancellation is discarded, not failed on the pool thread
+                if (enterIfNotCancelled()) {
+                    try {
+                        command.run();
+                    } finally {
+                        exit();
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            executorService.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return executorService.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return executorService.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return executorService.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return executorService.awaitTermination(timeout, unit);
+        }
+    }
+
+    /**
+     * Task that leaves the scope when done, so a long held lock does not accumulate finished tasks
+     */
+    private class ScopedFutureTask<T> extends FutureTask<T> {
+
+        ScopedFutureTask(Callable<T> callable) {
+            super(callable);
+        }
+
+        @Override
+        protected void done() {
+            futures.remove(this);
+        }
+    }
+
+}
@@ -37,6 +37,41 @@ public class JedisLock implements IJedisLock {
             "    return 0\n" +
             "end";
 
+    public static final String WAITERS_SUFFIX = ":waiters";
+
+    // Waiters are a sorted set of lock values, with the server time when their registration expires
+    // KEYS: waiters
+    // ARGV: waiter value, expiration millis
+    public static final String REGISTER_WAITER_LUA_SCRIPT = "" +
+            "redis.replicate_commands(); " + "\n" +
+            "local time = redis.call('time'); " + "\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000); " + "\n" +
+            "redis.call('zadd', KEYS[1], now + tonumber(ARGV[2]), ARGV[1]); " + "\n" +
+            "redis.call('pexpire', KEYS[1], ARGV[2]); " + "\n" +
+            "return 1; ";
+
+    // KEYS: waiters
+    // ARGV: waiter value
+    public static final String UNREGISTER_WAITER_LUA_SCRIPT = "" +
+            "redis.call('zrem', KEYS[1], ARGV[1]); " + "\n" +
+            "if redis.call('zcard', KEYS[1]) == 0 then " + "\n" +
+            "    redis.call('del', KEYS[1]); " + "\n" +
+            "end " + "\n" +
+            "return 1; ";
+
+    // KEYS: waiters
+    // Returns the waiters whose registration has not expired
+    public static final String COUNT_WAITERS_LUA_SCRIPT = "" +
+            "redis.replicate_commands(); " + "\n" +
+            "local time = redis.call('time'); " + "\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000); " + "\n" +
+            "redis.call('zremrangebyscore', KEYS[1], '-inf', now); " + "\n" +
+            "return redis.call('zcard', KEYS[1]); ";
+
+    // Waiters renew their registration every wait cycle,
+    // if a waiter process dies its registration is forgotten after this time
+    private static final long WAITERS_EXPIRATION_MILLIS = 10_000L;
+
     private final Long leaseTime;
     private final TimeUnit timeUnit;
     private final String name;
@@ -48,6 +83,9 @@ public class JedisLock implements IJedisLock {
 
     private long waitCylce = 300L;
 
+    private long yieldCheckInterval = 1000L;
+    private long lastYieldCheck = 0L;
+
     private static long lastCurrentTimeMilis = 0L;
 
     /**
@@ -98,6 +136,16 @@ public class JedisLock implements IJedisLock {
         this.waitCylce = timeUnit.toMillis(time);
     }
 
+    /**
+     * Minimum time between two checks of waiters in redis made by yieldIfContended
+     * Default is one second
+     * @param time Time between checks
+     * @param timeUnit Unit of time
+     */
+    public void setYieldCheckInterval(long time, TimeUnit timeUnit){
+        this.yieldCheckInterval = timeUnit.toMillis(time);
+    }
+
     @Override
     public Long getLeaseTime() {
         return leaseTime;
@@ -139,7 +187,7 @@ public class JedisLock implements IJedisLock {
     }
 
     // VisibleForTesting
-    private String getValue() {
+    String getValue() {
         return value;
     }
 
@@ -154,9 +202,17 @@ public class JedisLock implements IJedisLock {
     public synchronized boolean tryLockForAWhile(long time, TimeUnit unit) throws InterruptedException {
         long tryLockTimeLimit = System.currentTimeMillis() + unit.toMillis(time);
         boolean locked = redisLock();
-        while (!locked && tryLockTimeLimit > System.currentTimeMillis()) {
-            Thread.sleep(waitCylce);
-            locked = redisLock();
+        if (!locked && tryLockTimeLimit > System.currentTimeMillis()) {
+            registerWaiter();
+            try {
+                while (!locked && tryLockTimeLimit > System.currentTimeMillis()) {
+                    Thread.sleep(waitCylce);
+                    registerWaiter();
+                    locked = redisLock();
+                }
+            } finally {
+                unregisterWaiter();
+            }
         }
         return locked;
     }
@@ -165,12 +221,20 @@ public class JedisLock implements IJedisLock {
     @Override
     public synchronized void lock() {
         boolean locked = redisLock();
-        while (!locked) {
+        if (!locked) {
+            registerWaiter();
             try {
-                Thread.sleep(waitCylce);
-                locked = redisLock();
-            } catch (InterruptedException ie) {
-                log.debug("interrupted", ie);
+                while (!locked) {
+                    try {
+                        Thread.sleep(waitCylce);
+                        registerWaiter();
+                        locked = redisLock();
+                    } catch (InterruptedException ie) {
+                        log.debug("interrupted", ie);
+                    }
+                }
+            } finally {
+                unregisterWaiter();
             }
         }
     }
@@ -179,12 +243,58 @@ public class JedisLock implements IJedisLock {
     @Override
     public synchronized void lockInterruptibly() throws InterruptedException {
         boolean locked = redisLock();
-        while (!locked) {
-            Thread.sleep(waitCylce);
-            locked = redisLock();
+        if (!locked) {
+            registerWaiter();
+            try {
+                while (!locked) {
+                    Thread.sleep(waitCylce);
+                    registerWaiter();
+                    locked = redisLock();
+                }
+            } finally {
+                unregisterWaiter();
+            }
         }
     }
 
+    /**
+     * Checkpoint for long tasks that hold the lock
+     * If other clients are waiting for the lock, it is released and obtained again,
+     * giving a chance to the waiters (that can get the lock before this one)
+     * The check of waiters in redis is made at most once every yieldCheckInterval,
+     * the other calls return at once without going to redis
+     * If the lock is not held, nothing is done
+     * @return true if the lock has been released and obtained again
+     * @throws InterruptedException if interrupted while waiting to get the lock again,
+     *      in this case the lock is NOT held
+     */
+    public synchronized boolean yieldIfContended() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        if (leaseMoment == -1L || now - lastYieldCheck < yieldCheckInterval) {
+            return false;
+        }
+        lastYieldCheck = now;
+        if (getWaiters() <= 0) {
+            return false;
+        }
+        log.debug("yieldIfContended lock {} has waiters, yielding", name);
+        redisUnlock();
+        Thread.sleep(waitCylce);
+        lockInterruptibly();
+        return true;
+    }
+
+    /**
+     * Number of clients waiting in a loop to get this lock
+     * Clients that only make a try are not counted, nor the ones that have not renewed
+     * their registration (they are removed)
+     * @return number of waiters
+     */
+    public synchronized long getWaiters() {
+        Object oresult = jedis.eval(COUNT_WAITERS_LUA_SCRIPT, Arrays.asList(name + WAITERS_SUFFIX), Arrays.asList());
+        return oresult != null ? Long.parseLong(oresult.toString()) : 0L;
+    }
+
     @Override
     public synchronized boolean isLocked(){
         return redisCheckLock();
@@ -214,9 +324,10 @@ public class JedisLock implements IJedisLock {
      * Attempts to get the lock.
      * It will try one time and return
      * The leaseMoment and timeLimit are set if lock is obtained
+     * Locks with other acquisition rules override this
      * @return true if lock obtained, false otherwise
      */
-    private synchronized boolean redisLock() {
+    synchronized boolean redisLock() {
         SetParams setParams = new SetParams().nx();
         if (leaseTime != null) {
             setParams.px(timeUnit.toMillis(leaseTime));
@@ -234,7 +345,21 @@ public class JedisLock implements IJedisLock {
         return  locked;
     }
 
-    private void setLockMoment() {
+    /**
+     * Registers or renews the registration of this lock as waiter
+     * Locks that register their waiters in other way override this
+     */
+    void registerWaiter() {
+        long expiration = Math.max(WAITERS_EXPIRATION_MILLIS, waitCylce * 3);
+        jedis.eval(REGISTER_WAITER_LUA_SCRIPT, Arrays.asList(name + WAITERS_SUFFIX),
+                Arrays.asList(value, Long.toString(expiration)));
+    }
+
+    void unregisterWaiter() {
+        jedis.eval(UNREGISTER_WAITER_LUA_SCRIPT, Arrays.asList(name + WAITERS_SUFFIX), Arrays.asList(value));
+    }
+
+    void setLockMoment() {
         leaseMoment = System.currentTimeMillis();
         if (leaseTime != null){
             this.timeLimit = System.currentTimeMillis() +  timeUnit.toMillis(leaseTime);
@@ -0,0 +1,122 @@
+package org.obapanel.jedis.interruptinglocks;
+
+import org.obapanel.jedis.common.SharedJedisSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Remote revocation of locks
+ *
+ * An administrator can revoke a lock by its name: the lock is deleted in redis
+ * and a revocation message is published.
+ * The interrupting locks of the JVMs that are listening (see enableListening) and hold
+ * the lock with that name will interrupt their main thread and unlock at once,
+ * as if the lease time had expired.
+ *
+ * Only one subscription per JVM is used, with the shared subscriber of the pool
+ * Plain JedisLock (not interrupting) are deleted but the holder is not notified
+ */
+public final class JedisLockRevocation {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisLockRevocation.class);
+
+    public static final String REVOCATION_CHANNEL = "JedisLockRevocationChannel";
+
+    public static final String REVOKE_LUA_SCRIPT = "" +
+            "local existed = redis.call('del', KEYS[1]); " + "\n" +
+            "redis.call('publish', KEYS[2], ARGV[1]); " + "\n" +
+            "return existed; ";
+
+    private static final Map<String, Set<AbstractInterruptingJedisLock>> HELD_LOCKS = new HashMap<>();
+    private static final Consumer<String> REVOCATION_LISTENER = JedisLockRevocation::onRevocationMessage;
+    private static SharedJedisSubscriber sharedJedisSubscriber;
+
+    private JedisLockRevocation() {}
+
+    /**
+     * Revokes the lock with the given name
+     * The lock is deleted in redis and the listening holders are interrupted, even if the lock was
+     * not in redis anymore (a holder can be still running its critical zone)
+     * @param jedis Jedis client
+     * @param name Name of the lock
+     * @return true if the lock existed in redis
+     */
+    public static boolean revoke(Jedis jedis, String name) {
+        if (jedis == null) throw new IllegalArgumentException("Jedis can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        Object response = jedis.eval(REVOKE_LUA_SCRIPT, Arrays.asList(name, REVOCATION_CHANNEL), Arrays.asList(name));
+        boolean existed = response != null && Long.parseLong(response.toString()) > 0;
+        LOG.info("revoke lock {} existed {}", name, existed);
+        return existed;
+    }
+
+    /**
+     * Starts listening for revocation messages in this JVM, with the shared subscriber of the pool
+     * If it was already listening with other pool, the previous one is stopped
+     * @param jedisPool Pool of connections
+     */
+    public static synchronized void enableListening(JedisPool jedisPool) {
+        SharedJedisSubscriber newSharedJedisSubscriber = SharedJedisSubscriber.forPool(jedisPool);
+        if (newSharedJedisSubscriber != sharedJedisSubscriber) {
+            disableListening();
+            sharedJedisSubscriber = newSharedJedisSubscriber;
+            sharedJedisSubscriber.subscribe(REVOCATION_CHANNEL, REVOCATION_LISTENER);
+        }
+    }
+
+    /**
+     * Stops listening for revocation messages in this JVM
+     */
+    public static synchronized void disableListening() {
+        if (sharedJedisSubscriber != null) {
+            sharedJedisSubscriber.unsubscribe(REVOCATION_CHANNEL, REVOCATION_LISTENER);
+            sharedJedisSubscriber = null;
+        }
+    }
+
+    /**
+     * Checks if this JVM is listening for revocation messages
+     * @return true if listening
+     */
+    public static synchronized boolean isListening() {
+        return sharedJedisSubscriber != null;
+    }
+
+    /**
+     * Registers a lock that has been obtained, so it can be revoked
+     * @param lock Held lock
+     */
+    static synchronized void register(AbstractInterruptingJedisLock lock) {
+        HELD_LOCKS.computeIfAbsent(lock.getName(), k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(lock);
+    }
+
+    /**
+     * Unregisters a lock that is not held anymore
+     * @param lock Released lock
+     */
+    static synchronized void unregister(AbstractInterruptingJedisLock lock) {
+        Set<AbstractInterruptingJedisLock> locks = HELD_LOCKS.get(lock.getName());
+        if (locks != null && locks.remove(lock) && locks.isEmpty()) {
+            HELD_LOCKS.remove(lock.getName());
+        }
+    }
+
+    private static synchronized void onRevocationMessage(String name) {
+        Set<AbstractInterruptingJedisLock> locks = HELD_LOCKS.get(name);
+        if (locks != null) {
+            LOG.info("onRevocationMessage revoking {} locks with name {}", locks.size(), name);
+            locks.forEach(AbstractInterruptingJedisLock::interruptBeforeLeaseTime);
+        }
+    }
+
+}
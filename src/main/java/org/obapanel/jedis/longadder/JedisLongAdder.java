@@ -0,0 +1,274 @@
+package org.obapanel.jedis.longadder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Jedis implementation of a distributed counter for very high increment rates, like LongAdder
+ *
+ * The counter is split in stripes (sub keys in redis) and the adds of every thread go to one of them,
+ * chosen by the thread, so the increments do not meet on the same key. The sum is the sum of the stripes,
+ * read with only one MGET.
+ *
+ * With a flush interval (default 100 miliseconds) the adds are summed locally by stripe, and every interval
+ * the local deltas are sent to redis with one pipelined call of INCRBY. So, many adds cost one command,
+ * but the adds not flushed yet are not seen by other processes, and are lost if the process dies.
+ * With a flush interval of zero every add is sent to redis at the moment (write through).
+ * Call close (or flush) to send the pending adds when the counter will not be used again.
+ *
+ * Flushes are at most once: if a flush fails after sending the increments (e.g. a read timeout or a lost
+ * connection) redis may have applied some of them or not, so they are logged and dropped, never sent again.
+ * A counter can count less than the adds after an error, but never more.
+ * Only when the connection can not be obtained, nothing has been sent and the adds are kept for the next flush.
+ *
+ * All the counters with the same name should have the same stripes
+ */
+public class JedisLongAdder implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisLongAdder.class);
+
+    public static final String STRIPE_SUFFIX = ":stripe:";
+    public static final long DEFAULT_FLUSH_INTERVAL_MILIS = 100L;
+
+    private final JedisPool jedisPool;
+    private final String name;
+    private final int stripes;
+    private final String[] stripeKeys;
+    private final AtomicLong[] pendingDeltas;
+    private final Object flushLock = new Object();
+    private volatile long flushIntervalMilis = DEFAULT_FLUSH_INTERVAL_MILIS;
+    private volatile ScheduledExecutorService scheduledExecutorService;
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a new distributed adder
+     * @param jedisPool Pool of connections
+     * @param name Shared name
+     * @param stripes Number of stripes
+     */
+    public JedisLongAdder(JedisPool jedisPool, String name, int stripes) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        if (stripes <= 0) throw new IllegalArgumentException("stripes must be more than zero");
+        this.jedisPool = jedisPool;
+        this.name = name;
+        this.stripes = stripes;
+        this.stripeKeys = new String[stripes];
+        this.pendingDeltas = new AtomicLong[stripes];
+        for (int i = 0; i < stripes; i++) {
+            stripeKeys[i] = name + STRIPE_SUFFIX + i;
+            pendingDeltas[i] = new AtomicLong(0L);
+        }
+    }
+
+    /**
+     * Sets the time between flushes of the local adds to redis
+     * With zero, every add is sent to redis at the moment
+     * It must be set before the first add
+     * @param flushInterval time between flushes
+     * @param timeUnit unit of time
+     * @return this
+     */
+    public synchronized JedisLongAdder withFlushInterval(long flushInterval, TimeUnit timeUnit) {
+        if (flushInterval < 0) throw new IllegalArgumentException("Flush interval can not be less than zero");
+        if (scheduledExecutorService != null) throw new IllegalStateException("Flush interval must be set before the first add");
+        this.flushIntervalMilis = timeUnit.toMillis(flushInterval);
+        return this;
+    }
+
+    /**
+     * Returns the adder name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of stripes
+     * @return stripes
+     */
+    public int getStripes() {
+        return stripes;
+    }
+
+    /**
+     * Adds one
+     */
+    public void increment() {
+        add(1L);
+    }
+
+    /**
+     * Substracts one
+     */
+    public void decrement() {
+        add(-1L);
+    }
+
+    /**
+     * Adds the value to the stripe of the current thread
+     * @param value value to add
+     */
+    public void add(long value) {
+        int stripe = (int) Math.floorMod(Thread.currentThread().getId(), (long) stripes);
+        if (flushIntervalMilis == 0) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.incrBy(stripeKeys[stripe], value);
+            }
+        } else {
+            if (scheduledExecutorService == null || closed) {
+                lazyStartFlusher();
+            }
+            pendingDeltas[stripe].addAndGet(value);
+            if (closed) {
+                // Closed while adding, the final flush may have been made before this add
+                flush();
+            }
+        }
+    }
+
+    private synchronized void lazyStartFlusher() {
+        if (closed) throw new IllegalStateException("JedisLongAdder is closed");
+        if (scheduledExecutorService == null) {
+            scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                thread.setName("JedisLongAdder_thread_" + name);
+                return thread;
+            });
+            scheduledExecutorService.scheduleWithFixedDelay(this::scheduledFlush, flushIntervalMilis, flushIntervalMilis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOG.error("scheduledFlush error on adder {}", name, e);
+        }
+    }
+
+    /**
+     * Sends the local adds to redis now, with one pipelined call
+     * If a connection can not be obtained, the adds are kept locally for the next flush;
+     * if the call fails after that, the adds are dropped (at most once)
+     * Only one flush is made at a time, so when it returns the previous flushes have finished
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            redisFlush();
+        }
+    }
+
+    private void redisFlush() {
+        long[] deltas = new long[stripes];
+        boolean anyDelta = false;
+        for (int i = 0; i < stripes; i++) {
+            deltas[i] = pendingDeltas[i].getAndSet(0L);
+            anyDelta = anyDelta || deltas[i] != 0L;
+        }
+        if (!anyDelta) {
+            return;
+        }
+        Jedis jedis;
+        try {
+            jedis = jedisPool.getResource();
+        } catch (RuntimeException e) {
+            // Nothing has been sent, the adds are kept for the next flush
+            for (int i = 0; i < stripes; i++) {
+                pendingDeltas[i].addAndGet(deltas[i]);
+            }
+            throw e;
+        }
+        try {
+            Pipeline pipeline = jedis.pipelined();
+            for (int i = 0; i < stripes; i++) {
+                if (deltas[i] != 0L) {
+                    pipeline.incrBy(stripeKeys[i], deltas[i]);
+                }
+            }
+            pipeline.sync();
+            LOG.debug("flush adder {}", name);
+        } catch (RuntimeException e) {
+            // Some increments may have been applied, sending them again could count them twice
+            LOG.error("flush error on adder {}, the adds of this flush are dropped {}", name, Arrays.toString(deltas), e);
+            throw e;
+        } finally {
+            jedis.close();
+        }
+    }
+
+    /**
+     * Returns the sum of the counter in redis plus the adds of this object not flushed yet
+     * The adds of other objects not flushed yet are not seen
+     * @return sum
+     */
+    public long sum() {
+        long sum = sumFlushed();
+        for (AtomicLong pendingDelta : pendingDeltas) {
+            sum += pendingDelta.get();
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the counter in redis, with only one read
+     * @return sum of the stripes
+     */
+    public long sumFlushed() {
+        long sum = 0L;
+        try (Jedis jedis = jedisPool.getResource()) {
+            for (String value : jedis.mget(stripeKeys)) {
+                if (value != null && !value.isEmpty()) {
+                    sum += Long.parseLong(value);
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Stops the flushes and sends the pending adds to redis
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (scheduledExecutorService != null) {
+                scheduledExecutorService.shutdown();
+            }
+        }
+        flush();
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUES DESTROYING THIS ADDER AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public void destroy() {
+        synchronized (this) {
+            closed = true;
+            if (scheduledExecutorService != null) {
+                scheduledExecutorService.shutdownNow();
+            }
+        }
+        for (AtomicLong pendingDelta : pendingDeltas) {
+            pendingDelta.set(0L);
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(stripeKeys);
+        }
+    }
+
+}
@@ -0,0 +1,410 @@
+package org.obapanel.jedis.phaser;
+
+import org.obapanel.jedis.common.SharedJedisSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Jedis implemetation of a Phaser, like java.util.concurrent.Phaser
+ *
+ * Parties, in one or many different processes, can register and deregister at any moment;
+ * and they arrive to every phase. When all the registered parties have arrived, the phase advances.
+ * All the Phaser on different threads and processes must share the same name to synchronize.
+ *
+ * The phaser is a redis hash with the phase, the registered parties and the unarrived parties,
+ * and every operation is one script. The arrival that advances the phase publishes a message,
+ * so the parties that wait for the advance wake at once.
+ * If the last party deregisters, the phaser is terminated, and the phase is negative.
+ *
+ * Messages are received by the shared subscriber of the pool; as messages can be lost (e.g. a reconnection),
+ * waiters check redis every safety wait time anyway.
+ * The first created Phaser assigns the initial parties to the shared value; next ones don't change it
+ * Call close when the phaser will not be used again, to stop receiving messages
+ */
+public class JedisPhaser implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisPhaser.class);
+
+    public static final String JEDIS_PHASER_CHANNEL_PREFIX = "JedisPhaserChannel:";
+
+    public static final String PHASE = "phase";
+    public static final String PARTIES = "parties";
+    public static final String UNARRIVED = "unarrived";
+
+    public static final int TERMINATED = -1;
+    public static final int ILLEGAL_ARRIVAL = -2;
+
+    // Common part of scripts: advance function
+    // KEYS: phaser, channel
+    private static final String PHASER_LUA_SCRIPT_PART = "" +
+            "local phase = tonumber(redis.call('hget', KEYS[1], '" + PHASE + "') or '" + TERMINATED + "'); " + "\n" +
+            "local function advance() " + "\n" +
+            "    local parties = tonumber(redis.call('hget', KEYS[1], '" + PARTIES + "')); " + "\n" +
+            "    local nextPhase = " + TERMINATED + "; " + "\n" +
+            "    if parties > 0 then " + "\n" +
+            "        nextPhase = (phase + 1) % 2147483648; " + "\n" +
+            "    end " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + PHASE + "', nextPhase); " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + UNARRIVED + "', parties); " + "\n" +
+            "    redis.call('publish', KEYS[2], nextPhase); " + "\n" +
+            "end " + "\n";
+
+    // ARGV: initial parties
+    public static final String PHASER_INIT_LUA_SCRIPT = "" +
+            "if redis.call('exists', KEYS[1]) == 0 then " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + PHASE + "', 0); " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + PARTIES + "', ARGV[1]); " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + UNARRIVED + "', ARGV[1]); " + "\n" +
+            "end " + "\n" +
+            "return 1; ";
+
+    // ARGV: parties to register
+    // Returns the current phase
+    public static final String PHASER_REGISTER_LUA_SCRIPT = PHASER_LUA_SCRIPT_PART +
+            "if phase >= 0 then " + "\n" +
+            "    redis.call('hincrby', KEYS[1], '" + PARTIES + "', ARGV[1]); " + "\n" +
+            "    redis.call('hincrby', KEYS[1], '" + UNARRIVED + "', ARGV[1]); " + "\n" +
+            "end " + "\n" +
+            "return phase; ";
+
+    // ARGV: deregister (1/0)
+    // Returns the arrival phase, -1 if terminated, -2 if there are no unarrived parties
+    public static final String PHASER_ARRIVE_LUA_SCRIPT = PHASER_LUA_SCRIPT_PART +
+            "if phase < 0 then " + "\n" +
+            "    return phase; " + "\n" +
+            "end " + "\n" +
+            "if tonumber(redis.call('hget', KEYS[1], '" + UNARRIVED + "')) <= 0 then " + "\n" +
+            "    return " + ILLEGAL_ARRIVAL + "; " + "\n" +
+            "end " + "\n" +
+            "local unarrived = redis.call('hincrby', KEYS[1], '" + UNARRIVED + "', -1); " + "\n" +
+            "if ARGV[1] == '1' then " + "\n" +
+            "    redis.call('hincrby', KEYS[1], '" + PARTIES + "', -1); " + "\n" +
+            "end " + "\n" +
+            "if unarrived <= 0 then " + "\n" +
+            "    advance(); " + "\n" +
+            "end " + "\n" +
+            "return phase; ";
+
+    public static final String PHASER_TERMINATE_LUA_SCRIPT = PHASER_LUA_SCRIPT_PART +
+            "if phase >= 0 then " + "\n" +
+            "    redis.call('hset', KEYS[1], '" + PHASE + "', " + TERMINATED + "); " + "\n" +
+            "    redis.call('publish', KEYS[2], " + TERMINATED + "); " + "\n" +
+            "end " + "\n" +
+            "return " + TERMINATED + "; ";
+
+    private final JedisPool jedisPool;
+    private final String name;
+    private final String channelName;
+    private final List<String> keys;
+    private final Object advanceMonitor = new Object();
+    private final Consumer<String> advanceListener = this::onAdvanceMessage;
+    private long messageCount = 0L;
+    private boolean subscribed = false;
+    private long safetyWaitMilis = 1000L;
+
+    /**
+     * Creates a new shared Phaser without parties
+     * @param jedisPool Pool of connections
+     * @param name Shared name
+     */
+    public JedisPhaser(JedisPool jedisPool, String name) {
+        this(jedisPool, name, 0);
+    }
+
+    /**
+     * Creates a new shared Phaser
+     * @param jedisPool Pool of connections
+     * @param name Shared name
+     * @param parties Initial registered parties
+     */
+    public JedisPhaser(JedisPool jedisPool, String name, int parties) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        if (parties < 0) throw new IllegalArgumentException("parties on phaser must be always equal or more than zero");
+        this.jedisPool = jedisPool;
+        this.name = name;
+        this.channelName = JEDIS_PHASER_CHANNEL_PREFIX + name;
+        this.keys = Arrays.asList(name, channelName);
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.eval(PHASER_INIT_LUA_SCRIPT, Collections.singletonList(name), Collections.singletonList(String.valueOf(parties)));
+        }
+    }
+
+    /**
+     * Maximum time to wait for a message before checking redis again
+     * @param safetyWaitMilis time in milis
+     * @return this
+     */
+    public JedisPhaser withSafetyWaitMilis(long safetyWaitMilis) {
+        if (safetyWaitMilis <= 0) throw new IllegalArgumentException("Safety wait time must be more than zero");
+        this.safetyWaitMilis = safetyWaitMilis;
+        return this;
+    }
+
+    /**
+     * Returns the phaser name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Registers a new party
+     * @return the current phase, negative if terminated
+     */
+    public int register() {
+        return bulkRegister(1);
+    }
+
+    /**
+     * Registers new parties
+     * @param parties parties to register
+     * @return the current phase, negative if terminated
+     */
+    public int bulkRegister(int parties) {
+        if (parties < 0) throw new IllegalArgumentException("parties to register must be equal or more than zero");
+        return redisScript(PHASER_REGISTER_LUA_SCRIPT, String.valueOf(parties));
+    }
+
+    /**
+     * Arrives to the phase, without waiting
+     * @return the arrival phase, negative if terminated
+     */
+    public int arrive() {
+        return redisArrive(false);
+    }
+
+    /**
+     * Arrives to the phase and deregisters, without waiting
+     * If it is the last party, the phaser is terminated
+     * @return the arrival phase, negative if terminated
+     */
+    public int arriveAndDeregister() {
+        return redisArrive(true);
+    }
+
+    /**
+     * Arrives to the phase and waits for the others
+     * @return the next phase, negative if terminated
+     * @throws InterruptedException if interrupted
+     */
+    public int arriveAndAwaitAdvance() throws InterruptedException {
+        int phase = arrive();
+        if (phase < 0) {
+            return phase;
+        }
+        return awaitAdvance(phase);
+    }
+
+    private int redisArrive(boolean deregister) {
+        int phase = redisScript(PHASER_ARRIVE_LUA_SCRIPT, deregister ? "1" : "0");
+        LOG.debug("arrive phaser {} phase {} deregister {}", name, phase, deregister);
+        if (phase == ILLEGAL_ARRIVAL) {
+            throw new IllegalStateException("Arrival without unarrived parties on phaser " + name);
+        }
+        return phase;
+    }
+
+    /**
+     * Waits for the phase to advance, if the current phase is the given one
+     * @param phase phase to wait
+     * @return the next phase, negative if terminated
+     * @throws InterruptedException if interrupted
+     */
+    public int awaitAdvance(int phase) throws InterruptedException {
+        try {
+            return waitForAdvance(phase, Long.MAX_VALUE);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Timeout without time limit on phaser " + name, e);
+        }
+    }
+
+    /**
+     * Waits for the phase to advance, if the current phase is the given one, or time passes
+     * @param phase phase to wait
+     * @param timeout Maximim time to wait
+     * @param unit wait time unit
+     * @return the next phase, negative if terminated
+     * @throws InterruptedException if interrupted
+     * @throws TimeoutException if the time passes
+     */
+    public int awaitAdvance(int phase, long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        return waitForAdvance(phase, System.currentTimeMillis() + unit.toMillis(timeout));
+    }
+
+    /**
+     * Waits until the phase is not the given one
+     * The phase is read after subscribing and after every message or safety wait
+     * @param phase phase to wait
+     * @param timeMax system time limit
+     * @return the current phase
+     */
+    private int waitForAdvance(int phase, long timeMax) throws InterruptedException, TimeoutException {
+        if (phase < 0) {
+            return phase;
+        }
+        while (true) {
+            long currentMessageCount = getMessageCount();
+            int currentPhase = getPhase();
+            if (currentPhase != phase) {
+                return currentPhase;
+            }
+            long remaining = timeMax - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new TimeoutException("Timeout waiting on phaser " + name);
+            }
+            if (lazySubscribe()) {
+                // Check again, the message may have been sent before the subscription
+                continue;
+            }
+            synchronized (advanceMonitor) {
+                if (currentMessageCount == messageCount) {
+                    advanceMonitor.wait(Math.min(safetyWaitMilis, remaining));
+                }
+            }
+        }
+    }
+
+    /**
+     * Subscribes to the advance messages the first time it is needed
+     * @return true if it has been subscribed now
+     * @throws InterruptedException if interrupted
+     */
+    private boolean lazySubscribe() throws InterruptedException {
+        SharedJedisSubscriber sharedJedisSubscriber;
+        synchronized (advanceMonitor) {
+            if (subscribed) {
+                return false;
+            }
+            subscribed = true;
+            sharedJedisSubscriber = SharedJedisSubscriber.forPool(jedisPool);
+        }
+        LOG.debug("lazySubscribe phaser {}", name);
+        sharedJedisSubscriber.subscribe(channelName, advanceListener);
+        sharedJedisSubscriber.awaitSubscription(channelName, safetyWaitMilis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private long getMessageCount() {
+        synchronized (advanceMonitor) {
+            return messageCount;
+        }
+    }
+
+    private void onAdvanceMessage(String message) {
+        synchronized (advanceMonitor) {
+            messageCount++;
+            advanceMonitor.notifyAll();
+        }
+    }
+
+    private int redisScript(String script, String argument) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object oresult = jedis.eval(script, keys, Collections.singletonList(argument));
+            return Integer.parseInt(oresult.toString());
+        }
+    }
+
+    /**
+     * Terminates the phaser, the parties that wait are released
+     */
+    public void forceTermination() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.eval(PHASER_TERMINATE_LUA_SCRIPT, keys, Collections.emptyList());
+        }
+    }
+
+    /**
+     * Returns the current phase
+     * @return phase, negative if terminated
+     */
+    public int getPhase() {
+        return getIntField(PHASE, TERMINATED);
+    }
+
+    /**
+     * Returns the registered parties
+     * @return parties
+     */
+    public int getRegisteredParties() {
+        return getIntField(PARTIES, 0);
+    }
+
+    /**
+     * Returns the parties that have not arrived to the current phase
+     * @return unarrived parties
+     */
+    public int getUnarrivedParties() {
+        return getIntField(UNARRIVED, 0);
+    }
+
+    /**
+     * Returns the parties that have arrived to the current phase
+     * @return arrived parties
+     */
+    public int getArrivedParties() {
+        List<String> values;
+        try (Jedis jedis = jedisPool.getResource()) {
+            values = jedis.hmget(name, PARTIES, UNARRIVED);
+        }
+        if (values.get(0) == null || values.get(1) == null) {
+            return 0;
+        }
+        return Integer.parseInt(values.get(0)) - Integer.parseInt(values.get(1));
+    }
+
+    /**
+     * Checks if the phaser is terminated
+     * @return true if terminated
+     */
+    public boolean isTerminated() {
+        return getPhase() < 0;
+    }
+
+    private int getIntField(String field, int defaultValue) {
+        String value;
+        try (Jedis jedis = jedisPool.getResource()) {
+            value = jedis.hget(name, field);
+        }
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    /**
+     * Stops receiving messages
+     * The phaser can be used again, but it will subscribe again if it needs to wait
+     */
+    @Override
+    public void close() {
+        boolean wasSubscribed;
+        synchronized (advanceMonitor) {
+            wasSubscribed = subscribed;
+            subscribed = false;
+        }
+        if (wasSubscribed) {
+            SharedJedisSubscriber.forPool(jedisPool).unsubscribe(channelName, advanceListener);
+        }
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUE DESTROYING THIS PHASER AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public void destroy(){
+        close();
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(name);
+        }
+    }
+
+}
@@ -0,0 +1,344 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A redis/jedis concurrency limiter whose limit adapts to the observed latency and errors
+ *
+ * Instead of a fixed number of permits, the semaphore has a shared limit and a shared set of operations in flight.
+ * An operation can start if the operations in flight are less than the limit.
+ *
+ * Every operation in flight is a lease in a sorted set by expiration time (lease time, default 60 seconds).
+ * Expired leases are removed by the scripts with the redis server time, so if a client dies between
+ * acquire and release its operations are recovered when their leases expire.
+ * Operations that last more than the lease time are not counted anymore.
+ *
+ * Clients report the latency and the result of every operation when they release it. The reports are
+ * aggregated locally and sent in batches within the release script, so no extra call is made.
+ * With every batch the limit is adjusted with AIMD (additive increase, multiplicative decrease):
+ * - if there are failures or the mean latency is over the threshold, the limit is multiplied by the backoff ratio
+ * - if not, the limit is increased by one only if the operations in flight have reached the limit since the
+ *   last adjustment; if there was free capacity, there is no evidence that more can be used
+ * The limit is always between the minimum and the maximum
+ *
+ * The first semaphore that is created in redis assigns the initial limit; next ones don't change it
+ */
+public class JedisAdaptiveSemaphore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisAdaptiveSemaphore.class);
+
+    public static final String IN_FLIGHT_SUFFIX = ":inFlight";
+    public static final String LIMIT_SUFFIX = ":limit";
+    public static final String SATURATED_SUFFIX = ":saturated";
+    public static final long DEFAULT_LEASE_MILIS = 60_000L;
+
+    // Common part of scripts, removes expired operations
+    // KEYS: in flight zset, limit, saturated
+    private static final String EXPIRE_IN_FLIGHT_LUA_SCRIPT_PART = "" +
+            "redis.replicate_commands(); " + "\n" +
+            "local time = redis.call('time'); " + "\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000); " + "\n" +
+            "redis.call('zremrangebyscore', KEYS[1], '-inf', now); " + "\n";
+
+    // ARGV: token, lease millis
+    public static final String ADAPTIVE_ACQUIRE_LUA_SCRIPT = EXPIRE_IN_FLIGHT_LUA_SCRIPT_PART +
+            "local limit = redis.call('get', KEYS[2]); " + "\n" +
+            "if limit == false then " + "\n" +
+            "    return 'false'; " + "\n" +
+            "end " + "\n" +
+            "limit = math.floor(tonumber(limit)); " + "\n" +
+            "local inFlight = redis.call('zcard', KEYS[1]); " + "\n" +
+            "if inFlight + 1 >= limit then " + "\n" +
+            "    redis.call('set', KEYS[3], '1'); " + "\n" +
+            "end " + "\n" +
+            "if inFlight + 1 <= limit then " + "\n" +
+            "    redis.call('zadd', KEYS[1], now + tonumber(ARGV[2]), ARGV[1]); " + "\n" +
+            "    return 'true'; " + "\n" +
+            "else " + "\n" +
+            "    return 'false'; " + "\n" +
+            "end ";
+
+    // KEYS: in flight zset, limit, saturated
+    // ARGV: token, reports, failures, mean latency, latency threshold, backoff ratio, min limit, max limit
+    public static final String ADAPTIVE_RELEASE_LUA_SCRIPT = "" +
+            "redis.call('zrem', KEYS[1], ARGV[1]); " + "\n" +
+            "local limit = redis.call('get', KEYS[2]); " + "\n" +
+            "if (tonumber(ARGV[2]) > 0 and limit ~= false) then " + "\n" +
+            "    limit = tonumber(limit); " + "\n" +
+            "    if (tonumber(ARGV[3]) > 0 or tonumber(ARGV[4]) > tonumber(ARGV[5])) then " + "\n" +
+            "        limit = limit * tonumber(ARGV[6]); " + "\n" +
+            "    elseif redis.call('exists', KEYS[3]) == 1 then " + "\n" +
+            "        limit = limit + 1; " + "\n" +
+            "    end " + "\n" +
+            "    redis.call('del', KEYS[3]); " + "\n" +
+            "    limit = math.max(tonumber(ARGV[7]), math.min(tonumber(ARGV[8]), limit)); " + "\n" +
+            "    redis.call('set', KEYS[2], string.format('%.4f', limit)); " + "\n" +
+            "end " + "\n" +
+            "return 'true'; ";
+
+    public static final String ADAPTIVE_IN_FLIGHT_LUA_SCRIPT = EXPIRE_IN_FLIGHT_LUA_SCRIPT_PART +
+            "return redis.call('zcard', KEYS[1]); ";
+
+    private final Jedis jedis;
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final List<String> keys;
+    private final Deque<String> heldTokens = new ArrayDeque<>();
+    private long leaseMilis = DEFAULT_LEASE_MILIS;
+    private long waitingMilis = 150;
+    private long latencyThresholdMilis = 1000;
+    private double backoffRatio = 0.9;
+    private int reportBatchSize = 10;
+    private long reportBatchMilis = 1000;
+
+    private int reports = 0;
+    private int failures = 0;
+    private long latencySumMilis = 0L;
+    private long firstReportMoment = 0L;
+
+    /**
+     * Creates an adaptive semaphore
+     * @param jedis Jedis connection
+     * @param name Name of the semaphore
+     * @param initialLimit Initial limit of operations in flight
+     * @param minLimit Minimum limit
+     * @param maxLimit Maximum limit
+     */
+    public JedisAdaptiveSemaphore(Jedis jedis, String name, int initialLimit, int minLimit, int maxLimit) {
+        if (jedis == null) throw new IllegalArgumentException("Jedis can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        if (minLimit <= 0 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("limits must be 0 < minLimit <= initialLimit <= maxLimit");
+        }
+        this.jedis = jedis;
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.keys = Arrays.asList(name + IN_FLIGHT_SUFFIX, name + LIMIT_SUFFIX, name + SATURATED_SUFFIX);
+        jedis.set(name + LIMIT_SUFFIX, String.valueOf(initialLimit), new SetParams().nx());
+    }
+
+    /**
+     * Wait time between polling attemts
+     * @param waitingMilis time in milis
+     * @return this
+     */
+    public JedisAdaptiveSemaphore withWaitingMilis(long waitingMilis) {
+        this.waitingMilis = waitingMilis;
+        return this;
+    }
+
+    /**
+     * Time that an operation in flight is counted if it is not released
+     * Operations that last more than this time are not counted anymore
+     * @param leaseTime lease time
+     * @param timeUnit unit of lease time
+     * @return this
+     */
+    public JedisAdaptiveSemaphore withLeaseTime(long leaseTime, TimeUnit timeUnit) {
+        if (leaseTime <= 0 || timeUnit == null) throw new IllegalArgumentException("Lease time must be more than zero");
+        this.leaseMilis = timeUnit.toMillis(leaseTime);
+        return this;
+    }
+
+    /**
+     * Mean latency over which the limit is decreased
+     * @param latencyThreshold latency
+     * @param timeUnit unit of latency
+     * @return this
+     */
+    public JedisAdaptiveSemaphore withLatencyThreshold(long latencyThreshold, TimeUnit timeUnit) {
+        this.latencyThresholdMilis = timeUnit.toMillis(latencyThreshold);
+        return this;
+    }
+
+    /**
+     * Ratio to multiply the limit when decreasing, between 0 and 1
+     * @param backoffRatio ratio
+     * @return this
+     */
+    public JedisAdaptiveSemaphore withBackoffRatio(double backoffRatio) {
+        if (backoffRatio <= 0.0 || backoffRatio >= 1.0) throw new IllegalArgumentException("backoff ratio must be between 0 and 1");
+        this.backoffRatio = backoffRatio;
+        return this;
+    }
+
+    /**
+     * Reports are sent to redis when there are these reports, or this time has passed since the first one
+     * @param reportBatchSize number of reports
+     * @param reportBatchMilis time in milis
+     * @return this
+     */
+    public JedisAdaptiveSemaphore withReportBatch(int reportBatchSize, long reportBatchMilis) {
+        if (reportBatchSize <= 0) throw new IllegalArgumentException("report batch size must be more than zero");
+        this.reportBatchSize = reportBatchSize;
+        this.reportBatchMilis = reportBatchMilis;
+        return this;
+    }
+
+    /**
+     * Returns the sempahore name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Acquires one permit, waiting (and polling) if the limit is reached
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire() throws InterruptedException {
+        boolean acquired = redisAcquire();
+        while(!acquired) {
+            Thread.sleep(waitingMilis);
+            acquired = redisAcquire();
+        }
+    }
+
+    /**
+     * Tries to acquire one permit, but doesn't wait
+     * @return true if permit acquired, false otherwise
+     */
+    public boolean tryAcquire() {
+        return redisAcquire();
+    }
+
+    /**
+     * Tries to acquire one permit, waiting a limited time
+     * @param timeOut timeout to wait
+     * @param timeUnit unit of timeout
+     * @return true if permit acquired, false otherwise
+     * @throws InterruptedException can be interrupted
+     */
+    public boolean tryAcquire(long timeOut, TimeUnit timeUnit) throws InterruptedException {
+        long timeMax = System.currentTimeMillis() + timeUnit.toMillis(timeOut);
+        boolean acquired = redisAcquire();
+        boolean exired = System.currentTimeMillis() > timeMax;
+        while(!acquired && !exired) {
+            Thread.sleep(waitingMilis);
+            exired = System.currentTimeMillis() > timeMax;
+            if (!exired) {
+                acquired = redisAcquire();
+            }
+        }
+        return acquired;
+    }
+
+    private synchronized boolean redisAcquire() {
+        String token = name + "_" + System.currentTimeMillis() + "_" + ThreadLocalRandom.current().nextLong(1_000_000_000L);
+        Object oresult = jedis.eval(ADAPTIVE_ACQUIRE_LUA_SCRIPT, keys, Arrays.asList(token, String.valueOf(leaseMilis)));
+        boolean acquired = Boolean.parseBoolean((String) oresult);
+        if (acquired) {
+            heldTokens.add(token);
+        }
+        return acquired;
+    }
+
+    /**
+     * Releases one permit without reporting
+     * The permit released is one of the acquired by this object
+     * Pending reports are sent if the batch is complete
+     */
+    public void release() {
+        redisRelease();
+    }
+
+    /**
+     * Releases one permit and reports the result of the operation
+     * @param latency latency of the operation
+     * @param timeUnit unit of latency
+     * @param success true if the operation has been successful
+     */
+    public synchronized void release(long latency, TimeUnit timeUnit, boolean success) {
+        report(latency, timeUnit, success);
+        redisRelease();
+    }
+
+    /**
+     * Reports the result of an operation, it will be sent with the next release
+     * @param latency latency of the operation
+     * @param timeUnit unit of latency
+     * @param success true if the operation has been successful
+     */
+    public synchronized void report(long latency, TimeUnit timeUnit, boolean success) {
+        if (reports == 0) {
+            firstReportMoment = System.currentTimeMillis();
+        }
+        reports++;
+        latencySumMilis += timeUnit.toMillis(latency);
+        if (!success) {
+            failures++;
+        }
+    }
+
+    private synchronized void redisRelease() {
+        boolean sendReports = reports > 0 &&
+                (reports >= reportBatchSize || System.currentTimeMillis() - firstReportMoment >= reportBatchMilis);
+        int currentReports = sendReports ? reports : 0;
+        long meanLatency = sendReports ? latencySumMilis / reports : 0L;
+        String token = heldTokens.pollLast();
+        if (token == null) {
+            LOG.warn("redisRelease semaphore {} without permits acquired by this object", name);
+            token = "";
+        }
+        jedis.eval(ADAPTIVE_RELEASE_LUA_SCRIPT, keys,
+                Arrays.asList(token, String.valueOf(currentReports), String.valueOf(failures), String.valueOf(meanLatency),
+                        String.valueOf(latencyThresholdMilis), String.format(Locale.ROOT, "%.4f", backoffRatio),
+                        String.valueOf(minLimit), String.valueOf(maxLimit)));
+        if (sendReports) {
+            LOG.debug("redisRelease semaphore {} sent reports {} failures {} meanLatency {}", name, reports, failures, meanLatency);
+            reports = 0;
+            failures = 0;
+            latencySumMilis = 0L;
+        }
+    }
+
+    /**
+     * Current limit of operations in flight
+     * If value doesn't exists, it returns -1
+     * @return limit
+     */
+    public int getLimit() {
+        String limit = jedis.get(name + LIMIT_SUFFIX);
+        if (limit == null || limit.isEmpty()) {
+            return -1;
+        } else {
+            return (int) Math.floor(Double.parseDouble(limit));
+        }
+    }
+
+    /**
+     * Current operations in flight, after removing the expired ones
+     * @return operations in flight
+     */
+    public synchronized int getInFlight() {
+        Object oresult = jedis.eval(ADAPTIVE_IN_FLIGHT_LUA_SCRIPT, keys, Collections.emptyList());
+        return oresult != null ? Integer.parseInt(oresult.toString()) : 0;
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUES DESTROYING THIS SEMAPHORE AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public synchronized void destroy() {
+        heldTokens.clear();
+        keys.forEach(jedis::del);
+    }
+
+}
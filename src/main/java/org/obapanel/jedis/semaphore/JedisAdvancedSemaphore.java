@@ -28,6 +28,9 @@ import java.util.concurrent.locks.ReentrantLock;
  * So for a semaphore with messages we must use two connection and a new background thread; and manage them.
  * For this cause, I prefer the JedisSemaphore implementation with polling.
  * But this is here for anyone to use or refactor
+ *
+ * See JedisNotifiedSemaphore, that waits for messages with a shared subscriber
+ * and does not need these extra connections and threads
  */
 @Deprecated
 public class JedisAdvancedSemaphore {
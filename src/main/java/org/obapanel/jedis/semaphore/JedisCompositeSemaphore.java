@@ -0,0 +1,174 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acquires permits from various JedisSemaphore at the same time, all or none
+ *
+ * Useful for quotas: a global limit and a limit per tenant must be obtained together;
+ * if any semaphore has not enough permits, no permit is taken from any one
+ * Acquire and release are only one script call each, so no permits are leaked on failures
+ *
+ * The semaphores are the same ones of JedisSemaphore (same name, same value), and they must be created
+ * (initialized) before with JedisSemaphore; a semaphore that does not exist has no permits
+ *
+ * With hierarchy a chain of names like global, global:tenant, global:tenant:user can be declared
+ */
+public class JedisCompositeSemaphore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisCompositeSemaphore.class);
+
+    public static final String HIERARCHY_SEPARATOR = ":";
+
+    // KEYS: semaphores, ARGV: permits of every semaphore
+    public static final String COMPOSITE_ACQUIRE_LUA_SCRIPT = "" +
+            "for i = 1, #KEYS do " + "\n" +
+            "    local permits = redis.call('get', KEYS[i]); " + "\n" +
+            "    if (permits == false or tonumber(permits) < tonumber(ARGV[i])) then " + "\n" +
+            "        return 'false'; " + "\n" +
+            "    end " + "\n" +
+            "end " + "\n" +
+            "for i = 1, #KEYS do " + "\n" +
+            "    redis.call('decrby', KEYS[i], ARGV[i]); " + "\n" +
+            "end " + "\n" +
+            "return 'true'; ";
+
+    // KEYS: semaphores, ARGV: permits of every semaphore
+    public static final String COMPOSITE_RELEASE_LUA_SCRIPT = "" +
+            "for i = 1, #KEYS do " + "\n" +
+            "    redis.call('incrby', KEYS[i], ARGV[i]); " + "\n" +
+            "end " + "\n" +
+            "return 'true'; ";
+
+    /**
+     * Creates a composite semaphore of a hierarchy of names, taking the same permits of every level
+     * The name of every level is the name of the previous one, the separator and the level
+     * For example, levels (quota, tenantA, user1) are the semaphores quota, quota:tenantA and quota:tenantA:user1
+     * @param jedis Jedis connection
+     * @param permits Permits to take from every level
+     * @param levels Levels of the hierarchy, from the top
+     * @return composite semaphore
+     */
+    public static JedisCompositeSemaphore hierarchy(Jedis jedis, int permits, String... levels) {
+        if (levels == null || levels.length == 0) throw new IllegalArgumentException("Hierarchy must have one level or more");
+        Map<String, Integer> permitsBySemaphore = new LinkedHashMap<>();
+        StringBuilder name = new StringBuilder();
+        for (String level : levels) {
+            if (name.length() > 0) {
+                name.append(HIERARCHY_SEPARATOR);
+            }
+            name.append(level);
+            permitsBySemaphore.put(name.toString(), permits);
+        }
+        return new JedisCompositeSemaphore(jedis, permitsBySemaphore);
+    }
+
+    private final Jedis jedis;
+    private final List<String> names;
+    private final List<String> permits;
+    private long waitingMilis = 150;
+
+    /**
+     * Creates a composite semaphore
+     * @param jedis Jedis connection
+     * @param permitsBySemaphore Permits to take from every semaphore, by name
+     */
+    public JedisCompositeSemaphore(Jedis jedis, Map<String, Integer> permitsBySemaphore) {
+        if (jedis == null) throw new IllegalArgumentException("Jedis can not be null");
+        if (permitsBySemaphore == null || permitsBySemaphore.isEmpty()) throw new IllegalArgumentException("Semaphores can not be null nor empty");
+        List<String> currentNames = new ArrayList<>(permitsBySemaphore.size());
+        List<String> currentPermits = new ArrayList<>(permitsBySemaphore.size());
+        for (Map.Entry<String, Integer> entry : permitsBySemaphore.entrySet()) {
+            if (entry.getKey() == null || entry.getKey().trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+            if (entry.getValue() == null || entry.getValue() <= 0) throw new IllegalArgumentException("permits to acquire on semaphore must be always more than zero");
+            currentNames.add(entry.getKey());
+            currentPermits.add(String.valueOf(entry.getValue()));
+        }
+        this.jedis = jedis;
+        this.names = Collections.unmodifiableList(currentNames);
+        this.permits = Collections.unmodifiableList(currentPermits);
+    }
+
+    /**
+     * Wait time between polling attemts
+     * @param waitingMilis time in milis
+     * @return this
+     */
+    public JedisCompositeSemaphore withWaitingMilis(long waitingMilis) {
+        this.waitingMilis = waitingMilis;
+        return this;
+    }
+
+    /**
+     * Names of the semaphores, in order
+     * @return names
+     */
+    public List<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Acquires the permits of all the semaphores, waiting (and polling) if not avalible
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire() throws InterruptedException {
+        boolean acquired = redisAcquire();
+        while(!acquired) {
+            Thread.sleep(waitingMilis);
+            acquired = redisAcquire();
+        }
+    }
+
+    /**
+     * Tries to acquire the permits of all the semaphores, but doesn't wait
+     * @return true if all permits acquired, false if none
+     */
+    public boolean tryAcquire() {
+        return redisAcquire();
+    }
+
+    /**
+     * Tries to acquire the permits of all the semaphores, waiting a limited time
+     * @param timeOut timeout to wait
+     * @param timeUnit unit of timeout
+     * @return true if all permits acquired, false if none
+     * @throws InterruptedException can be interrupted
+     */
+    public boolean tryAcquire(long timeOut, TimeUnit timeUnit) throws InterruptedException {
+        long timeMax = System.currentTimeMillis() + timeUnit.toMillis(timeOut);
+        boolean acquired = redisAcquire();
+        boolean exired = System.currentTimeMillis() > timeMax;
+        while(!acquired && !exired) {
+            Thread.sleep(waitingMilis);
+            exired = System.currentTimeMillis() > timeMax;
+            if (!exired) {
+                acquired = redisAcquire();
+            }
+        }
+        return acquired;
+    }
+
+    private synchronized boolean redisAcquire() {
+        Object oresult = jedis.eval(COMPOSITE_ACQUIRE_LUA_SCRIPT, names, permits);
+        return Boolean.parseBoolean((String) oresult);
+    }
+
+    /**
+     * Releases the permits of all the semaphores
+     */
+    public synchronized void release() {
+        jedis.eval(COMPOSITE_RELEASE_LUA_SCRIPT, names, permits);
+        LOG.debug("release semaphores {}", names);
+    }
+
+}
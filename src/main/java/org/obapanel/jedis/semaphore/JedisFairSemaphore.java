@@ -0,0 +1,345 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.obapanel.jedis.common.SharedJedisSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A redis/jedis semaphore that gives the permits in order of arrival (FIFO)
+ *
+ * Waiters are put in a queue in redis, and only the first of the queue can take permits.
+ * So a waiter of many permits is not starved by others that take only one.
+ * Waiters do not poll: releases and acquisitions publish the token of the first of the queue on the wake channel
+ * of the semaphore, and the waiters receive it with the shared subscriber of the pool.
+ * So a waiting acquire does not hold a connection of the pool while it waits, only while it calls redis.
+ *
+ * Waiters refresh their place in the queue every wake cycle (and check again, in case a message is lost);
+ * if a waiter dies, it is removed from the queue after the waiter timeout and the next one can go on
+ *
+ * It uses the same redis value of permits as JedisSemaphore, but fairness is only respected if all the clients
+ * that use the semaphore are fair ones
+ *
+ * CAUTION: with Redis Cluster, all the keys of the semaphore are declared in the scripts but they must be
+ * in the same slot; use a hash tag in the name (like '{name}') so the name and its suffixes go together
+ */
+public class JedisFairSemaphore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisFairSemaphore.class);
+
+    public static final String QUEUE_SUFFIX = ":fairQueue";
+    public static final String QUEUE_TIMEOUT_SUFFIX = ":fairQueueTimeout";
+    public static final String SEQUENCE_SUFFIX = ":fairSequence";
+    public static final String WAKE_CHANNEL_SUFFIX = ":fairWake";
+
+    // Common part of scripts: current time, remove dead waiters and wake function
+    // KEYS: permits, queue (by arrival), queue timeouts (by expiration), sequence
+    // ARGV[1] is always the wake channel
+    private static final String FAIR_LUA_SCRIPT_PART = "" +
+            "redis.replicate_commands(); " + "\n" +
+            "local time = redis.call('time'); " + "\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000); " + "\n" +
+            "local function wakeFirst() " + "\n" +
+            "    local first = redis.call('zrange', KEYS[2], 0, 0); " + "\n" +
+            "    if first[1] ~= nil then " + "\n" +
+            "        redis.call('publish', ARGV[1], first[1]); " + "\n" +
+            "    end " + "\n" +
+            "end " + "\n" +
+            "for _, waiter in ipairs(redis.call('zrangebyscore', KEYS[3], '-inf', now)) do " + "\n" +
+            "    redis.call('zrem', KEYS[2], waiter); " + "\n" +
+            "end " + "\n" +
+            "redis.call('zremrangebyscore', KEYS[3], '-inf', now); " + "\n";
+
+    // ARGV: wake channel, token, permits, waiter timeout millis, enqueue if not acquired (1/0)
+    public static final String FAIR_ACQUIRE_LUA_SCRIPT = FAIR_LUA_SCRIPT_PART +
+            "local first = redis.call('zrange', KEYS[2], 0, 0)[1]; " + "\n" +
+            "local permits = redis.call('get', KEYS[1]); " + "\n" +
+            "if ((first == nil or first == ARGV[2]) and permits ~= false and tonumber(permits) >= tonumber(ARGV[3])) then " + "\n" +
+            "    redis.call('decrby', KEYS[1], ARGV[3]); " + "\n" +
+            "    if first ~= nil then " + "\n" +
+            "        redis.call('zrem', KEYS[2], ARGV[2]); " + "\n" +
+            "        redis.call('zrem', KEYS[3], ARGV[2]); " + "\n" +
+            "        wakeFirst(); " + "\n" +
+            "    end " + "\n" +
+            "    return 1; " + "\n" +
+            "end " + "\n" +
+            "if ARGV[5] == '1' then " + "\n" +
+            "    if redis.call('zscore', KEYS[2], ARGV[2]) == false then " + "\n" +
+            "        redis.call('zadd', KEYS[2], redis.call('incr', KEYS[4]), ARGV[2]); " + "\n" +
+            "    end " + "\n" +
+            "    redis.call('zadd', KEYS[3], now + tonumber(ARGV[4]), ARGV[2]); " + "\n" +
+            "end " + "\n" +
+            "return 0; ";
+
+    // ARGV: wake channel, permits
+    public static final String FAIR_RELEASE_LUA_SCRIPT = FAIR_LUA_SCRIPT_PART +
+            "local permits = redis.call('incrby', KEYS[1], ARGV[2]); " + "\n" +
+            "wakeFirst(); " + "\n" +
+            "return permits; ";
+
+    // ARGV: wake channel, token
+    public static final String FAIR_LEAVE_LUA_SCRIPT = FAIR_LUA_SCRIPT_PART +
+            "redis.call('zrem', KEYS[2], ARGV[2]); " + "\n" +
+            "redis.call('zrem', KEYS[3], ARGV[2]); " + "\n" +
+            "wakeFirst(); " + "\n" +
+            "return 1; ";
+
+    private final JedisPool jedisPool;
+    private final String name;
+    private final List<String> keys;
+    private final String wakeChannel;
+    private final SharedJedisSubscriber sharedJedisSubscriber;
+    private int wakeCycleSeconds = 1;
+
+    /**
+     * Creates a fair semaphore with one initial permit
+     * @param jedisPool Pool of connections
+     * @param name Name of the semaphore
+     */
+    public JedisFairSemaphore(JedisPool jedisPool, String name) {
+        this(jedisPool, name, 1);
+    }
+
+    /**
+     * Creates a fair semaphore
+     * @param jedisPool Pool of connections
+     * @param name Name of the semaphore
+     * @param initialPermits Initial permits of the semaphore
+     */
+    public JedisFairSemaphore(JedisPool jedisPool, String name, int initialPermits) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        this.jedisPool = jedisPool;
+        this.name = name;
+        this.keys = Arrays.asList(name, name + QUEUE_SUFFIX, name + QUEUE_TIMEOUT_SUFFIX, name + SEQUENCE_SUFFIX);
+        this.wakeChannel = name + WAKE_CHANNEL_SUFFIX;
+        this.sharedJedisSubscriber = SharedJedisSubscriber.forPool(jedisPool);
+        init(initialPermits);
+    }
+
+    /**
+     * Maximum time waiting for a wake up, before refreshing the place in the queue
+     * and checking again
+     * @param wakeCycleSeconds seconds, one or more
+     * @return this
+     */
+    public JedisFairSemaphore withWakeCycleSeconds(int wakeCycleSeconds) {
+        if (wakeCycleSeconds <= 0) throw new IllegalArgumentException("wake cycle must be one second or more");
+        this.wakeCycleSeconds = wakeCycleSeconds;
+        return this;
+    }
+
+    /**
+     * Init the semaphore if is the first
+     * @param initialPermits initial permits
+     */
+    private void init(int initialPermits) {
+        if (initialPermits < 0) {
+            throw new IllegalArgumentException("initial permit on semaphore must be always equal or more than zero");
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.set(name, String.valueOf(initialPermits), new SetParams().nx());
+        }
+    }
+
+    /**
+     * Returns the sempahore name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Acquires one permit, waiting in the queue if not avalible
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+
+    /**
+     * Acquires N permits, waiting in the queue if not avalible
+     * @param permits permits to acquire
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire(int permits) throws InterruptedException {
+        waitInQueue(permits, Long.MAX_VALUE);
+    }
+
+    /**
+     * Tries to acquire one permit, but doesn't wait
+     * It only succeeds if there is no one waiting in the queue
+     * @return true if permit acquired, false otherwise
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * Tries to acquire N permits, but doesn't wait
+     * It only succeeds if there is no one waiting in the queue
+     * @param permits permits to acquire
+     * @return true if permits acquired, false otherwise
+     */
+    public boolean tryAcquire(int permits) {
+        return redisAcquire(newToken(), permits, false);
+    }
+
+    /**
+     * Tries to acquire N permits, waiting in the queue a limited time
+     * @param permits permits to acquire
+     * @param timeOut timeout to wait
+     * @param timeUnit unit of timeout
+     * @return true if permits acquired, false otherwise
+     * @throws InterruptedException can be interrupted
+     */
+    public boolean tryAcquire(int permits, long timeOut, TimeUnit timeUnit) throws InterruptedException {
+        return waitInQueue(permits, System.currentTimeMillis() + timeUnit.toMillis(timeOut));
+    }
+
+    /**
+     * Enqueues and waits until it is the first of the queue and there are permits
+     * A connection of the pool is used only while calling redis, not while waiting
+     * If the time limit is reached or the thread is interrupted, the waiter leaves the queue
+     * @param permits permits to acquire
+     * @param timeMax system time limit
+     * @return true if acquired
+     * @throws InterruptedException can be interrupted
+     */
+    private boolean waitInQueue(int permits, long timeMax) throws InterruptedException {
+        String token = newToken();
+        BlockingQueue<String> wakeUps = new LinkedBlockingQueue<>();
+        Consumer<String> wakeListener = message -> {
+            if (token.equals(message)) {
+                wakeUps.offer(message);
+            }
+        };
+        boolean acquired = false;
+        boolean subscribed = false;
+        try {
+            acquired = redisAcquire(token, permits, true);
+            if (!acquired && timeMax > System.currentTimeMillis()) {
+                sharedJedisSubscriber.subscribe(wakeChannel, wakeListener);
+                subscribed = true;
+                long wakeCycleMillis = TimeUnit.SECONDS.toMillis(wakeCycleSeconds);
+                sharedJedisSubscriber.awaitSubscription(wakeChannel,
+                        Math.min(wakeCycleMillis, timeMax - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                // Check again, a wake published before the subscription is lost
+                acquired = redisAcquire(token, permits, true);
+                while (!acquired) {
+                    long remaining = timeMax - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    wakeUps.poll(Math.min(wakeCycleMillis, remaining), TimeUnit.MILLISECONDS);
+                    acquired = redisAcquire(token, permits, true);
+                }
+            }
+        } finally {
+            if (subscribed) {
+                sharedJedisSubscriber.unsubscribe(wakeChannel, wakeListener);
+            }
+            if (!acquired) {
+                try (Jedis jedis = jedisPool.getResource()) {
+                    jedis.eval(FAIR_LEAVE_LUA_SCRIPT, keys, Arrays.asList(wakeChannel, token));
+                }
+            }
+        }
+        return acquired;
+    }
+
+    /**
+     * Internal method to acquire permits executing Lua script
+     * @param token token of the waiter
+     * @param permits permits to obain
+     * @param enqueue true if the waiter must be put (or kept) in the queue if not acquired
+     * @return true if permits obtained
+     */
+    private boolean redisAcquire(String token, int permits, boolean enqueue) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permits to acquire on semaphore must be always more than zero");
+        }
+        long waiterTimeoutMillis = TimeUnit.SECONDS.toMillis(wakeCycleSeconds * 3L);
+        Object oresult;
+        try (Jedis jedis = jedisPool.getResource()) {
+            oresult = jedis.eval(FAIR_ACQUIRE_LUA_SCRIPT, keys, Arrays.asList(wakeChannel, token,
+                    String.valueOf(permits), String.valueOf(waiterTimeoutMillis), enqueue ? "1" : "0"));
+        }
+        return oresult != null && Long.parseLong(oresult.toString()) == 1L;
+    }
+
+    private String newToken() {
+        return System.currentTimeMillis() + "_" + ThreadLocalRandom.current().nextLong(1_000_000_000L);
+    }
+
+    /**
+     * Releases one permit
+     */
+    public void release() {
+        release(1);
+    }
+
+    /**
+     * Releases N permits, and wakes the first waiter
+     * @param permits permits to release
+     */
+    public void release(int permits) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permit to release on semaphore must be always more than zero");
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.eval(FAIR_RELEASE_LUA_SCRIPT, keys, Arrays.asList(wakeChannel, String.valueOf(permits)));
+        }
+    }
+
+    /**
+     * Return the current avalible permits on this semaphore
+     * If value doesn't exists, it returns -1
+     * @return number of permits
+     */
+    public int availablePermits() {
+        String permits;
+        try (Jedis jedis = jedisPool.getResource()) {
+            permits = jedis.get(name);
+        }
+        if (permits == null || permits.isEmpty()) {
+            return -1;
+        } else {
+            return Integer.parseInt(permits);
+        }
+    }
+
+    /**
+     * Number of waiters in the queue
+     * @return waiters
+     */
+    public long getQueueLength() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.zcard(name + QUEUE_SUFFIX);
+        }
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUES DESTROYING THIS SEMAPHORE AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public void destroy() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            keys.forEach(jedis::del);
+        }
+    }
+
+}
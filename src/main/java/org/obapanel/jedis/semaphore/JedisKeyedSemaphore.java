@@ -0,0 +1,347 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A redis/jedis semaphore with the same number of permits for every key of a family, like a customer id
+ *
+ * Nothing is created when the semaphore is built: the value of a key is created by its first acquire,
+ * in the same script, with all the permits of a key.
+ * When a release returns all the permits, the key is deleted (or left to expire after the idle time),
+ * because a missing key means all the permits are avalible.
+ * So a key without permits in use costs no memory in redis, and using a key costs no more calls than JedisSemaphore
+ *
+ * The semaphore of a key is redis key name:key
+ * The semaphores of keys returned by forKey are cached, up to a maximum number
+ */
+public class JedisKeyedSemaphore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisKeyedSemaphore.class);
+
+    public static final String KEY_SEPARATOR = ":";
+
+    // KEYS: semaphore of key
+    // ARGV: permits per key, permits to acquire
+    public static final String KEYED_ACQUIRE_LUA_SCRIPT = "" +
+            "local permits = tonumber(redis.call('get', KEYS[1]) or ARGV[1]); " + "\n" +
+            "if permits >= tonumber(ARGV[2]) then " + "\n" +
+            "    redis.call('set', KEYS[1], permits - tonumber(ARGV[2])); " + "\n" +
+            "    return 'true'; " + "\n" +
+            "else " + "\n" +
+            "    return 'false'; " + "\n" +
+            "end ";
+
+    // KEYS: semaphore of key
+    // ARGV: permits per key, permits to release, idle millis
+    public static final String KEYED_RELEASE_LUA_SCRIPT = "" +
+            "local permits = tonumber(redis.call('get', KEYS[1]) or ARGV[1]) + tonumber(ARGV[2]); " + "\n" +
+            "if permits < tonumber(ARGV[1]) then " + "\n" +
+            "    redis.call('set', KEYS[1], permits); " + "\n" +
+            "elseif tonumber(ARGV[3]) > 0 then " + "\n" +
+            "    redis.call('set', KEYS[1], ARGV[1], 'px', ARGV[3]); " + "\n" +
+            "else " + "\n" +
+            "    redis.call('del', KEYS[1]); " + "\n" +
+            "end " + "\n" +
+            "return 'true'; ";
+
+    private final Jedis jedis;
+    private final String name;
+    private final int permitsPerKey;
+    private long waitingMilis = 150;
+    private long idleMilis = 0;
+    private final Map<String, KeySemaphore> cachedKeys;
+
+    /**
+     * Creates a keyed semaphore
+     * @param jedis Jedis connection
+     * @param name Name of the semaphore, prefix of the keys
+     * @param permitsPerKey Permits of every key
+     */
+    public JedisKeyedSemaphore(Jedis jedis, String name, int permitsPerKey) {
+        this(jedis, name, permitsPerKey, 1000);
+    }
+
+    /**
+     * Creates a keyed semaphore
+     * @param jedis Jedis connection
+     * @param name Name of the semaphore, prefix of the keys
+     * @param permitsPerKey Permits of every key
+     * @param maxCachedKeys Maximum semaphores of keys to cache, the least used are discarded
+     */
+    public JedisKeyedSemaphore(Jedis jedis, String name, int permitsPerKey, int maxCachedKeys) {
+        if (jedis == null) throw new IllegalArgumentException("Jedis can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        if (permitsPerKey <= 0) throw new IllegalArgumentException("permits per key must be more than zero");
+        if (maxCachedKeys <= 0) throw new IllegalArgumentException("max cached keys must be more than zero");
+        this.jedis = jedis;
+        this.name = name;
+        this.permitsPerKey = permitsPerKey;
+        this.cachedKeys = new LeastUsedCache<>(maxCachedKeys);
+    }
+
+    /**
+     * Wait time between polling attemts
+     * @param waitingMilis time in milis
+     * @return this
+     */
+    public JedisKeyedSemaphore withWaitingMilis(long waitingMilis) {
+        this.waitingMilis = waitingMilis;
+        return this;
+    }
+
+    /**
+     * Time that a key with all permits avalible is kept in redis before expiring
+     * With zero (default) the key is deleted at once
+     * @param idleTime time
+     * @param timeUnit unit of time
+     * @return this
+     */
+    public JedisKeyedSemaphore withIdleTime(long idleTime, TimeUnit timeUnit) {
+        this.idleMilis = timeUnit.toMillis(idleTime);
+        return this;
+    }
+
+    /**
+     * Returns the sempahore name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the permits of every key
+     * @return permits
+     */
+    public int getPermitsPerKey() {
+        return permitsPerKey;
+    }
+
+    /**
+     * Returns the semaphore of a key, from the cache if possible
+     * @param key key
+     * @return semaphore of the key
+     */
+    public synchronized KeySemaphore forKey(String key) {
+        return cachedKeys.computeIfAbsent(key, KeySemaphore::new);
+    }
+
+    /**
+     * Number of semaphores of keys in the local cache
+     * @return cached keys
+     */
+    public synchronized int cachedKeys() {
+        return cachedKeys.size();
+    }
+
+    /**
+     * Acquires N permits of a key, waiting (and polling) if not avalible
+     * @param key key
+     * @param permits permits to acquire
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire(String key, int permits) throws InterruptedException {
+        boolean acquired = redisAcquire(key, permits);
+        while(!acquired) {
+            Thread.sleep(waitingMilis);
+            acquired = redisAcquire(key, permits);
+        }
+    }
+
+    /**
+     * Tries to acquire N permits of a key, but doesn't wait
+     * @param key key
+     * @param permits permits to acquire
+     * @return true if permits acquired, false otherwise
+     */
+    public boolean tryAcquire(String key, int permits) {
+        return redisAcquire(key, permits);
+    }
+
+    /**
+     * Tries to acquire N permits of a key, waiting a limited time
+     * @param key key
+     * @param permits permits to acquire
+     * @param timeOut timeout to wait
+     * @param timeUnit unit of timeout
+     * @return true if permits acquired, false otherwise
+     * @throws InterruptedException can be interrupted
+     */
+    public boolean tryAcquire(String key, int permits, long timeOut, TimeUnit timeUnit) throws InterruptedException {
+        long timeMax = System.currentTimeMillis() + timeUnit.toMillis(timeOut);
+        boolean acquired = redisAcquire(key, permits);
+        boolean exired = System.currentTimeMillis() > timeMax;
+        while(!acquired && !exired) {
+            Thread.sleep(waitingMilis);
+            exired = System.currentTimeMillis() > timeMax;
+            if (!exired) {
+                acquired = redisAcquire(key, permits);
+            }
+        }
+        return acquired;
+    }
+
+    private synchronized boolean redisAcquire(String key, int permits) {
+        if (permits <= 0 || permits > permitsPerKey){
+            throw new IllegalArgumentException("permits to acquire on semaphore must be more than zero and not more than permits per key");
+        }
+        Object oresult = jedis.eval(KEYED_ACQUIRE_LUA_SCRIPT, Collections.singletonList(keyName(key)),
+                Arrays.asList(String.valueOf(permitsPerKey), String.valueOf(permits)));
+        return Boolean.parseBoolean((String) oresult);
+    }
+
+    /**
+     * Releases N permits of a key
+     * If all the permits of the key are returned, the key is removed from redis
+     * @param key key
+     * @param permits permits to release
+     */
+    public synchronized void release(String key, int permits) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permit to release on semaphore must be always more than zero");
+        }
+        jedis.eval(KEYED_RELEASE_LUA_SCRIPT, Collections.singletonList(keyName(key)),
+                Arrays.asList(String.valueOf(permitsPerKey), String.valueOf(permits), String.valueOf(idleMilis)));
+        LOG.debug("release semaphore {} key {} permits {}", name, key, permits);
+    }
+
+    /**
+     * Return the current avalible permits of a key
+     * @param key key
+     * @return number of permits
+     */
+    public synchronized int availablePermits(String key) {
+        String permits = jedis.get(keyName(key));
+        if (permits == null || permits.isEmpty()) {
+            return permitsPerKey;
+        } else {
+            return Integer.parseInt(permits);
+        }
+    }
+
+    private String keyName(String key) {
+        if (key == null || key.trim().isEmpty()) throw new IllegalArgumentException("Key can not be null nor empty nor whitespace");
+        return name + KEY_SEPARATOR + key;
+    }
+
+    /**
+     * Semaphore of a key of the keyed semaphore
+     */
+    public class KeySemaphore {
+
+        private final String key;
+
+        private KeySemaphore(String key) {
+            keyName(key);
+            this.key = key;
+        }
+
+        /**
+         * Returns the key
+         * @return key
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * Acquires one permit, waiting (and polling) if not avalible
+         * @throws InterruptedException can be interrupted
+         */
+        public void acquire() throws InterruptedException {
+            JedisKeyedSemaphore.this.acquire(key, 1);
+        }
+
+        /**
+         * Acquires N permits, waiting (and polling) if not avalible
+         * @param permits permits to acquire
+         * @throws InterruptedException can be interrupted
+         */
+        public void acquire(int permits) throws InterruptedException {
+            JedisKeyedSemaphore.this.acquire(key, permits);
+        }
+
+        /**
+         * Tries to acquire one permit, but doesn't wait
+         * @return true if permit acquired, false otherwise
+         */
+        public boolean tryAcquire() {
+            return JedisKeyedSemaphore.this.tryAcquire(key, 1);
+        }
+
+        /**
+         * Tries to acquire N permits, but doesn't wait
+         * @param permits permits to acquire
+         * @return true if permits acquired, false otherwise
+         */
+        public boolean tryAcquire(int permits) {
+            return JedisKeyedSemaphore.this.tryAcquire(key, permits);
+        }
+
+        /**
+         * Tries to acquire N permits, waiting a limited time
+         * @param permits permits to acquire
+         * @param timeOut timeout to wait
+         * @param timeUnit unit of timeout
+         * @return true if permits acquired, false otherwise
+         * @throws InterruptedException can be interrupted
+         */
+        public boolean tryAcquire(int permits, long timeOut, TimeUnit timeUnit) throws InterruptedException {
+            return JedisKeyedSemaphore.this.tryAcquire(key, permits, timeOut, timeUnit);
+        }
+
+        /**
+         * Releases one permit
+         */
+        public void release() {
+            JedisKeyedSemaphore.this.release(key, 1);
+        }
+
+        /**
+         * Releases N permits
+         * @param permits permits to release
+         */
+        public void release(int permits) {
+            JedisKeyedSemaphore.this.release(key, permits);
+        }
+
+        /**
+         * Return the current avalible permits
+         * @return number of permits
+         */
+        public int availablePermits() {
+            return JedisKeyedSemaphore.this.availablePermits(key);
+        }
+
+    }
+
+    /**
+     * Map in order of access that discards the least used entry when it has more than the maximum entries
+     */
+    private static class LeastUsedCache<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        LeastUsedCache(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+
+}
@@ -0,0 +1,315 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A redis/jedis semaphore whose permits are leased for a time
+ *
+ * Every acquire creates a lease, identified by a token, that holds the permits until it is released
+ * or the lease time expires. So if a process dies while holding permits, they are recovered when its
+ * leases expire, and the capacity of the semaphore is never lost.
+ *
+ * Leases are stored in a sorted set by expiration time (and the permits of every lease in a hash)
+ * Expired leases are reclaimed by the acquire script itself, with the redis server time, so no clock
+ * of the clients is involved and no background process is needed
+ * Holders of long tasks must renew their leases before they expire; renewAll renews all the leases of
+ * this object with only one call
+ *
+ * The first semaphore that is created in redis assigns the capacity; next ones don't change it.
+ * This semaphore does not share value with JedisSemaphore with the same name
+ */
+public class JedisLeasedSemaphore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisLeasedSemaphore.class);
+
+    public static final String LEASES_SUFFIX = ":leases";
+    public static final String LEASE_PERMITS_SUFFIX = ":leasePermits";
+    public static final String FIELD_CAPACITY = "capacity";
+    public static final String FIELD_USED = "used";
+
+    // Common part of scripts, removes expired leases
+    // KEYS: semaphore hash, leases zset, lease permits hash
+    private static final String RECLAIM_LUA_SCRIPT_PART = "" +
+            "redis.replicate_commands(); " + "\n" +
+            "local time = redis.call('time'); " + "\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000); " + "\n" +
+            "for _, token in ipairs(redis.call('zrangebyscore', KEYS[2], '-inf', now)) do " + "\n" +
+            "    local leased = redis.call('hget', KEYS[3], token); " + "\n" +
+            "    if leased ~= false then " + "\n" +
+            "        redis.call('hincrby', KEYS[1], '" + FIELD_USED + "', -tonumber(leased)); " + "\n" +
+            "    end " + "\n" +
+            "    redis.call('hdel', KEYS[3], token); " + "\n" +
+            "    redis.call('zrem', KEYS[2], token); " + "\n" +
+            "end " + "\n";
+
+    // ARGV: permits, token, lease millis
+    public static final String LEASED_ACQUIRE_LUA_SCRIPT = RECLAIM_LUA_SCRIPT_PART +
+            "local capacity = tonumber(redis.call('hget', KEYS[1], '" + FIELD_CAPACITY + "')); " + "\n" +
+            "local used = tonumber(redis.call('hget', KEYS[1], '" + FIELD_USED + "') or '0'); " + "\n" +
+            "if (capacity ~= nil and capacity - used >= tonumber(ARGV[1])) then " + "\n" +
+            "    redis.call('hincrby', KEYS[1], '" + FIELD_USED + "', ARGV[1]); " + "\n" +
+            "    redis.call('zadd', KEYS[2], now + tonumber(ARGV[3]), ARGV[2]); " + "\n" +
+            "    redis.call('hset', KEYS[3], ARGV[2], ARGV[1]); " + "\n" +
+            "    return 1; " + "\n" +
+            "else " + "\n" +
+            "    return 0; " + "\n" +
+            "end ";
+
+    // ARGV: token
+    public static final String LEASED_RELEASE_LUA_SCRIPT = "" +
+            "local leased = redis.call('hget', KEYS[3], ARGV[1]); " + "\n" +
+            "if leased == false then " + "\n" +
+            "    return 0; " + "\n" +
+            "end " + "\n" +
+            "redis.call('hincrby', KEYS[1], '" + FIELD_USED + "', -tonumber(leased)); " + "\n" +
+            "redis.call('hdel', KEYS[3], ARGV[1]); " + "\n" +
+            "redis.call('zrem', KEYS[2], ARGV[1]); " + "\n" +
+            "return tonumber(leased); ";
+
+    // ARGV: lease millis, tokens...; returns tokens that are not leased anymore
+    public static final String LEASED_RENEW_LUA_SCRIPT = RECLAIM_LUA_SCRIPT_PART +
+            "local lost = {}; " + "\n" +
+            "for i = 2, #ARGV do " + "\n" +
+            "    if redis.call('zscore', KEYS[2], ARGV[i]) then " + "\n" +
+            "        redis.call('zadd', KEYS[2], now + tonumber(ARGV[1]), ARGV[i]); " + "\n" +
+            "    else " + "\n" +
+            "        table.insert(lost, ARGV[i]); " + "\n" +
+            "    end " + "\n" +
+            "end " + "\n" +
+            "return lost; ";
+
+    public static final String LEASED_AVAILABLE_LUA_SCRIPT = RECLAIM_LUA_SCRIPT_PART +
+            "local capacity = redis.call('hget', KEYS[1], '" + FIELD_CAPACITY + "'); " + "\n" +
+            "if capacity == false then " + "\n" +
+            "    return -1; " + "\n" +
+            "end " + "\n" +
+            "return tonumber(capacity) - tonumber(redis.call('hget', KEYS[1], '" + FIELD_USED + "') or '0'); ";
+
+    private final Jedis jedis;
+    private final String name;
+    private final List<String> keys;
+    private final long leaseMillis;
+    private final Set<String> heldTokens = new HashSet<>();
+    private long waitingMilis = 150;
+
+    /**
+     * Creates a leased semaphore
+     * @param jedis Jedis connection
+     * @param name Name of the semaphore
+     * @param capacity Total permits of the semaphore
+     * @param leaseTime Time that a lease holds the permits if not renewed
+     * @param timeUnit Unit of lease time
+     */
+    public JedisLeasedSemaphore(Jedis jedis, String name, int capacity, long leaseTime, TimeUnit timeUnit) {
+        if (jedis == null) throw new IllegalArgumentException("Jedis can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        if (leaseTime <= 0 || timeUnit == null) throw new IllegalArgumentException("Lease time must be more than zero");
+        this.jedis = jedis;
+        this.name = name;
+        this.keys = Arrays.asList(name, name + LEASES_SUFFIX, name + LEASE_PERMITS_SUFFIX);
+        this.leaseMillis = timeUnit.toMillis(leaseTime);
+        init(capacity);
+    }
+
+    /**
+     * Wait time between polling attemts
+     * @param waitingMilis time in milis
+     * @return this
+     */
+    public JedisLeasedSemaphore withWaitingMilis(long waitingMilis) {
+        this.waitingMilis = waitingMilis;
+        return this;
+    }
+
+    /**
+     * Init the semaphore if is the first
+     * @param capacity total permits
+     */
+    private void init(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity of semaphore must be always equal or more than zero");
+        }
+        jedis.hsetnx(name, FIELD_CAPACITY, String.valueOf(capacity));
+    }
+
+    /**
+     * Returns the sempahore name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Acquires one permit, waiting (and polling) if not avalible
+     * @return token of the lease
+     * @throws InterruptedException can be interrupted
+     */
+    public String acquire() throws InterruptedException {
+        return acquire(1);
+    }
+
+    /**
+     * Acquires N permits, waiting (and polling) if not avalible
+     * @param permits permits to acquire
+     * @return token of the lease
+     * @throws InterruptedException can be interrupted
+     */
+    public String acquire(int permits) throws InterruptedException {
+        String token = redisAcquire(permits);
+        while(token == null) {
+            Thread.sleep(waitingMilis);
+            token = redisAcquire(permits);
+        }
+        return token;
+    }
+
+    /**
+     * Tries to acquire one permit, but doesn't wait
+     * @return token of the lease if acquired, null otherwise
+     */
+    public String tryAcquire() {
+        return redisAcquire(1);
+    }
+
+    /**
+     * Tries to acquire N permits, but doesn't wait
+     * @param permits permits to acquire
+     * @return token of the lease if acquired, null otherwise
+     */
+    public String tryAcquire(int permits) {
+        return redisAcquire(permits);
+    }
+
+    /**
+     * Tries to acquire N permits, waiting a limited time
+     * @param permits permits to acquire
+     * @param timeOut timeout to wait
+     * @param timeUnit unit of timeout
+     * @return token of the lease if acquired, null otherwise
+     * @throws InterruptedException can be interrupted
+     */
+    public String tryAcquire(int permits, long timeOut, TimeUnit timeUnit) throws InterruptedException {
+        long timeMax = System.currentTimeMillis() + timeUnit.toMillis(timeOut);
+        String token = redisAcquire(permits);
+        boolean exired = System.currentTimeMillis() > timeMax;
+        while(token == null && !exired) {
+            Thread.sleep(waitingMilis);
+            exired = System.currentTimeMillis() > timeMax;
+            if (!exired) {
+                token = redisAcquire(permits);
+            }
+        }
+        return token;
+    }
+
+    /**
+     * Internal method to acquire permits executing Lua script
+     * @param permits permits to obain
+     * @return token if permits obtained, null otherwise
+     */
+    private synchronized String redisAcquire(int permits) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permits to acquire on semaphore must be always more than zero");
+        }
+        String token = name + "_" + System.currentTimeMillis() + "_" + ThreadLocalRandom.current().nextLong(1_000_000_000L);
+        Object oresult = jedis.eval(LEASED_ACQUIRE_LUA_SCRIPT, keys,
+                Arrays.asList(String.valueOf(permits), token, String.valueOf(leaseMillis)));
+        if (oresult != null && Long.parseLong(oresult.toString()) == 1L) {
+            heldTokens.add(token);
+            return token;
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Releases the permits of a lease
+     * @param token token of the lease
+     * @return true if released, false if the lease had already expired
+     */
+    public synchronized boolean release(String token) {
+        if (token == null) throw new IllegalArgumentException("Token can not be null");
+        heldTokens.remove(token);
+        Object oresult = jedis.eval(LEASED_RELEASE_LUA_SCRIPT, keys, Collections.singletonList(token));
+        return oresult != null && Long.parseLong(oresult.toString()) > 0;
+    }
+
+    /**
+     * Renews a lease for another lease time
+     * @param token token of the lease
+     * @return true if renewed, false if the lease had already expired
+     */
+    public synchronized boolean renew(String token) {
+        if (token == null) throw new IllegalArgumentException("Token can not be null");
+        return renewTokens(Collections.singletonList(token)).isEmpty();
+    }
+
+    /**
+     * Renews all the leases held by this object, with only one call to redis
+     * @return tokens that could not be renewed because the lease had expired
+     */
+    public synchronized List<String> renewAll() {
+        if (heldTokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return renewTokens(new ArrayList<>(heldTokens));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> renewTokens(List<String> tokens) {
+        List<String> values = new ArrayList<>(tokens.size() + 1);
+        values.add(String.valueOf(leaseMillis));
+        values.addAll(tokens);
+        List<String> lost = (List<String>) jedis.eval(LEASED_RENEW_LUA_SCRIPT, keys, values);
+        if (lost == null) {
+            lost = Collections.emptyList();
+        }
+        heldTokens.removeAll(lost);
+        if (!lost.isEmpty()) {
+            LOG.warn("renewTokens semaphore {} leases expired {}", name, lost.size());
+        }
+        return lost;
+    }
+
+    /**
+     * Tokens of the leases held by this object (that have not been released or found expired)
+     * @return tokens
+     */
+    public synchronized Set<String> getHeldTokens() {
+        return new HashSet<>(heldTokens);
+    }
+
+    /**
+     * Return the current avalible permits on this semaphore, after reclaiming the expired leases
+     * If value doesn't exists, it returns -1
+     * @return number of permits
+     */
+    public synchronized int availablePermits() {
+        Object oresult = jedis.eval(LEASED_AVAILABLE_LUA_SCRIPT, keys, Collections.emptyList());
+        return oresult != null ? Integer.parseInt(oresult.toString()) : -1;
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUES DESTROYING THIS SEMAPHORE AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public synchronized void destroy() {
+        heldTokens.clear();
+        keys.forEach(jedis::del);
+    }
+
+}
@@ -0,0 +1,297 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.obapanel.jedis.common.SharedJedisSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A redis/jedis implementation of a Java semaphore that waits for release messages instead of polling
+ *
+ * Like JedisAdvancedSemaphore, but without its drawbacks:
+ * - Connections are taken from the pool for every operation and returned at once
+ * - Messages are received by the shared subscriber of the pool, with only one connection and one thread
+ *   for all the semaphores (and other primitives) of the JVM
+ * - Release is only one script that increments the permits and publishes the message
+ *
+ * Waiting threads sleep on a local condition of the semaphore, and are woken when a release message arrives.
+ * As messages can be lost (e.g. a reconnection), waiters check redis every safety wait time anyway.
+ *
+ * A semaphore is identified and shared by its name
+ * The first semaphore that is created in redis assings the intial permits to the redis shared value.
+ *
+ * Call close when the semaphore will not be used again, to stop receiving messages
+ */
+public class JedisNotifiedSemaphore implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisNotifiedSemaphore.class);
+
+    public static final String JEDIS_NOTIFIED_SEMAPHORE_CHANNEL_PREFIX = "JedisNotifiedSemaphoreChannel:";
+
+    public static final String SEMAPHORE_RELEASE_LUA_SCRIPT = "" +
+            "local permits = redis.call('incrby', KEYS[1], ARGV[1]); " + "\n" +
+            "redis.call('publish', KEYS[2], ARGV[1]); " + "\n" +
+            "return permits; ";
+
+    private final JedisPool jedisPool;
+    private final String name;
+    private final String channelName;
+    private final Object releaseMonitor = new Object();
+    private final Consumer<String> releaseListener = this::onReleaseMessage;
+    private long releaseCount = 0L;
+    private boolean subscribed = false;
+    private long safetyWaitMilis = 1000L;
+
+    /**
+     * Creates a semaphore with one initial permit
+     * @param jedisPool Pool of connections
+     * @param name Name of the semaphore
+     */
+    public JedisNotifiedSemaphore(JedisPool jedisPool, String name) {
+        this(jedisPool, name, 1);
+    }
+
+    /**
+     * Creates a semaphore
+     * @param jedisPool Pool of connections
+     * @param name Name of the semaphore
+     * @param initialPermits Initial permits of the semaphore
+     */
+    public JedisNotifiedSemaphore(JedisPool jedisPool, String name, int initialPermits) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        this.jedisPool = jedisPool;
+        this.name = name;
+        this.channelName = JEDIS_NOTIFIED_SEMAPHORE_CHANNEL_PREFIX + name;
+        init(initialPermits);
+    }
+
+    /**
+     * Maximum time to wait for a message before checking redis again
+     * @param safetyWaitMilis time in milis
+     * @return this
+     */
+    public JedisNotifiedSemaphore withSafetyWaitMilis(long safetyWaitMilis) {
+        if (safetyWaitMilis <= 0) throw new IllegalArgumentException("Safety wait time must be more than zero");
+        this.safetyWaitMilis = safetyWaitMilis;
+        return this;
+    }
+
+    /**
+     * Init the semaphore if is the first
+     * @param initialPermits initial permits
+     */
+    private void init(int initialPermits) {
+        if (initialPermits < 0) {
+            throw new IllegalArgumentException("initial permit on semaphore must be always equal or more than zero");
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.set(name, String.valueOf(initialPermits), new SetParams().nx());
+        }
+    }
+
+    /**
+     * Returns the sempahore name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Acquires one permit, waiting for a release if not avalible
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+
+    /**
+     * Acquires N permits, waiting for releases if not avalible
+     * @param permits permits to acquire
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire(int permits) throws InterruptedException {
+        waitForPermits(permits, Long.MAX_VALUE);
+    }
+
+    /**
+     * Tries to acquire one permit, but doesn't wait
+     * @return true if permit acquired, false otherwise
+     */
+    public boolean tryAcquire() {
+        return redisAcquire(1);
+    }
+
+    /**
+     * Tries to acquire N permits, but doesn't wait
+     * @param permits permits to acquire
+     * @return true if permits acquired, false otherwise
+     */
+    public boolean tryAcquire(int permits) {
+        return redisAcquire(permits);
+    }
+
+    /**
+     * Tries to acquire N permits, waiting a limited time for releases
+     * @param permits permits to acquire
+     * @param timeOut timeout to wait
+     * @param timeUnit unit of timeout
+     * @return true if permits acquired, false otherwise
+     * @throws InterruptedException can be interrupted
+     */
+    public boolean tryAcquire(int permits, long timeOut, TimeUnit timeUnit) throws InterruptedException {
+        return waitForPermits(permits, System.currentTimeMillis() + timeUnit.toMillis(timeOut));
+    }
+
+    /**
+     * Tries to acquire the permits until the time limit
+     * The release count is read before every try, so a release between the try and the wait is not lost
+     * @param permits permits to acquire
+     * @param timeMax system time limit
+     * @return true if permits acquired
+     * @throws InterruptedException can be interrupted
+     */
+    private boolean waitForPermits(int permits, long timeMax) throws InterruptedException {
+        while (true) {
+            long currentReleaseCount = getReleaseCount();
+            if (redisAcquire(permits)) {
+                return true;
+            }
+            long remaining = timeMax - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            if (lazySubscribe()) {
+                // Try again, a release may have been sent before the subscription
+                continue;
+            }
+            synchronized (releaseMonitor) {
+                if (currentReleaseCount == releaseCount) {
+                    releaseMonitor.wait(Math.min(safetyWaitMilis, remaining));
+                }
+            }
+        }
+    }
+
+    /**
+     * Subscribes to release messages the first time it is needed
+     * @return true if it has been subscribed now
+     * @throws InterruptedException can be interrupted
+     */
+    private boolean lazySubscribe() throws InterruptedException {
+        SharedJedisSubscriber sharedJedisSubscriber;
+        synchronized (releaseMonitor) {
+            if (subscribed) {
+                return false;
+            }
+            subscribed = true;
+            sharedJedisSubscriber = SharedJedisSubscriber.forPool(jedisPool);
+        }
+        LOG.debug("lazySubscribe semaphore {}", name);
+        sharedJedisSubscriber.subscribe(channelName, releaseListener);
+        sharedJedisSubscriber.awaitSubscription(channelName, safetyWaitMilis, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    private long getReleaseCount() {
+        synchronized (releaseMonitor) {
+            return releaseCount;
+        }
+    }
+
+    private void onReleaseMessage(String message) {
+        synchronized (releaseMonitor) {
+            releaseCount++;
+            releaseMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Internal method to acquire permits executing Lua script
+     * @param permits permits to obain
+     * @return true if permits obtained
+     */
+    private boolean redisAcquire(int permits) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permits to acquire on semaphore must be always more than zero");
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object oresult = jedis.eval(JedisSemaphore.SEMAPHORE_LUA_SCRIPT, Arrays.asList(name), Arrays.asList(String.valueOf(permits)));
+            return Boolean.parseBoolean((String) oresult);
+        }
+    }
+
+    /**
+     * Releases one permit
+     */
+    public void release() {
+        release(1);
+    }
+
+    /**
+     * Releases N permits and notifies the waiters
+     * @param permits permits to release
+     */
+    public void release(int permits) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permit to release on semaphore must be always more than zero");
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.eval(SEMAPHORE_RELEASE_LUA_SCRIPT, Arrays.asList(name, channelName), Arrays.asList(String.valueOf(permits)));
+        }
+    }
+
+    /**
+     * Return the current avalible permits on this semaphore
+     * If value doesn't exists, it returns -1
+     * @return number of permits
+     */
+    public int availablePermits() {
+        String permits;
+        try (Jedis jedis = jedisPool.getResource()) {
+            permits = jedis.get(name);
+        }
+        if (permits == null || permits.isEmpty()) {
+            return -1;
+        } else {
+            return Integer.parseInt(permits);
+        }
+    }
+
+    /**
+     * Stops receiving release messages
+     * The semaphore can be used again, but it will subscribe again if it needs to wait
+     */
+    @Override
+    public void close() {
+        boolean wasSubscribed;
+        synchronized (releaseMonitor) {
+            wasSubscribed = subscribed;
+            subscribed = false;
+        }
+        if (wasSubscribed) {
+            SharedJedisSubscriber.forPool(jedisPool).unsubscribe(channelName, releaseListener);
+        }
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUE DESTROYING THIS SEMAPHORE AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public void destroy() {
+        close();
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.del(name);
+        }
+    }
+
+}
@@ -0,0 +1,366 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.SetParams;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A redis/jedis semaphore that prefetches permits in batches
+ *
+ * It shares the redis value with JedisSemaphore (same name, same value) but the permits are
+ * taken from redis in batches with only one script call, and then given to the local threads
+ * from a counter in memory. Released permits are also kept in memory for the next acquires.
+ * So most of the acquire/release operations do not go to redis.
+ *
+ * Unused local permits are returned to redis after an idle time without operations, when the local
+ * count is more than the batch size, and on close.
+ *
+ * An acquire that can not get all its permits returns the local ones to redis, so two processes that hold
+ * part of the permits do not wait forever for each other.
+ *
+ * The cost is the fairness: permits held locally can not be used by other processes until they are returned
+ * Remember to call close when the semaphore will not be used again. The idle return does not keep the
+ * semaphore referenced, so if it is not closed and it is garbage collected, its local permits are lost.
+ */
+public class JedisPrefetchSemaphore implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisPrefetchSemaphore.class);
+
+    // Takes at least ARGV[1] permits and up to ARGV[2] if avalible; returns permits taken
+    public static final String SEMAPHORE_PREFETCH_LUA_SCRIPT = "" +
+            "local permits = redis.call('get', KEYS[1]); " + "\n" +
+            "if (permits == false or tonumber(permits) < tonumber(ARGV[1])) then " + "\n" +
+            "    return 0; " + "\n" +
+            "end " + "\n" +
+            "local taken = math.min(tonumber(permits), tonumber(ARGV[2])); " + "\n" +
+            "redis.call('decrby', KEYS[1], taken); " + "\n" +
+            "return taken; ";
+
+    private static final ScheduledExecutorService IDLE_RETURN_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r);
+        thread.setDaemon(true);
+        thread.setName("JedisPrefetchSemaphore_idleReturnThread");
+        return thread;
+    });
+
+    private final JedisPool jedisPool;
+    private final String name;
+    private final int batchSize;
+    private int localPermits = 0;
+    private long lastOperation = System.currentTimeMillis();
+    private long waitingMilis = 150;
+    private long idleReturnMilis = 1000;
+    private IdleReturnTask idleReturnTask;
+    private boolean closed = false;
+
+    /**
+     * Creates a semaphore that prefetches permits
+     * @param jedisPool Pool of connections
+     * @param name Name of the semaphore
+     * @param initialPermits Initial permits of the semaphore, only used if it does not exist in redis
+     * @param batchSize Number of permits to take from redis every time local ones are not enough
+     */
+    public JedisPrefetchSemaphore(JedisPool jedisPool, String name, int initialPermits, int batchSize) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        if (batchSize <= 0) throw new IllegalArgumentException("batch size must be more than zero");
+        this.jedisPool = jedisPool;
+        this.name = name;
+        this.batchSize = batchSize;
+        init(initialPermits);
+        scheduleIdleReturn();
+    }
+
+    /**
+     * Wait time between polling attemts
+     * @param waitingMilis time in milis
+     * @return this
+     */
+    public JedisPrefetchSemaphore withWaitingMilis(long waitingMilis) {
+        this.waitingMilis = waitingMilis;
+        return this;
+    }
+
+    /**
+     * Time without operations after which the local permits are returned to redis
+     * @param idleReturnMilis time in milis
+     * @return this
+     */
+    public synchronized JedisPrefetchSemaphore withIdleReturnMilis(long idleReturnMilis) {
+        if (idleReturnMilis <= 0) throw new IllegalArgumentException("idle return time must be more than zero");
+        this.idleReturnMilis = idleReturnMilis;
+        scheduleIdleReturn();
+        return this;
+    }
+
+    /**
+     * Init the semaphore if is the first
+     * @param initialPermits initial permits
+     */
+    private void init(int initialPermits) {
+        if (initialPermits < 0) {
+            throw new IllegalArgumentException("initial permit on semaphore must be always equal or more than zero");
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.set(name, String.valueOf(initialPermits), new SetParams().nx());
+        }
+    }
+
+    private synchronized void scheduleIdleReturn() {
+        if (closed) return;
+        if (idleReturnTask != null) {
+            idleReturnTask.cancel();
+        }
+        idleReturnTask = new IdleReturnTask(this);
+        idleReturnTask.schedule(idleReturnMilis);
+    }
+
+    /**
+     * Returns the sempahore name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the batch size
+     * @return batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Acquires one permit, waiting (and polling) if not avalible
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+
+    /**
+     * Acquires N permits, waiting (and polling) if not avalible
+     * Local releases wake the waiting threads at once
+     * @param permits permits to acquire
+     * @throws InterruptedException can be interrupted
+     */
+    public synchronized void acquire(int permits) throws InterruptedException {
+        boolean acquired = prefetchAcquire(permits);
+        while(!acquired) {
+            wait(waitingMilis);
+            acquired = prefetchAcquire(permits);
+        }
+    }
+
+    /**
+     * Tries to acquire one permit, but doesn't wait
+     * @return true if permit acquired, false otherwise
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * Tries to acquire N permits, but doesn't wait
+     * @param permits permits to acquire
+     * @return true if permits acquired, false otherwise
+     */
+    public synchronized boolean tryAcquire(int permits) {
+        return prefetchAcquire(permits);
+    }
+
+    /**
+     * Tries to acquire N permits, waiting a limited time
+     * @param permits permits to acquire
+     * @param timeOut timeout to wait
+     * @param timeUnit unit of timeout
+     * @return true if permits acquired, false otherwise
+     * @throws InterruptedException can be interrupted
+     */
+    public synchronized boolean tryAcquire(int permits, long timeOut, TimeUnit timeUnit) throws InterruptedException {
+        long timeMax = System.currentTimeMillis() + timeUnit.toMillis(timeOut);
+        boolean acquired = prefetchAcquire(permits);
+        long remaining = timeMax - System.currentTimeMillis();
+        while(!acquired && remaining > 0) {
+            wait(Math.min(waitingMilis, remaining));
+            remaining = timeMax - System.currentTimeMillis();
+            if (remaining > 0) {
+                acquired = prefetchAcquire(permits);
+            }
+        }
+        return acquired;
+    }
+
+    /**
+     * Takes the permits from the local counter,
+     * and if there are not enough, takes a batch from redis
+     * If there are not enough permits yet, the local ones are returned to redis
+     * @param permits permits to obain
+     * @return true if permits obtained
+     */
+    private boolean prefetchAcquire(int permits) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permits to acquire on semaphore must be always more than zero");
+        }
+        if (closed) throw new IllegalStateException("Semaphore is closed");
+        if (localPermits < permits) {
+            int needed = permits - localPermits;
+            localPermits += redisPrefetch(needed, Math.max(needed, batchSize));
+        }
+        if (localPermits >= permits) {
+            localPermits -= permits;
+            lastOperation = System.currentTimeMillis();
+            return true;
+        } else {
+            // Do not hold part of the permits while waiting, others may need them
+            returnLocalPermits(localPermits);
+            return false;
+        }
+    }
+
+    private int redisPrefetch(int minimum, int maximum) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            Object oresult = jedis.eval(SEMAPHORE_PREFETCH_LUA_SCRIPT, Arrays.asList(name),
+                    Arrays.asList(String.valueOf(minimum), String.valueOf(maximum)));
+            int taken = oresult != null ? Integer.parseInt(oresult.toString()) : 0;
+            LOG.debug("redisPrefetch semaphore {} taken {}", name, taken);
+            return taken;
+        }
+    }
+
+    /**
+     * Releases one permit
+     */
+    public void release() {
+        release(1);
+    }
+
+    /**
+     * Releases N permits
+     * They are kept locally, up to the batch size; the rest are returned to redis
+     * @param permits permits to release
+     */
+    public synchronized void release(int permits) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permit to release on semaphore must be always more than zero");
+        }
+        lastOperation = System.currentTimeMillis();
+        localPermits += permits;
+        if (closed) {
+            returnLocalPermits(localPermits);
+        } else if (localPermits > batchSize) {
+            returnLocalPermits(localPermits - batchSize);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Returns permits from the local counter to redis
+     * @param permits permits to return
+     */
+    private void returnLocalPermits(int permits) {
+        if (permits > 0) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.incrBy(name, permits);
+            }
+            localPermits -= permits;
+            LOG.debug("returnLocalPermits semaphore {} returned {}", name, permits);
+        }
+    }
+
+    private synchronized void returnIfIdle() {
+        try {
+            if (localPermits > 0 && System.currentTimeMillis() - lastOperation >= idleReturnMilis) {
+                returnLocalPermits(localPermits);
+            }
+        } catch (RuntimeException e) {
+            LOG.error("returnIfIdle error on semaphore {}", name, e);
+        }
+    }
+
+    /**
+     * Return the current avalible permits on redis, without the local ones
+     * If value doesn't exists, it returns -1
+     * @return number of permits
+     */
+    public int availablePermits() {
+        String permits;
+        try (Jedis jedis = jedisPool.getResource()) {
+            permits = jedis.get(name);
+        }
+        if (permits == null || permits.isEmpty()) {
+            return -1;
+        } else {
+            return Integer.parseInt(permits);
+        }
+    }
+
+    /**
+     * Permits prefetched and not used by this JVM
+     * @return local permits
+     */
+    public synchronized int localPermits() {
+        return localPermits;
+    }
+
+    /**
+     * Returns the local permits to redis and stops the idle return
+     * Permits released after closing are returned directly to redis
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (idleReturnTask != null) {
+            idleReturnTask.cancel();
+            idleReturnTask = null;
+        }
+        returnLocalPermits(localPermits);
+    }
+
+    /**
+     * Periodic idle return that only keeps a weak reference to the semaphore,
+     * so the scheduler does not keep alive the semaphores that are not closed
+     */
+    private static class IdleReturnTask implements Runnable {
+
+        private final WeakReference<JedisPrefetchSemaphore> semaphoreReference;
+        private volatile ScheduledFuture<?> scheduledFuture;
+
+        IdleReturnTask(JedisPrefetchSemaphore semaphore) {
+            this.semaphoreReference = new WeakReference<>(semaphore);
+        }
+
+        void schedule(long idleReturnMilis) {
+            scheduledFuture = IDLE_RETURN_SCHEDULER.scheduleWithFixedDelay(this,
+                    idleReturnMilis, idleReturnMilis, TimeUnit.MILLISECONDS);
+        }
+
+        void cancel() {
+            if (scheduledFuture != null) {
+                scheduledFuture.cancel(false);
+            }
+        }
+
+        @Override
+        public void run() {
+            JedisPrefetchSemaphore semaphore = semaphoreReference.get();
+            if (semaphore != null) {
+                semaphore.returnIfIdle();
+            } else {
+                cancel();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,165 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A redis/jedis rate limiter with the generic cell rate algorithm (GCRA)
+ *
+ * Only one value is stored in redis: the theoretical arrival time (TAT) of the next permit, in server time.
+ * Every permit moves the TAT an emission interval (period / permits per period) into the future;
+ * a request is allowed if the new TAT is not more than burst intervals away from now.
+ * If it is not allowed, the script returns how long to wait until it is, so the caller can sleep exactly that time.
+ *
+ * One script call per decision, and the key expires when the limiter is idle
+ * The first limiter defines nothing in redis; all limiters with the same name must use the same rate and burst
+ */
+public class JedisRateLimiter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisRateLimiter.class);
+
+    // KEYS: tat
+    // ARGV: emission interval millis, burst, permits
+    // Returns 0 if permitted, or the millis to wait if not
+    public static final String GCRA_LUA_SCRIPT = "" +
+            "redis.replicate_commands(); " + "\n" +
+            "local time = redis.call('time'); " + "\n" +
+            "local now = tonumber(time[1]) * 1000 + tonumber(time[2]) / 1000; " + "\n" +
+            "local interval = tonumber(ARGV[1]); " + "\n" +
+            "local tat = math.max(tonumber(redis.call('get', KEYS[1]) or '0'), now); " + "\n" +
+            "local newTat = tat + interval * tonumber(ARGV[3]); " + "\n" +
+            "local retryAfter = newTat - interval * tonumber(ARGV[2]) - now; " + "\n" +
+            "if retryAfter > 0 then " + "\n" +
+            "    return math.ceil(retryAfter); " + "\n" +
+            "end " + "\n" +
+            "redis.call('set', KEYS[1], string.format('%.3f', newTat), 'px', math.ceil(newTat - now) + 1); " + "\n" +
+            "return 0; ";
+
+    private final Jedis jedis;
+    private final String name;
+    private final double emissionIntervalMilis;
+    private int burst;
+
+    /**
+     * Creates a rate limiter
+     * By default the burst is the permits per period
+     * @param jedis Jedis connection
+     * @param name Name of the limiter
+     * @param permitsPerPeriod Permits allowed every period
+     * @param period Period of time
+     * @param timeUnit Unit of period
+     */
+    public JedisRateLimiter(Jedis jedis, String name, int permitsPerPeriod, long period, TimeUnit timeUnit) {
+        if (jedis == null) throw new IllegalArgumentException("Jedis can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        if (permitsPerPeriod <= 0) throw new IllegalArgumentException("permits per period must be more than zero");
+        if (period <= 0) throw new IllegalArgumentException("period must be more than zero");
+        this.jedis = jedis;
+        this.name = name;
+        this.emissionIntervalMilis = (double) timeUnit.toMicros(period) / 1000.0 / permitsPerPeriod;
+        this.burst = permitsPerPeriod;
+    }
+
+    /**
+     * Maximum permits that can be taken at once, after the limiter has been idle
+     * @param burst permits, one or more
+     * @return this
+     */
+    public JedisRateLimiter withBurst(int burst) {
+        if (burst <= 0) throw new IllegalArgumentException("burst must be more than zero");
+        this.burst = burst;
+        return this;
+    }
+
+    /**
+     * Returns the limiter name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Tries to acquire one permit, but doesn't wait
+     * @return 0 if acquired, or the milis to wait before it can be acquired
+     */
+    public long tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * Tries to acquire N permits, but doesn't wait
+     * @param permits permits to acquire, no more than burst
+     * @return 0 if acquired, or the milis to wait before they can be acquired
+     */
+    public synchronized long tryAcquire(int permits) {
+        if (permits <= 0 || permits > burst) {
+            throw new IllegalArgumentException("permits to acquire must be more than zero and not more than burst");
+        }
+        Object oresult = jedis.eval(GCRA_LUA_SCRIPT, Collections.singletonList(name),
+                Arrays.asList(String.format(Locale.ROOT, "%.6f", emissionIntervalMilis), String.valueOf(burst), String.valueOf(permits)));
+        long retryAfter = Long.parseLong(oresult.toString());
+        LOG.debug("tryAcquire limiter {} permits {} retryAfter {}", name, permits, retryAfter);
+        return retryAfter;
+    }
+
+    /**
+     * Acquires one permit, sleeping as needed
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+
+    /**
+     * Acquires N permits, sleeping as needed
+     * @param permits permits to acquire, no more than burst
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire(int permits) throws InterruptedException {
+        long retryAfter = tryAcquire(permits);
+        while (retryAfter > 0) {
+            Thread.sleep(retryAfter);
+            retryAfter = tryAcquire(permits);
+        }
+    }
+
+    /**
+     * Tries to acquire N permits, sleeping as needed a limited time
+     * If the wait needed is beyond the timeout, it returns without waiting
+     * @param permits permits to acquire, no more than burst
+     * @param timeOut timeout to wait
+     * @param timeUnit unit of timeout
+     * @return true if permits acquired, false otherwise
+     * @throws InterruptedException can be interrupted
+     */
+    public boolean tryAcquire(int permits, long timeOut, TimeUnit timeUnit) throws InterruptedException {
+        long timeMax = System.currentTimeMillis() + timeUnit.toMillis(timeOut);
+        long retryAfter = tryAcquire(permits);
+        while (retryAfter > 0) {
+            if (System.currentTimeMillis() + retryAfter > timeMax) {
+                return false;
+            }
+            Thread.sleep(retryAfter);
+            retryAfter = tryAcquire(permits);
+        }
+        return true;
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUES DESTROYING THIS LIMITER AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public void destroy() {
+        jedis.del(name);
+    }
+
+}
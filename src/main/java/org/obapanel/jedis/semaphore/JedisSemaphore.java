@@ -1,12 +1,15 @@
 package org.obapanel.jedis.semaphore;
 
 
+import org.obapanel.jedis.common.JedisWriteCombiner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.params.SetParams;
 
 import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -25,6 +28,8 @@ import java.util.concurrent.TimeUnit;
  * No messages will be involved, the semaphore must check redis periodically until the
  * permits are avalible or interrupted.
  *
+ * With write combining, the releases of many threads with releaseAsync are sent together
+ * (see JedisWriteCombiner)
  *
  *
  */
@@ -47,6 +52,7 @@ public class JedisSemaphore {
     private final Jedis jedis;
     private final String name;
     private long waitingMilis = 150;
+    private JedisWriteCombiner writeCombiner;
 
     /**
      * Creates a semaphore with one initial permit
@@ -79,6 +85,18 @@ public class JedisSemaphore {
         return this;
     }
 
+    /**
+     * Sets the pool whose shared write combiner will be used by releaseAsync
+     * The combiner is created with the default configuration if it does not exist,
+     * use JedisWriteCombiner.forPool before to configure it
+     * @param jedisPool pool of connections
+     * @return this
+     */
+    public JedisSemaphore withWriteCombining(JedisPool jedisPool){
+        this.writeCombiner = JedisWriteCombiner.forPool(jedisPool);
+        return this;
+    }
+
     /**
      * Init the semaphore if is the first
      * @param initialPermits initial permits
@@ -192,6 +210,32 @@ public class JedisSemaphore {
         jedis.incrBy(name,permits);
     }
 
+    /**
+     * Releases one permit, combined with other releases if write combining is set
+     * @return future completed when the permit is released in redis
+     */
+    public CompletableFuture<Void> releaseAsync() {
+        return releaseAsync(1);
+    }
+
+    /**
+     * Releases N permits, combined with other releases if write combining is set
+     * Without write combining, the permits are released at the moment
+     * If the future fails, the permits may have been released or not, do not release them again blindly
+     * @param permits permits to release
+     * @return future completed when the permits are released in redis
+     */
+    public CompletableFuture<Void> releaseAsync(int permits) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permit to release on semaphore must be always more than zero");
+        }
+        if (writeCombiner == null) {
+            release(permits);
+            return CompletableFuture.completedFuture(null);
+        }
+        return writeCombiner.incrBy(name, permits).thenApply(value -> null);
+    }
+
     /**
      * Return the current avalible permits on this semaphore
      * If value doesn't exists, it returns -1
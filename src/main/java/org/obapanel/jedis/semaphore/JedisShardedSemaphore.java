@@ -0,0 +1,365 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A redis/jedis semaphore whose permits are split into various redis keys (shards)
+ *
+ * A very used semaphore has only one hot key, and every operation on the cluster is serialized on it
+ * (and on only one node in a redis cluster). This one divides the permits into K keys, name:shard:N
+ * Every operation starts with one shard chosen randomly or by an affinity key, and if the permits are not there,
+ * the other shards are scanned before waiting.
+ * If the permits can not be found in only one shard, they are gathered from various shards
+ * (and returned if the total is not enough)
+ *
+ * As releases go to one shard, permits can be unbalanced over time; they are rebalanced when
+ * a waiting acquire fails (at most once every rebalance interval) or when calling rebalance
+ * The rebalance is made with single key operations, so it is valid in a redis cluster, and never creates permits
+ *
+ * The initial permits are split between the shards when they are created.
+ * This semaphore does not share value with JedisSemaphore with the same name
+ */
+public class JedisShardedSemaphore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisShardedSemaphore.class);
+
+    public static final String SHARD_SUFFIX = ":shard:";
+
+    // Takes up to ARGV[1] permits, returns permits taken
+    public static final String SEMAPHORE_TAKE_UP_TO_LUA_SCRIPT = "" +
+            "local permits = redis.call('get', KEYS[1]); " + "\n" +
+            "if (permits == false or tonumber(permits) <= 0) then " + "\n" +
+            "    return 0; " + "\n" +
+            "end " + "\n" +
+            "local taken = math.min(tonumber(permits), tonumber(ARGV[1])); " + "\n" +
+            "redis.call('decrby', KEYS[1], taken); " + "\n" +
+            "return taken; ";
+
+    private final Jedis jedis;
+    private final String name;
+    private final List<String> shardNames;
+    private Integer affinityShard = null;
+    private long waitingMilis = 150;
+    private long rebalanceMilis = 1000;
+    private long lastRebalance = 0L;
+
+    /**
+     * Creates a sharded semaphore
+     * @param jedis Jedis connection
+     * @param name Name of the semaphore
+     * @param initialPermits Initial permits of the semaphore, split between the shards
+     * @param shards Number of shards
+     */
+    public JedisShardedSemaphore(Jedis jedis, String name, int initialPermits, int shards) {
+        if (jedis == null) throw new IllegalArgumentException("Jedis can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        if (shards <= 0) throw new IllegalArgumentException("number of shards must be more than zero");
+        this.jedis = jedis;
+        this.name = name;
+        List<String> names = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            names.add(name + SHARD_SUFFIX + i);
+        }
+        this.shardNames = Collections.unmodifiableList(names);
+        init(initialPermits);
+    }
+
+    /**
+     * Wait time between polling attemts
+     * @param waitingMilis time in milis
+     * @return this
+     */
+    public JedisShardedSemaphore withWaitingMilis(long waitingMilis) {
+        this.waitingMilis = waitingMilis;
+        return this;
+    }
+
+    /**
+     * Minimum time between two automatic rebalances
+     * @param rebalanceMilis time in milis
+     * @return this
+     */
+    public JedisShardedSemaphore withRebalanceMilis(long rebalanceMilis) {
+        this.rebalanceMilis = rebalanceMilis;
+        return this;
+    }
+
+    /**
+     * All the operations of this object will start with the same shard, chosen with this key
+     * (clients with the same key will use the same shard first)
+     * If not set, a random shard is chosen on every operation
+     * @param affinityKey key of affinity, null to use random shards
+     * @return this
+     */
+    public JedisShardedSemaphore withAffinityKey(String affinityKey) {
+        this.affinityShard = affinityKey != null ? Math.floorMod(affinityKey.hashCode(), shardNames.size()) : null;
+        return this;
+    }
+
+    /**
+     * Init the shards if they do not exist
+     * @param initialPermits initial permits
+     */
+    private void init(int initialPermits) {
+        if (initialPermits < 0) {
+            throw new IllegalArgumentException("initial permit on semaphore must be always equal or more than zero");
+        }
+        for (int i = 0; i < shardNames.size(); i++) {
+            jedis.set(shardNames.get(i), String.valueOf(shareOf(initialPermits, i)), new SetParams().nx());
+        }
+    }
+
+    /**
+     * Part of the total that corresponds to a shard
+     * @param total total permits
+     * @param shard shard number
+     * @return permits of the shard
+     */
+    private int shareOf(int total, int shard) {
+        int shards = shardNames.size();
+        return total / shards + (shard < total % shards ? 1 : 0);
+    }
+
+    /**
+     * Returns the sempahore name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the names of the shards in redis
+     * @return shard names
+     */
+    public List<String> getShardNames() {
+        return shardNames;
+    }
+
+    /**
+     * Acquires one permit, waiting (and polling) if not avalible
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+
+    /**
+     * Acquires N permits, waiting (and polling) if not avalible
+     * @param permits permits to acquire
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire(int permits) throws InterruptedException {
+        boolean acquired = redisAcquire(permits);
+        while(!acquired) {
+            rebalanceIfNeeded();
+            Thread.sleep(waitingMilis);
+            acquired = redisAcquire(permits);
+        }
+    }
+
+    /**
+     * Tries to acquire one permit, but doesn't wait
+     * @return true if permit acquired, false otherwise
+     */
+    public boolean tryAcquire() {
+        return redisAcquire(1);
+    }
+
+    /**
+     * Tries to acquire N permits, but doesn't wait
+     * @param permits permits to acquire
+     * @return true if permits acquired, false otherwise
+     */
+    public boolean tryAcquire(int permits) {
+        return redisAcquire(permits);
+    }
+
+    /**
+     * Tries to acquire N permits, waiting a limited time
+     * @param permits permits to acquire
+     * @param timeOut timeout to wait
+     * @param timeUnit unit of timeout
+     * @return true if permits acquired, false otherwise
+     * @throws InterruptedException can be interrupted
+     */
+    public boolean tryAcquire(int permits, long timeOut, TimeUnit timeUnit) throws InterruptedException {
+        long timeMax = System.currentTimeMillis() + timeUnit.toMillis(timeOut);
+        boolean acquired = redisAcquire(permits);
+        boolean exired = System.currentTimeMillis() > timeMax;
+        while(!acquired && !exired) {
+            rebalanceIfNeeded();
+            Thread.sleep(waitingMilis);
+            exired = System.currentTimeMillis() > timeMax;
+            if (!exired) {
+                acquired = redisAcquire(permits);
+            }
+        }
+        return acquired;
+    }
+
+    /**
+     * Tries to get the permits from only one shard, starting with the selected one and scanning the others
+     * If not possible, it tries to gather them from various shards
+     * @param permits permits to obain
+     * @return true if permits obtained
+     */
+    private synchronized boolean redisAcquire(int permits) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permits to acquire on semaphore must be always more than zero");
+        }
+        int first = firstShard();
+        int shards = shardNames.size();
+        for (int i = 0; i < shards; i++) {
+            String shardName = shardNames.get((first + i) % shards);
+            Object oresult = jedis.eval(JedisSemaphore.SEMAPHORE_LUA_SCRIPT, Arrays.asList(shardName), Arrays.asList(String.valueOf(permits)));
+            if (Boolean.parseBoolean((String) oresult)) {
+                return true;
+            }
+        }
+        return permits > 1 && shards > 1 && gatherAcquire(first, permits);
+    }
+
+    /**
+     * Takes permits from various shards until the needed are taken
+     * If not enough, the taken ones are returned
+     * @param first first shard
+     * @param permits permits to obain
+     * @return true if permits obtained
+     */
+    private boolean gatherAcquire(int first, int permits) {
+        int shards = shardNames.size();
+        int[] taken = new int[shards];
+        int remaining = permits;
+        for (int i = 0; i < shards && remaining > 0; i++) {
+            int shard = (first + i) % shards;
+            taken[shard] = takeUpTo(shardNames.get(shard), remaining);
+            remaining -= taken[shard];
+        }
+        if (remaining > 0) {
+            for (int shard = 0; shard < shards; shard++) {
+                if (taken[shard] > 0) {
+                    jedis.incrBy(shardNames.get(shard), taken[shard]);
+                }
+            }
+            return false;
+        } else {
+            return true;
+        }
+    }
+
+    private int takeUpTo(String shardName, int permits) {
+        Object oresult = jedis.eval(SEMAPHORE_TAKE_UP_TO_LUA_SCRIPT, Arrays.asList(shardName), Arrays.asList(String.valueOf(permits)));
+        return oresult != null ? Integer.parseInt(oresult.toString()) : 0;
+    }
+
+    private int firstShard() {
+        return affinityShard != null ? affinityShard : ThreadLocalRandom.current().nextInt(shardNames.size());
+    }
+
+    /**
+     * Releases one permit
+     */
+    public void release() {
+        release(1);
+    }
+
+    /**
+     * Releases N permits into the selected shard
+     * @param permits permits to release
+     */
+    public synchronized void release(int permits) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permit to release on semaphore must be always more than zero");
+        }
+        jedis.incrBy(shardNames.get(firstShard()), permits);
+    }
+
+    private void rebalanceIfNeeded() {
+        if (System.currentTimeMillis() - lastRebalance >= rebalanceMilis) {
+            rebalance();
+        }
+    }
+
+    /**
+     * Moves permits from the shards with more than its part to the ones with less
+     * Permits are taken from the richest shards before giving them to the others,
+     * so concurrent operations can see less permits but never more
+     */
+    public synchronized void rebalance() {
+        lastRebalance = System.currentTimeMillis();
+        int shards = shardNames.size();
+        int[] values = new int[shards];
+        int total = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            values[shard] = shardValue(shard);
+            total += Math.max(values[shard], 0);
+        }
+        int moving = 0;
+        for (int shard = 0; shard < shards; shard++) {
+            int surplus = values[shard] - shareOf(total, shard);
+            if (surplus > 0) {
+                int taken = takeUpTo(shardNames.get(shard), surplus);
+                values[shard] -= taken;
+                moving += taken;
+            }
+        }
+        for (int shard = 0; shard < shards && moving > 0; shard++) {
+            int lack = Math.min(shareOf(total, shard) - values[shard], moving);
+            if (lack > 0) {
+                jedis.incrBy(shardNames.get(shard), lack);
+                moving -= lack;
+            }
+        }
+        if (moving > 0) {
+            jedis.incrBy(shardNames.get(firstShard()), moving);
+        }
+        LOG.debug("rebalance semaphore {} total {}", name, total);
+    }
+
+    private int shardValue(int shard) {
+        String permits = jedis.get(shardNames.get(shard));
+        if (permits == null || permits.isEmpty()) {
+            return -1;
+        } else {
+            return Integer.parseInt(permits);
+        }
+    }
+
+    /**
+     * Return the current avalible permits on all the shards of this semaphore
+     * If no shard exists, it returns -1
+     * @return number of permits
+     */
+    public synchronized int availablePermits() {
+        int total = -1;
+        for (int shard = 0; shard < shardNames.size(); shard++) {
+            int value = shardValue(shard);
+            if (value >= 0) {
+                total = Math.max(total, 0) + value;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUES DESTROYING THIS SEMAPHORE AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     */
+    public synchronized void destroy() {
+        shardNames.forEach(jedis::del);
+    }
+
+}
@@ -0,0 +1,425 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.obapanel.jedis.common.SharedJedisSubscriber;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.params.SetParams;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A redis/jedis semaphore shared by tenants, that gives the permits to every tenant in proportion to its weight
+ *
+ * Every tenant has its own queue of waiters in redis. When there are permits (after a release or a new waiter)
+ * they are granted to the first waiter of the tenant with the lowest virtual time (start-time fair queuing);
+ * and the virtual time of that tenant advances the granted permits divided by its weight.
+ * So under overload, a tenant with weight 3 gets three times the permits of a tenant with weight 1,
+ * and a flooding tenant can not starve the others.
+ * All the decisions are made within the scripts, the waiters are only woken to take their grant: the token of
+ * the granted waiter is published on the wake channel of the semaphore, received with the shared subscriber of the pool.
+ * So a waiting acquire does not hold a connection of the pool while it waits, only while it calls redis.
+ *
+ * Inside a tenant the waiters are served in order of arrival, and the first one blocks the others
+ * of its tenant until there are enough permits for it.
+ * Waiters refresh their place every wake cycle; dead waiters, and grants not taken, are removed after
+ * the waiter timeout and their permits returned
+ *
+ * The weight of a tenant is the one given by the last client of the tenant that has tried to acquire
+ * This semaphore does not share value with JedisSemaphore with the same name
+ *
+ * CAUTION: this semaphore does not work with Redis Cluster. The scripts visit the queues of all the active
+ * tenants, keys built inside the scripts from the prefix given in ARGV, that can not be declared in KEYS
+ * before knowing the tenants; so all the keys must be in the same server.
+ */
+public class JedisWeightedFairSemaphore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JedisWeightedFairSemaphore.class);
+
+    public static final String WEIGHTS_SUFFIX = ":wfqWeights";
+    public static final String TAGS_SUFFIX = ":wfqTags";
+    public static final String VIRTUAL_TIME_SUFFIX = ":wfqVirtualTime";
+    public static final String WAITER_TIMEOUTS_SUFFIX = ":wfqWaiterTimeouts";
+    public static final String WAITER_PERMITS_SUFFIX = ":wfqWaiterPermits";
+    public static final String WAITER_TENANTS_SUFFIX = ":wfqWaiterTenants";
+    public static final String GRANTED_SUFFIX = ":wfqGranted";
+    public static final String SEQUENCE_SUFFIX = ":wfqSequence";
+    public static final String ACTIVE_TENANTS_SUFFIX = ":wfqActiveTenants";
+    public static final String QUEUE_SUFFIX = ":wfqQueue:";
+    public static final String WAKE_CHANNEL_SUFFIX = ":wfqWake";
+
+    // Common part of scripts: current time, removal of dead waiters and dispatch function
+    // KEYS: permits, weights, tags, virtual time, waiter timeouts (by expiration), waiter permits, waiter tenants,
+    //       granted, sequence, active tenants
+    // ARGV[1] is always the queue prefix and ARGV[2] the wake channel
+    // Queue keys are built from the prefix, not declared in KEYS (no Redis Cluster)
+    private static final String WFQ_LUA_SCRIPT_PART = "" +
+            "redis.replicate_commands(); " + "\n" +
+            "local time = redis.call('time'); " + "\n" +
+            "local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000); " + "\n" +
+            "local function forget(token) " + "\n" +
+            "    redis.call('zrem', KEYS[5], token); " + "\n" +
+            "    redis.call('hdel', KEYS[6], token); " + "\n" +
+            "    redis.call('hdel', KEYS[7], token); " + "\n" +
+            "    redis.call('hdel', KEYS[8], token); " + "\n" +
+            "end " + "\n" +
+            "local function leave(token) " + "\n" +
+            "    local granted = redis.call('hget', KEYS[8], token); " + "\n" +
+            "    if granted ~= false then " + "\n" +
+            "        redis.call('incrby', KEYS[1], granted); " + "\n" +
+            "    else " + "\n" +
+            "        local tenant = redis.call('hget', KEYS[7], token); " + "\n" +
+            "        if tenant ~= false then " + "\n" +
+            "            redis.call('zrem', ARGV[1] .. tenant, token); " + "\n" +
+            "        end " + "\n" +
+            "    end " + "\n" +
+            "    forget(token); " + "\n" +
+            "end " + "\n" +
+            "local function dispatch() " + "\n" +
+            "    while true do " + "\n" +
+            "        local virtualTime = tonumber(redis.call('get', KEYS[4]) or '0'); " + "\n" +
+            "        local best, bestTag, bestHead = nil, nil, nil; " + "\n" +
+            "        for _, tenant in ipairs(redis.call('smembers', KEYS[10])) do " + "\n" +
+            "            local head = redis.call('zrange', ARGV[1] .. tenant, 0, 0)[1]; " + "\n" +
+            "            if head == nil then " + "\n" +
+            "                redis.call('srem', KEYS[10], tenant); " + "\n" +
+            "            else " + "\n" +
+            "                local tag = math.max(virtualTime, tonumber(redis.call('hget', KEYS[3], tenant) or '0')); " + "\n" +
+            "                if (bestTag == nil or tag < bestTag) then " + "\n" +
+            "                    best, bestTag, bestHead = tenant, tag, head; " + "\n" +
+            "                end " + "\n" +
+            "            end " + "\n" +
+            "        end " + "\n" +
+            "        if best == nil then return; end " + "\n" +
+            "        local need = tonumber(redis.call('hget', KEYS[6], bestHead)); " + "\n" +
+            "        if tonumber(redis.call('get', KEYS[1]) or '0') < need then return; end " + "\n" +
+            "        redis.call('decrby', KEYS[1], need); " + "\n" +
+            "        redis.call('zrem', ARGV[1] .. best, bestHead); " + "\n" +
+            "        redis.call('hset', KEYS[8], bestHead, need); " + "\n" +
+            "        local weight = tonumber(redis.call('hget', KEYS[2], best) or '1'); " + "\n" +
+            "        redis.call('hset', KEYS[3], best, string.format('%.6f', bestTag + need / weight)); " + "\n" +
+            "        redis.call('set', KEYS[4], string.format('%.6f', bestTag)); " + "\n" +
+            "        redis.call('publish', ARGV[2], bestHead); " + "\n" +
+            "    end " + "\n" +
+            "end " + "\n" +
+            "for _, token in ipairs(redis.call('zrangebyscore', KEYS[5], '-inf', now)) do " + "\n" +
+            "    leave(token); " + "\n" +
+            "end " + "\n";
+
+    // ARGV: queue prefix, wake channel, tenant, token, permits, weight, waiter timeout millis, stay in queue (1/0)
+    public static final String WFQ_ACQUIRE_LUA_SCRIPT = WFQ_LUA_SCRIPT_PART +
+            "redis.call('hset', KEYS[2], ARGV[3], ARGV[6]); " + "\n" +
+            "if redis.call('hget', KEYS[8], ARGV[4]) ~= false then " + "\n" +
+            "    forget(ARGV[4]); " + "\n" +
+            "    return 1; " + "\n" +
+            "end " + "\n" +
+            "if redis.call('hget', KEYS[6], ARGV[4]) == false then " + "\n" +
+            "    redis.call('zadd', ARGV[1] .. ARGV[3], redis.call('incr', KEYS[9]), ARGV[4]); " + "\n" +
+            "    redis.call('hset', KEYS[6], ARGV[4], ARGV[5]); " + "\n" +
+            "    redis.call('hset', KEYS[7], ARGV[4], ARGV[3]); " + "\n" +
+            "    redis.call('sadd', KEYS[10], ARGV[3]); " + "\n" +
+            "end " + "\n" +
+            "redis.call('zadd', KEYS[5], now + tonumber(ARGV[7]), ARGV[4]); " + "\n" +
+            "dispatch(); " + "\n" +
+            "if redis.call('hget', KEYS[8], ARGV[4]) ~= false then " + "\n" +
+            "    forget(ARGV[4]); " + "\n" +
+            "    return 1; " + "\n" +
+            "end " + "\n" +
+            "if ARGV[8] == '0' then " + "\n" +
+            "    leave(ARGV[4]); " + "\n" +
+            "end " + "\n" +
+            "return 0; ";
+
+    // ARGV: queue prefix, wake channel, permits
+    public static final String WFQ_RELEASE_LUA_SCRIPT = WFQ_LUA_SCRIPT_PART +
+            "local permits = redis.call('incrby', KEYS[1], ARGV[3]); " + "\n" +
+            "dispatch(); " + "\n" +
+            "return permits; ";
+
+    // ARGV: queue prefix, wake channel, token
+    public static final String WFQ_LEAVE_LUA_SCRIPT = WFQ_LUA_SCRIPT_PART +
+            "leave(ARGV[3]); " + "\n" +
+            "dispatch(); " + "\n" +
+            "return 1; ";
+
+    private final JedisPool jedisPool;
+    private final String name;
+    private final String tenant;
+    private final int weight;
+    private final List<String> keys;
+    private final String queuePrefix;
+    private final String wakeChannel;
+    private final SharedJedisSubscriber sharedJedisSubscriber;
+    private int wakeCycleSeconds = 1;
+
+    /**
+     * Creates a weighted fair semaphore for a tenant
+     * @param jedisPool Pool of connections
+     * @param name Name of the semaphore
+     * @param initialPermits Initial permits of the semaphore
+     * @param tenant Tenant of this client
+     * @param weight Weight of the tenant, one or more
+     */
+    public JedisWeightedFairSemaphore(JedisPool jedisPool, String name, int initialPermits, String tenant, int weight) {
+        if (jedisPool == null) throw new IllegalArgumentException("JedisPool can not be null");
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name can not be null nor empty nor whitespace");
+        if (tenant == null || tenant.trim().isEmpty()) throw new IllegalArgumentException("Tenant can not be null nor empty nor whitespace");
+        if (weight <= 0) throw new IllegalArgumentException("weight of tenant must be more than zero");
+        this.jedisPool = jedisPool;
+        this.name = name;
+        this.tenant = tenant;
+        this.weight = weight;
+        this.keys = Arrays.asList(name, name + WEIGHTS_SUFFIX, name + TAGS_SUFFIX, name + VIRTUAL_TIME_SUFFIX,
+                name + WAITER_TIMEOUTS_SUFFIX, name + WAITER_PERMITS_SUFFIX, name + WAITER_TENANTS_SUFFIX,
+                name + GRANTED_SUFFIX, name + SEQUENCE_SUFFIX, name + ACTIVE_TENANTS_SUFFIX);
+        this.queuePrefix = name + QUEUE_SUFFIX;
+        this.wakeChannel = name + WAKE_CHANNEL_SUFFIX;
+        this.sharedJedisSubscriber = SharedJedisSubscriber.forPool(jedisPool);
+        init(initialPermits);
+    }
+
+    /**
+     * Maximum time waiting for a grant, before refreshing the place in the queue
+     * and checking again
+     * @param wakeCycleSeconds seconds, one or more
+     * @return this
+     */
+    public JedisWeightedFairSemaphore withWakeCycleSeconds(int wakeCycleSeconds) {
+        if (wakeCycleSeconds <= 0) throw new IllegalArgumentException("wake cycle must be one second or more");
+        this.wakeCycleSeconds = wakeCycleSeconds;
+        return this;
+    }
+
+    /**
+     * Init the semaphore if is the first
+     * @param initialPermits initial permits
+     */
+    private void init(int initialPermits) {
+        if (initialPermits < 0) {
+            throw new IllegalArgumentException("initial permit on semaphore must be always equal or more than zero");
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.set(name, String.valueOf(initialPermits), new SetParams().nx());
+        }
+    }
+
+    /**
+     * Returns the sempahore name
+     * @return name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the tenant of this client
+     * @return tenant
+     */
+    public String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * Returns the weight of the tenant
+     * @return weight
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Acquires one permit, waiting in the queue of the tenant if not avalible
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire() throws InterruptedException {
+        acquire(1);
+    }
+
+    /**
+     * Acquires N permits, waiting in the queue of the tenant if not avalible
+     * @param permits permits to acquire
+     * @throws InterruptedException can be interrupted
+     */
+    public void acquire(int permits) throws InterruptedException {
+        waitInQueue(permits, Long.MAX_VALUE);
+    }
+
+    /**
+     * Tries to acquire one permit, but doesn't wait
+     * It only succeeds if no other waiter goes before it
+     * @return true if permit acquired, false otherwise
+     */
+    public boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * Tries to acquire N permits, but doesn't wait
+     * It only succeeds if no other waiter goes before it
+     * @param permits permits to acquire
+     * @return true if permits acquired, false otherwise
+     */
+    public boolean tryAcquire(int permits) {
+        return redisAcquire(newToken(), permits, false);
+    }
+
+    /**
+     * Tries to acquire N permits, waiting in the queue of the tenant a limited time
+     * @param permits permits to acquire
+     * @param timeOut timeout to wait
+     * @param timeUnit unit of timeout
+     * @return true if permits acquired, false otherwise
+     * @throws InterruptedException can be interrupted
+     */
+    public boolean tryAcquire(int permits, long timeOut, TimeUnit timeUnit) throws InterruptedException {
+        return waitInQueue(permits, System.currentTimeMillis() + timeUnit.toMillis(timeOut));
+    }
+
+    /**
+     * Enqueues and waits until the permits are granted
+     * A connection of the pool is used only while calling redis, not while waiting
+     * If the time limit is reached or the thread is interrupted, the waiter leaves the queue
+     * (and returns the permits if they have been granted meanwhile)
+     * @param permits permits to acquire
+     * @param timeMax system time limit
+     * @return true if acquired
+     * @throws InterruptedException can be interrupted
+     */
+    private boolean waitInQueue(int permits, long timeMax) throws InterruptedException {
+        String token = newToken();
+        BlockingQueue<String> wakeUps = new LinkedBlockingQueue<>();
+        Consumer<String> wakeListener = message -> {
+            if (token.equals(message)) {
+                wakeUps.offer(message);
+            }
+        };
+        boolean acquired = false;
+        boolean subscribed = false;
+        try {
+            acquired = redisAcquire(token, permits, true);
+            if (!acquired && timeMax > System.currentTimeMillis()) {
+                sharedJedisSubscriber.subscribe(wakeChannel, wakeListener);
+                subscribed = true;
+                long wakeCycleMillis = TimeUnit.SECONDS.toMillis(wakeCycleSeconds);
+                sharedJedisSubscriber.awaitSubscription(wakeChannel,
+                        Math.min(wakeCycleMillis, timeMax - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                // Check again, a grant published before the subscription is lost
+                acquired = redisAcquire(token, permits, true);
+                while (!acquired) {
+                    long remaining = timeMax - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    wakeUps.poll(Math.min(wakeCycleMillis, remaining), TimeUnit.MILLISECONDS);
+                    acquired = redisAcquire(token, permits, true);
+                }
+            }
+        } finally {
+            if (subscribed) {
+                sharedJedisSubscriber.unsubscribe(wakeChannel, wakeListener);
+            }
+            if (!acquired) {
+                try (Jedis jedis = jedisPool.getResource()) {
+                    jedis.eval(WFQ_LEAVE_LUA_SCRIPT, keys, Arrays.asList(queuePrefix, wakeChannel, token));
+                }
+            }
+        }
+        return acquired;
+    }
+
+    /**
+     * Internal method to enqueue or take the grant executing Lua script
+     * @param token token of the waiter
+     * @param permits permits to obain
+     * @param stay true if the waiter must stay in the queue if not granted
+     * @return true if permits obtained
+     */
+    private boolean redisAcquire(String token, int permits, boolean stay) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permits to acquire on semaphore must be always more than zero");
+        }
+        long waiterTimeoutMillis = TimeUnit.SECONDS.toMillis(wakeCycleSeconds * 3L);
+        Object oresult;
+        try (Jedis jedis = jedisPool.getResource()) {
+            oresult = jedis.eval(WFQ_ACQUIRE_LUA_SCRIPT, keys, Arrays.asList(queuePrefix, wakeChannel, tenant, token,
+                    String.valueOf(permits), String.valueOf(weight), String.valueOf(waiterTimeoutMillis), stay ? "1" : "0"));
+        }
+        return oresult != null && Long.parseLong(oresult.toString()) == 1L;
+    }
+
+    private String newToken() {
+        return tenant + "_" + System.currentTimeMillis() + "_" + ThreadLocalRandom.current().nextLong(1_000_000_000L);
+    }
+
+    /**
+     * Releases one permit
+     */
+    public void release() {
+        release(1);
+    }
+
+    /**
+     * Releases N permits, and grants them to the waiters
+     * @param permits permits to release
+     */
+    public void release(int permits) {
+        if (permits <= 0){
+            throw new IllegalArgumentException("permit to release on semaphore must be always more than zero");
+        }
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.eval(WFQ_RELEASE_LUA_SCRIPT, keys, Arrays.asList(queuePrefix, wakeChannel, String.valueOf(permits)));
+        }
+        LOG.debug("release semaphore {} permits {} from tenant {}", name, permits, tenant);
+    }
+
+    /**
+     * Return the current avalible permits on this semaphore
+     * If value doesn't exists, it returns -1
+     * @return number of permits
+     */
+    public int availablePermits() {
+        String permits;
+        try (Jedis jedis = jedisPool.getResource()) {
+            permits = jedis.get(name);
+        }
+        if (permits == null || permits.isEmpty()) {
+            return -1;
+        } else {
+            return Integer.parseInt(permits);
+        }
+    }
+
+    /**
+     * Number of waiters of the tenant of this client
+     * @return waiters
+     */
+    public long getQueueLength() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.zcard(queuePrefix + tenant);
+        }
+    }
+
+    /**
+     * CAUTION !!
+     * THIS METHOD DELETES THE REMOTE VALUES DESTROYING THIS SEMAPHORE AND OHTERS
+     * USE AT YOUR OWN RISK WHEN ALL POSSIBLE OPERATIONS ARE FINISHED
+     * Queues of the active tenants are deleted (the queues of the other tenants are empty, so they do not exist)
+     */
+    public void destroy() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            for (String tenantName : jedis.smembers(name + ACTIVE_TENANTS_SUFFIX)) {
+                jedis.del(queuePrefix + tenantName);
+            }
+            keys.forEach(jedis::del);
+        }
+    }
+
+}
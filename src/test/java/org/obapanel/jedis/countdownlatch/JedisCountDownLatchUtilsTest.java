@@ -0,0 +1,80 @@
+package org.obapanel.jedis.countdownlatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.countdownlatch.MockOfJedis.unitTestEnabled;
+
+
+public class JedisCountDownLatchUtilsTest {
+
+    private String countDownLatch;
+    private MockOfJedis mockOfJedis;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(unitTestEnabled());
+        if (!unitTestEnabled()) return;
+        countDownLatch = "countDownLatch:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        mockOfJedis = new MockOfJedis();
+    }
+
+    @After
+    public void after() {
+        if (mockOfJedis != null) mockOfJedis.clearData();
+    }
+
+    @Test
+    public void awaitAllTest() throws InterruptedException {
+        List<JedisCountDownLatch> latches = createLatches();
+        Thread t = new Thread(() -> {
+            try {
+                for (JedisCountDownLatch latch : latches) {
+                    Thread.sleep(100);
+                    latch.countDown();
+                }
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+        long time = System.currentTimeMillis();
+        assertEquals(latches, JedisCountDownLatchUtils.awaitAll(latches, 2, TimeUnit.SECONDS, 50));
+        assertTrue(System.currentTimeMillis() - time < 1000);
+    }
+
+    @Test
+    public void awaitAllTimeoutTest() throws InterruptedException {
+        List<JedisCountDownLatch> latches = createLatches();
+        latches.get(1).countDown();
+        List<JedisCountDownLatch> reachedZero = JedisCountDownLatchUtils.awaitAll(latches, 300, TimeUnit.MILLISECONDS);
+        assertEquals(1, reachedZero.size());
+        assertEquals(latches.get(1).getName(), reachedZero.get(0).getName());
+    }
+
+    @Test
+    public void awaitAnyTest() throws InterruptedException {
+        List<JedisCountDownLatch> latches = createLatches();
+        assertTrue(JedisCountDownLatchUtils.awaitAny(latches, 300, TimeUnit.MILLISECONDS).isEmpty());
+        latches.get(2).countDown();
+        List<JedisCountDownLatch> reachedZero = JedisCountDownLatchUtils.awaitAny(latches, 300, TimeUnit.MILLISECONDS);
+        assertEquals(1, reachedZero.size());
+        assertEquals(latches.get(2).getName(), reachedZero.get(0).getName());
+    }
+
+    private List<JedisCountDownLatch> createLatches() {
+        return Arrays.asList(
+                new JedisCountDownLatch(mockOfJedis.getJedis(), countDownLatch + ":0", 1),
+                new JedisCountDownLatch(mockOfJedis.getJedis(), countDownLatch + ":1", 1),
+                new JedisCountDownLatch(mockOfJedis.getJedis(), countDownLatch + ":2", 1));
+    }
+
+}
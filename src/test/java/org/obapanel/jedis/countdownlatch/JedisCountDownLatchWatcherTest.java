@@ -0,0 +1,79 @@
+package org.obapanel.jedis.countdownlatch;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.countdownlatch.MockOfJedis.unitTestEnabled;
+
+
+public class JedisCountDownLatchWatcherTest {
+
+    private String countDownLatch;
+    private MockOfJedis mockOfJedis;
+    private ExecutorService executorService;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(unitTestEnabled());
+        if (!unitTestEnabled()) return;
+        countDownLatch = "countDownLatch:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        mockOfJedis = new MockOfJedis();
+        executorService = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void after() {
+        if (mockOfJedis != null) {
+            JedisCountDownLatchWatcher.forPool(mockOfJedis.getJedisPool()).close();
+            mockOfJedis.clearData();
+        }
+        if (executorService != null) executorService.shutdownNow();
+    }
+
+    @Test
+    public void onZeroTest() throws Exception {
+        JedisCountDownLatch jedisCountDownLatch = new JedisCountDownLatch(mockOfJedis.getJedis(), countDownLatch, 2).
+                withWatcherPool(mockOfJedis.getJedisPool());
+        AtomicBoolean done = new AtomicBoolean(false);
+        CompletableFuture<Void> action = jedisCountDownLatch.onZero(() -> done.set(true), executorService);
+        CompletableFuture<Void> future = jedisCountDownLatch.toCompletableFuture();
+        assertEquals(1, JedisCountDownLatchWatcher.forPool(mockOfJedis.getJedisPool()).watchedLatches());
+        jedisCountDownLatch.countDown();
+        Thread.sleep(300);
+        assertFalse(done.get());
+        assertFalse(future.isDone());
+        jedisCountDownLatch.countDown();
+        action.get(1, TimeUnit.SECONDS);
+        future.get(1, TimeUnit.SECONDS);
+        assertTrue(done.get());
+        assertEquals(0, JedisCountDownLatchWatcher.forPool(mockOfJedis.getJedisPool()).watchedLatches());
+    }
+
+    @Test
+    public void cancelOneFutureTest() throws Exception {
+        JedisCountDownLatch jedisCountDownLatch = new JedisCountDownLatch(mockOfJedis.getJedis(), countDownLatch, 1).
+                withWatcherPool(mockOfJedis.getJedisPool());
+        CompletableFuture<Void> future1 = jedisCountDownLatch.toCompletableFuture();
+        CompletableFuture<Void> future2 = jedisCountDownLatch.toCompletableFuture();
+        future1.cancel(false);
+        jedisCountDownLatch.countDown();
+        future2.get(1, TimeUnit.SECONDS);
+        assertTrue(future1.isCancelled());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void noWatcherTest() {
+        new JedisCountDownLatch(mockOfJedis.getJedis(), countDownLatch, 1).toCompletableFuture();
+    }
+
+}
@@ -4,10 +4,13 @@ import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.params.SetParams;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
@@ -36,6 +39,7 @@ public class MockOfJedis {
         return UNIT_TEST_CYCLES > 0;
     }
 
+    private JedisPool jedisPool;
     private Jedis jedis;
     private Map<String, String> data = Collections.synchronizedMap(new HashMap<>());
     private Timer timer;
@@ -59,10 +63,19 @@ public class MockOfJedis {
             String key = ioc.getArgument(0);
             return mockDel(key);
         });
+        Mockito.when(jedis.mget(Mockito.<String>any())).thenAnswer(ioc -> {
+            List<String> values = new ArrayList<>();
+            for (Object key : ioc.getArguments()) {
+                values.add(mockGet((String) key));
+            }
+            return values;
+        });
         Mockito.when(jedis.decr(anyString())).thenAnswer(ioc -> {
             String key = ioc.getArgument(0);
             return mockDecr(key);
         });
+        jedisPool = Mockito.mock(JedisPool.class);
+        Mockito.when(jedisPool.getResource()).thenReturn(jedis);
 
     }
 
@@ -114,6 +127,10 @@ public class MockOfJedis {
         return jedis;
     }
 
+    public JedisPool getJedisPool(){
+        return jedisPool;
+    }
+
 
     public synchronized void clearData(){
         data.clear();
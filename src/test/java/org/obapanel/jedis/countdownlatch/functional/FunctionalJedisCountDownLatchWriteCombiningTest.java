@@ -0,0 +1,80 @@
+package org.obapanel.jedis.countdownlatch.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.common.JedisWriteCombiner;
+import org.obapanel.jedis.countdownlatch.JedisCountDownLatch;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.countdownlatch.functional.JedisTestFactory.createJedisClient;
+import static org.obapanel.jedis.countdownlatch.functional.JedisTestFactory.createJedisPool;
+import static org.obapanel.jedis.countdownlatch.functional.JedisTestFactory.functionalTestEnabled;
+
+
+public class FunctionalJedisCountDownLatchWriteCombiningTest {
+
+    private String countDownLatch;
+    private Jedis jedis;
+    private JedisPool jedisPool;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        countDownLatch = "countDownLatch:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        jedis = createJedisClient();
+        jedisPool = createJedisPool();
+    }
+
+    @After
+    public void after() {
+        if (jedisPool != null) {
+            JedisWriteCombiner.forPool(jedisPool).flush();
+            jedisPool.close();
+        }
+        if (jedis != null) {
+            jedis.del(countDownLatch);
+            jedis.close();
+        }
+    }
+
+    @Test
+    public void countDownAsyncTest() throws Exception {
+        JedisCountDownLatch jedisCountDownLatch = new JedisCountDownLatch(jedis, countDownLatch, 200).
+                withWriteCombining(jedisPool);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < 50; j++) {
+                    CompletableFuture<Long> future = jedisCountDownLatch.countDownAsync();
+                    synchronized (futures) {
+                        futures.add(future);
+                    }
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertTrue(jedisCountDownLatch.await(1, TimeUnit.SECONDS));
+        long min = Long.MAX_VALUE;
+        for (CompletableFuture<Long> future : futures) {
+            min = Math.min(min, future.get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(0L, min);
+        assertEquals(0L, jedisCountDownLatch.getCount());
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.obapanel.jedis.countdownlatch.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.countdownlatch.JedisNotifiedCountDownLatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.countdownlatch.functional.JedisTestFactory.createJedisPool;
+import static org.obapanel.jedis.countdownlatch.functional.JedisTestFactory.functionalTestEnabled;
+
+
+public class FunctionalJedisNotifiedCountDownLatchTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FunctionalJedisNotifiedCountDownLatchTest.class);
+
+    private String countDownLatch;
+    private JedisPool jedisPool;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        countDownLatch = "countDownLatch:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        jedisPool = createJedisPool();
+    }
+
+    @After
+    public void after() {
+        if (jedisPool != null) {
+            new JedisNotifiedCountDownLatch(jedisPool, countDownLatch, 1).destroy();
+            jedisPool.close();
+        }
+    }
+
+    @Test
+    public void waitTest() throws InterruptedException {
+        AtomicInteger awaitDone = new AtomicInteger(0);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Thread t = new Thread(() -> {
+                try (JedisNotifiedCountDownLatch jedisCountDownLatch = new JedisNotifiedCountDownLatch(jedisPool, countDownLatch, 2).
+                        withSafetyWaitMilis(10000)) {
+                    jedisCountDownLatch.await();
+                    awaitDone.incrementAndGet();
+                } catch (InterruptedException e) {
+                    LOG.error("Error in thread", e);
+                }
+            });
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+        JedisNotifiedCountDownLatch jedisCountDownLatch = new JedisNotifiedCountDownLatch(jedisPool, countDownLatch, 2);
+        Thread.sleep(500);
+        assertEquals(1L, jedisCountDownLatch.countDown());
+        Thread.sleep(200);
+        assertEquals(0, awaitDone.get());
+        long t = System.currentTimeMillis();
+        assertEquals(0L, jedisCountDownLatch.countDown());
+        for (Thread thread : threads) {
+            thread.join(1000);
+        }
+        assertEquals(10, awaitDone.get());
+        assertTrue(System.currentTimeMillis() - t < 1000);
+    }
+
+    @Test
+    public void waitTestForAWhile() throws InterruptedException {
+        JedisNotifiedCountDownLatch jedisCountDownLatch = new JedisNotifiedCountDownLatch(jedisPool, countDownLatch, 1);
+        long t = System.currentTimeMillis();
+        assertFalse(jedisCountDownLatch.await(500, TimeUnit.MILLISECONDS));
+        assertTrue(System.currentTimeMillis() - t >= 500);
+        jedisCountDownLatch.countDown();
+        assertTrue(jedisCountDownLatch.await(500, TimeUnit.MILLISECONDS));
+        jedisCountDownLatch.close();
+    }
+
+    @Test
+    public void interruptTest() throws InterruptedException {
+        AtomicBoolean interrupted = new AtomicBoolean(false);
+        Thread t1 = new Thread(() -> {
+            try (JedisNotifiedCountDownLatch jedisCountDownLatch = new JedisNotifiedCountDownLatch(jedisPool, countDownLatch, 1)) {
+                jedisCountDownLatch.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        t1.setDaemon(true);
+        t1.start();
+        Thread.sleep(300);
+        t1.interrupt();
+        t1.join(500);
+        assertTrue(interrupted.get());
+        assertEquals(1L, new JedisNotifiedCountDownLatch(jedisPool, countDownLatch, 1).getCount());
+    }
+
+}
@@ -0,0 +1,121 @@
+package org.obapanel.jedis.countdownlatch.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.countdownlatch.JedisResettableCountDownLatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.countdownlatch.functional.JedisTestFactory.createJedisClient;
+import static org.obapanel.jedis.countdownlatch.functional.JedisTestFactory.createJedisPool;
+import static org.obapanel.jedis.countdownlatch.functional.JedisTestFactory.functionalTestEnabled;
+
+
+public class FunctionalJedisResettableCountDownLatchTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FunctionalJedisResettableCountDownLatchTest.class);
+
+    private String countDownLatch;
+    private Jedis jedis;
+    private JedisPool jedisPool;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        countDownLatch = "countDownLatch:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        jedis = createJedisClient();
+        jedisPool = createJedisPool();
+    }
+
+    @After
+    public void after() {
+        if (jedis != null) {
+            jedis.del(countDownLatch);
+            jedis.close();
+        }
+        if (jedisPool != null) jedisPool.close();
+    }
+
+    @Test
+    public void roundsTest() throws InterruptedException {
+        JedisResettableCountDownLatch jedisCountDownLatch = new JedisResettableCountDownLatch(jedis, countDownLatch, 2).
+                withWaitingTimeMilis(50);
+        for (long round = 0; round < 3; round++) {
+            assertEquals(round, jedisCountDownLatch.getGeneration());
+            final long generation = round;
+            AtomicBoolean awaitDone = new AtomicBoolean(false);
+            Thread waiter = new Thread(() -> {
+                try (Jedis jedis1 = jedisPool.getResource()) {
+                    new JedisResettableCountDownLatch(jedis1, countDownLatch, 2).withWaitingTimeMilis(50).await(generation);
+                    awaitDone.set(true);
+                } catch (InterruptedException e) {
+                    LOG.error("Error in waiter", e);
+                }
+            });
+            waiter.setDaemon(true);
+            waiter.start();
+            assertEquals(1L, jedisCountDownLatch.countDown());
+            Thread.sleep(150);
+            assertFalse(awaitDone.get());
+            assertEquals(0L, jedisCountDownLatch.countDown(generation));
+            // Reset at once, the waiter must see the completed generation anyway
+            assertEquals(generation + 1, jedisCountDownLatch.reset(generation, 2));
+            waiter.join(1000);
+            assertTrue(awaitDone.get());
+            assertEquals(2L, jedisCountDownLatch.getCount());
+        }
+    }
+
+    @Test
+    public void lateWorkersAndResettersTest() throws InterruptedException {
+        JedisResettableCountDownLatch jedisCountDownLatch = new JedisResettableCountDownLatch(jedis, countDownLatch, 1);
+        assertEquals(0L, jedisCountDownLatch.countDown(0));
+        assertEquals(1L, jedisCountDownLatch.reset(0, 3));
+        assertEquals(-1L, jedisCountDownLatch.reset(0, 3));
+        assertEquals(-1L, jedisCountDownLatch.countDown(0));
+        assertEquals(3L, jedisCountDownLatch.getCount());
+        assertTrue(jedisCountDownLatch.isCompleted(0));
+        assertFalse(jedisCountDownLatch.await(300, TimeUnit.MILLISECONDS));
+        assertEquals(2L, jedisCountDownLatch.reset());
+        assertEquals(1L, jedisCountDownLatch.getCount());
+        assertEquals(0L, jedisCountDownLatch.countDown());
+        assertTrue(jedisCountDownLatch.await(300, TimeUnit.MILLISECONDS));
+        assertEquals(0L, jedisCountDownLatch.countDown());
+    }
+
+    @Test
+    public void destroyedReleasesWaitersTest() throws InterruptedException {
+        JedisResettableCountDownLatch jedisCountDownLatch = new JedisResettableCountDownLatch(jedis, countDownLatch, 2).
+                withWaitingTimeMilis(50);
+        AtomicBoolean awaitDone = new AtomicBoolean(false);
+        Thread waiter = new Thread(() -> {
+            try (Jedis jedis1 = jedisPool.getResource()) {
+                new JedisResettableCountDownLatch(jedis1, countDownLatch, 2).withWaitingTimeMilis(50).await(0);
+                awaitDone.set(true);
+            } catch (InterruptedException e) {
+                LOG.error("Error in waiter", e);
+            }
+        });
+        waiter.setDaemon(true);
+        waiter.start();
+        Thread.sleep(150);
+        assertFalse(awaitDone.get());
+        jedisCountDownLatch.destroy();
+        waiter.join(1000);
+        assertTrue(awaitDone.get());
+        assertEquals(-1L, jedisCountDownLatch.getGeneration());
+        assertEquals(-1L, jedisCountDownLatch.await());
+        assertTrue(jedisCountDownLatch.await(100, TimeUnit.MILLISECONDS));
+    }
+
+}
@@ -0,0 +1,111 @@
+package org.obapanel.jedis.countdownlatch.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.countdownlatch.JedisStripedCountDownLatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.countdownlatch.functional.JedisTestFactory.createJedisClient;
+import static org.obapanel.jedis.countdownlatch.functional.JedisTestFactory.createJedisPool;
+import static org.obapanel.jedis.countdownlatch.functional.JedisTestFactory.functionalTestEnabled;
+
+
+public class FunctionalJedisStripedCountDownLatchTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FunctionalJedisStripedCountDownLatchTest.class);
+
+    private String countDownLatch;
+    private Jedis jedis;
+    private JedisPool jedisPool;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        countDownLatch = "countDownLatch:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        jedis = createJedisClient();
+        jedisPool = createJedisPool();
+    }
+
+    @After
+    public void after() {
+        if (jedis != null) {
+            new JedisStripedCountDownLatch(jedis, countDownLatch, 1, 1).destroy();
+            jedis.close();
+        }
+        if (jedisPool != null) jedisPool.close();
+    }
+
+    @Test
+    public void waitTest() throws InterruptedException {
+        JedisStripedCountDownLatch jedisCountDownLatch = new JedisStripedCountDownLatch(jedis, countDownLatch, 100, 8).
+                withWaitingTimeMilis(50);
+        AtomicBoolean awaitDone = new AtomicBoolean(false);
+        Thread waiter = new Thread(() -> {
+            try (Jedis jedis1 = jedisPool.getResource()) {
+                new JedisStripedCountDownLatch(jedis1, countDownLatch, 100, 8).withWaitingTimeMilis(50).await();
+                awaitDone.set(true);
+            } catch (InterruptedException e) {
+                LOG.error("Error in waiter", e);
+            }
+        });
+        waiter.setDaemon(true);
+        waiter.start();
+        List<Thread> workers = new ArrayList<>();
+        // Uneven workers, so some stripes are exhausted before others
+        for (int i = 0; i < 10; i++) {
+            final int countDowns = i < 5 ? 15 : 5;
+            Thread t = new Thread(() -> {
+                try (Jedis jedis2 = jedisPool.getResource()) {
+                    JedisStripedCountDownLatch workerLatch = new JedisStripedCountDownLatch(jedis2, countDownLatch, 100, 8);
+                    for (int j = 0; j < countDowns; j++) {
+                        workerLatch.countDown();
+                    }
+                }
+            });
+            workers.add(t);
+        }
+        workers.subList(0, 9).forEach(Thread::start);
+        for (Thread worker : workers.subList(0, 9)) {
+            worker.join(2000);
+        }
+        assertEquals(5L, jedisCountDownLatch.getCount());
+        assertFalse(jedisCountDownLatch.isDone());
+        assertFalse(awaitDone.get());
+        workers.get(9).start();
+        workers.get(9).join(2000);
+        waiter.join(1000);
+        assertTrue(awaitDone.get());
+        assertTrue(jedisCountDownLatch.isDone());
+        assertEquals(0L, jedisCountDownLatch.getCount());
+        assertEquals(-1L, jedisCountDownLatch.countDown());
+        assertEquals(0L, jedisCountDownLatch.getCount());
+    }
+
+    @Test
+    public void dontwaitTestForAWhile() throws InterruptedException {
+        JedisStripedCountDownLatch jedisCountDownLatch = new JedisStripedCountDownLatch(jedis, countDownLatch, 3, 8);
+        assertEquals(3, jedisCountDownLatch.getStripes());
+        // One per stripe, every countdown of the worker exhausts one stripe
+        assertEquals(0L, jedisCountDownLatch.countDown("worker1"));
+        assertEquals(0L, jedisCountDownLatch.countDown("worker1"));
+        assertFalse(jedisCountDownLatch.await(300, TimeUnit.MILLISECONDS));
+        assertEquals(0L, jedisCountDownLatch.countDown("worker1"));
+        assertTrue(jedisCountDownLatch.await(300, TimeUnit.MILLISECONDS));
+        assertEquals(-1L, jedisCountDownLatch.countDown("worker1"));
+        assertEquals(0L, jedisCountDownLatch.getCount());
+    }
+
+}
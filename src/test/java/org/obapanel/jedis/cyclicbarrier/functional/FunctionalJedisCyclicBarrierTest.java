@@ -0,0 +1,135 @@
+package org.obapanel.jedis.cyclicbarrier.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.cyclicbarrier.JedisCyclicBarrier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.cyclicbarrier.functional.JedisTestFactory.createJedisPool;
+import static org.obapanel.jedis.cyclicbarrier.functional.JedisTestFactory.functionalTestEnabled;
+
+/**
+ * Test to see that JedisCyclicBarrier makes the parties wait each other, cycle after cycle
+ */
+public class FunctionalJedisCyclicBarrierTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FunctionalJedisCyclicBarrierTest.class);
+
+    private static final int PARTIES = 4;
+    private static final int CYCLES = 3;
+
+    private String cyclicBarrier;
+    private JedisPool jedisPool;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        cyclicBarrier = "cyclicBarrier:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        jedisPool = createJedisPool();
+    }
+
+    @After
+    public void after() {
+        if (jedisPool != null) {
+            new JedisCyclicBarrier(jedisPool, cyclicBarrier, 1).destroy();
+            jedisPool.close();
+        }
+    }
+
+    @Test
+    public void cyclesTest() throws InterruptedException {
+        AtomicInteger actions = new AtomicInteger(0);
+        AtomicInteger arrivals = new AtomicInteger(0);
+        AtomicBoolean error = new AtomicBoolean(false);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < PARTIES; i++) {
+            final long delay = i * 50L;
+            Thread t = new Thread(() -> {
+                try (JedisCyclicBarrier jedisCyclicBarrier = new JedisCyclicBarrier(jedisPool, cyclicBarrier, PARTIES, actions::incrementAndGet)) {
+                    for (int cycle = 0; cycle < CYCLES; cycle++) {
+                        Thread.sleep(delay);
+                        arrivals.incrementAndGet();
+                        jedisCyclicBarrier.await(5, TimeUnit.SECONDS);
+                        // All parties of this cycle have arrived and the action has been done
+                        if (arrivals.get() < (cycle + 1) * PARTIES || actions.get() < cycle + 1) {
+                            error.set(true);
+                        }
+                    }
+                } catch (Exception e) {
+                    LOG.error("Error in thread", e);
+                    error.set(true);
+                }
+            });
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join(5000);
+        }
+        assertFalse(error.get());
+        assertEquals(CYCLES, actions.get());
+        assertEquals(0, new JedisCyclicBarrier(jedisPool, cyclicBarrier, PARTIES).getNumberWaiting());
+    }
+
+    @Test
+    public void timeoutBreaksTest() throws InterruptedException {
+        AtomicBoolean broken = new AtomicBoolean(false);
+        Thread t = new Thread(() -> {
+            try (JedisCyclicBarrier jedisCyclicBarrier = new JedisCyclicBarrier(jedisPool, cyclicBarrier, 3)) {
+                jedisCyclicBarrier.await();
+            } catch (BrokenBarrierException e) {
+                broken.set(true);
+            } catch (InterruptedException e) {
+                LOG.error("Error in thread", e);
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+        Thread.sleep(200);
+        JedisCyclicBarrier jedisCyclicBarrier = new JedisCyclicBarrier(jedisPool, cyclicBarrier, 3);
+        assertEquals(1, jedisCyclicBarrier.getNumberWaiting());
+        boolean timeout = false;
+        try {
+            jedisCyclicBarrier.await(300, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeout = true;
+        } catch (BrokenBarrierException e) {
+            LOG.error("Error in test", e);
+        }
+        t.join(1000);
+        assertTrue(timeout);
+        assertTrue(broken.get());
+        assertTrue(jedisCyclicBarrier.isBroken());
+        jedisCyclicBarrier.reset();
+        assertFalse(jedisCyclicBarrier.isBroken());
+        assertEquals(0, jedisCyclicBarrier.getNumberWaiting());
+    }
+
+    @Test(expected = BrokenBarrierException.class)
+    public void brokenTest() throws InterruptedException, BrokenBarrierException, TimeoutException {
+        JedisCyclicBarrier jedisCyclicBarrier = new JedisCyclicBarrier(jedisPool, cyclicBarrier, 2);
+        try {
+            jedisCyclicBarrier.await(100, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LOG.debug("Timeout expected");
+        }
+        jedisCyclicBarrier.await(100, TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.obapanel.jedis.future.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.future.JedisDistributedFuture;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.future.functional.JedisTestFactory.createJedisPool;
+import static org.obapanel.jedis.future.functional.JedisTestFactory.functionalTestEnabled;
+
+/**
+ * Test to see that JedisDistributedFuture gives the result of one producer to many waiters
+ */
+public class FunctionalJedisDistributedFutureTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FunctionalJedisDistributedFutureTest.class);
+
+    private String future;
+    private JedisPool jedisPool;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        future = "future:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        jedisPool = createJedisPool();
+    }
+
+    @After
+    public void after() {
+        if (jedisPool != null) {
+            new JedisDistributedFuture(jedisPool, future).destroy();
+            jedisPool.close();
+        }
+    }
+
+    @Test
+    public void manyWaitersTest() throws Exception {
+        AtomicInteger received = new AtomicInteger(0);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Thread t = new Thread(() -> {
+                try (JedisDistributedFuture jedisDistributedFuture = new JedisDistributedFuture(jedisPool, future).
+                        withSafetyWaitMilis(10000)) {
+                    if ("value:42".equals(jedisDistributedFuture.get(5, TimeUnit.SECONDS))) {
+                        received.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    LOG.error("Error in thread", e);
+                }
+            });
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+        JedisDistributedFuture consumer = new JedisDistributedFuture(jedisPool, future);
+        CompletableFuture<String> completableFuture = consumer.toCompletableFuture();
+        Thread.sleep(300);
+        assertFalse(completableFuture.isDone());
+        assertFalse(consumer.isDone());
+        JedisDistributedFuture producer = new JedisDistributedFuture(jedisPool, future);
+        long t = System.currentTimeMillis();
+        assertTrue(producer.complete("value:42"));
+        assertFalse(producer.complete("other"));
+        assertEquals("value:42", completableFuture.get(1, TimeUnit.SECONDS));
+        for (Thread thread : threads) {
+            thread.join(1000);
+        }
+        assertTrue(System.currentTimeMillis() - t < 1000);
+        assertEquals(5, received.get());
+        assertEquals("value:42", new JedisDistributedFuture(jedisPool, future).get());
+    }
+
+    @Test
+    public void failureTest() throws Exception {
+        JedisDistributedFuture jedisDistributedFuture = new JedisDistributedFuture(jedisPool, future);
+        boolean timeout = false;
+        try {
+            jedisDistributedFuture.get(200, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeout = true;
+        }
+        assertTrue(timeout);
+        new JedisDistributedFuture(jedisPool, future).completeExceptionally("error");
+        boolean failed = false;
+        try {
+            jedisDistributedFuture.get(1, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            failed = "error".equals(e.getMessage());
+        }
+        assertTrue(failed);
+        boolean completedExceptionally = false;
+        try {
+            new JedisDistributedFuture(jedisPool, future).toCompletableFuture().get(1, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            completedExceptionally = e.getCause() instanceof IllegalStateException;
+        }
+        assertTrue(completedExceptionally);
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancelTest() throws Exception {
+        JedisDistributedFuture jedisDistributedFuture = new JedisDistributedFuture(jedisPool, future);
+        assertTrue(jedisDistributedFuture.cancel(false));
+        assertTrue(new JedisDistributedFuture(jedisPool, future).isCancelled());
+        new JedisDistributedFuture(jedisPool, future).get();
+    }
+
+    @Test
+    public void lostMessageTest() throws Exception {
+        JedisDistributedFuture consumer = new JedisDistributedFuture(jedisPool, future).withSafetyWaitMilis(200);
+        CompletableFuture<String> completableFuture = consumer.toCompletableFuture();
+        Thread.sleep(300);
+        assertFalse(completableFuture.isDone());
+        // Completed without message, as if the message had been lost
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.hset(future, JedisDistributedFuture.STATE, JedisDistributedFuture.STATE_DONE);
+            jedis.hset(future, JedisDistributedFuture.RESULT, "value:lost");
+        }
+        assertEquals("value:lost", completableFuture.get(1, TimeUnit.SECONDS));
+    }
+
+}
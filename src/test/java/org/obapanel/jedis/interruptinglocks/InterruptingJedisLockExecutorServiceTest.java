@@ -0,0 +1,145 @@
+package org.obapanel.jedis.interruptinglocks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.interruptinglocks.MockOfJedis.unitTestEnabled;
+
+public class InterruptingJedisLockExecutorServiceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InterruptingJedisLockExecutorServiceTest.class);
+
+    private MockOfJedis mockOfJedis;
+    private String lockName;
+    private InterruptingJedisLockExecutorService executorService;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(unitTestEnabled());
+        if (!unitTestEnabled()) return;
+        mockOfJedis = new MockOfJedis();
+        lockName = "lock:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+    }
+
+    @After
+    public void after() {
+        if (executorService != null) executorService.shutdownNow();
+        if (mockOfJedis != null) mockOfJedis.clearData();
+    }
+
+    @Test
+    public void testTasksWithSameLockAreExclusive() throws Exception {
+        AtomicBoolean intoCriticalZone = new AtomicBoolean(false);
+        AtomicBoolean errorInCriticalZone = new AtomicBoolean(false);
+        AtomicInteger executed = new AtomicInteger(0);
+        executorService = new InterruptingJedisLockExecutorService(mockOfJedis.getJedisPool(), task -> lockName, 5, TimeUnit.SECONDS).
+                withWaitCycle(50, TimeUnit.MILLISECONDS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(executorService.submit(() -> {
+                if (intoCriticalZone.getAndSet(true)) {
+                    errorInCriticalZone.set(true);
+                }
+                sleep(300);
+                intoCriticalZone.set(false);
+                executed.incrementAndGet();
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(3, executed.get());
+        assertFalse(errorInCriticalZone.get());
+        assertNull(mockOfJedis.getCurrentData().get(lockName));
+    }
+
+    @Test
+    public void testTaskCancelledOnLeaseExpiration() throws Exception {
+        AtomicBoolean interrupted = new AtomicBoolean(false);
+        executorService = new InterruptingJedisLockExecutorService(mockOfJedis.getJedisPool(), task -> lockName, 1, TimeUnit.SECONDS);
+        Future<?> future = executorService.submit(() -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        Thread.sleep(1500);
+        assertTrue(future.isCancelled());
+        assertTrue(interrupted.get());
+        assertNull(mockOfJedis.getCurrentData().get(lockName));
+    }
+
+    @Test
+    public void testShutdown() throws Exception {
+        AtomicInteger executed = new AtomicInteger(0);
+        executorService = new InterruptingJedisLockExecutorService(mockOfJedis.getJedisPool(), task -> lockName + ":" + task.hashCode(), 5, TimeUnit.SECONDS);
+        for (int i = 0; i < 5; i++) {
+            executorService.execute(executed::incrementAndGet);
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(executorService.isTerminated());
+        assertEquals(5, executed.get());
+        try {
+            executorService.execute(executed::incrementAndGet);
+            throw new IllegalStateException("Task accepted after shutdown");
+        } catch (RejectedExecutionException ree) {
+            LOG.debug("Task rejected after shutdown");
+        }
+    }
+
+    @Test
+    public void testAwaitTerminationWaitsWorkers() throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        executorService = new InterruptingJedisLockExecutorService(mockOfJedis.getJedisPool(), task -> lockName + ":" + task.hashCode(),
+                5, TimeUnit.SECONDS, workers);
+        for (int i = 0; i < 4; i++) {
+            executorService.execute(() -> sleep(100));
+        }
+        executorService.shutdown();
+        assertTrue(executorService.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(workers.isTerminated());
+        assertTrue(executorService.isTerminated());
+    }
+
+    @Test
+    public void testLockReleasedWhenPipelineFails() throws Exception {
+        AtomicInteger executed = new AtomicInteger(0);
+        executorService = new InterruptingJedisLockExecutorService(mockOfJedis.getJedisPool(), task -> lockName, 5, TimeUnit.SECONDS).
+                withWaitCycle(50, TimeUnit.MILLISECONDS);
+        // The lock is set, but the response is lost
+        mockOfJedis.failNextPipelineSync();
+        Future<?> future = executorService.submit(executed::incrementAndGet);
+        // Without releasing its own lock, the task would wait for the lease time
+        future.get(2, TimeUnit.SECONDS);
+        assertEquals(1, executed.get());
+        assertNull(mockOfJedis.getCurrentData().get(lockName));
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            LOG.debug("interrupted", e);
+        }
+    }
+
+}
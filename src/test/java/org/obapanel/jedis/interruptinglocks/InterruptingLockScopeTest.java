@@ -0,0 +1,126 @@
+package org.obapanel.jedis.interruptinglocks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.interruptinglocks.MockOfJedis.unitTestEnabled;
+
+public class InterruptingLockScopeTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InterruptingLockScopeTest.class);
+
+    private MockOfJedis mockOfJedis;
+    private String lockName;
+    private ExecutorService executorService;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(unitTestEnabled());
+        if (!unitTestEnabled()) return;
+        mockOfJedis = new MockOfJedis();
+        lockName = "lock:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        executorService = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void after() {
+        if (mockOfJedis != null) mockOfJedis.clearData();
+        if (executorService != null) executorService.shutdownNow();
+    }
+
+    @Test
+    public void testExecutorTaskInterruptedOnLeaseExpiration() throws Exception {
+        AtomicBoolean childInterrupted = new AtomicBoolean(false);
+        AtomicBoolean mainInterrupted = new AtomicBoolean(false);
+        InterruptingJedisJedisLockBase lock = new InterruptingJedisJedisLockBase(mockOfJedis.getJedis(), lockName, 1, TimeUnit.SECONDS);
+        lock.lock();
+        InterruptingLockScope scope = lock.getScope();
+        assertNotNull(scope);
+        Future<?> future = scope.wrap(executorService).submit(() -> sleepAndCheck(5000, childInterrupted));
+        sleepAndCheck(3000, mainInterrupted);
+        Thread.sleep(100);
+        assertTrue(mainInterrupted.get());
+        assertTrue(childInterrupted.get());
+        assertTrue(future.isCancelled());
+        assertTrue(scope.isCancelled());
+        assertFalse(lock.isLocked());
+    }
+
+    @Test
+    public void testForkJoinPoolStoppedOnLeaseExpiration() throws Exception {
+        AtomicInteger stoppedTasks = new AtomicInteger(0);
+        AtomicBoolean mainInterrupted = new AtomicBoolean(false);
+        InterruptingJedisJedisLockBase lock = new InterruptingJedisJedisLockBase(mockOfJedis.getJedis(), lockName, 1, TimeUnit.SECONDS);
+        lock.lock();
+        ForkJoinPool forkJoinPool = lock.getScope().newForkJoinPool(2);
+        forkJoinPool.submit(() -> IntStream.range(0, 2).parallel().forEach(i -> {
+            AtomicBoolean interrupted = new AtomicBoolean(false);
+            sleepAndCheck(5000, interrupted);
+            if (interrupted.get()) {
+                stoppedTasks.incrementAndGet();
+            }
+        }));
+        sleepAndCheck(3000, mainInterrupted);
+        Thread.sleep(100);
+        assertTrue(mainInterrupted.get());
+        assertTrue(forkJoinPool.isShutdown());
+        assertTrue(stoppedTasks.get() > 0);
+    }
+
+    @Test
+    public void testUnderLockInterruptedOnLeaseExpiration() throws InterruptedException {
+        AtomicBoolean mainInterrupted = new AtomicBoolean(false);
+        AtomicBoolean childInterrupted = new AtomicBoolean(false);
+        InterruptingJedisJedisLockBase lock = new InterruptingJedisJedisLockBase(mockOfJedis.getJedis(), lockName, 1, TimeUnit.SECONDS);
+        long start = System.currentTimeMillis();
+        lock.underLock(() -> {
+            lock.getScope().wrap(executorService).submit(() -> sleepAndCheck(5000, childInterrupted));
+            sleepAndCheck(5000, mainInterrupted);
+        });
+        long elapsed = System.currentTimeMillis() - start;
+        Thread.sleep(100);
+        assertTrue(mainInterrupted.get());
+        assertTrue(childInterrupted.get());
+        assertTrue(elapsed < 3000);
+        assertFalse(lock.isLocked());
+    }
+
+    @Test
+    public void testScopeCancelledOnUnlock() throws Exception {
+        AtomicBoolean executed = new AtomicBoolean(false);
+        InterruptingJedisJedisLockBase lock = new InterruptingJedisJedisLockBase(mockOfJedis.getJedis(), lockName, 5, TimeUnit.SECONDS);
+        lock.lock();
+        InterruptingLockScope scope = lock.getScope();
+        lock.unlock();
+        assertTrue(scope.isCancelled());
+        Future<?> future = scope.wrap(executorService).submit(() -> executed.set(true));
+        Thread.sleep(100);
+        assertTrue(future.isCancelled());
+        assertFalse(executed.get());
+    }
+
+    private void sleepAndCheck(long millis, AtomicBoolean interrupted) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            LOG.debug("interrupted {}", Thread.currentThread().getName());
+            interrupted.set(true);
+        }
+    }
+
+}
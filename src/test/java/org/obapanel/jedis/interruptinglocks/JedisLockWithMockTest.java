@@ -200,6 +200,50 @@ public class JedisLockWithMockTest {
         assertFalse(result2);
     }
 
+    @Test
+    public void testYieldIfContendedWithoutWaiters() throws InterruptedException {
+        String lockname = getUniqueName();
+        JedisLock jedisLock1 = new JedisLock(jedis,lockname);
+        jedisLock1.setYieldCheckInterval(0, TimeUnit.MILLISECONDS);
+        assertFalse(jedisLock1.yieldIfContended());
+        jedisLock1.lock();
+        assertEquals(0L, jedisLock1.getWaiters());
+        assertFalse(jedisLock1.yieldIfContended());
+        assertTrue(jedisLock1.isLocked());
+        jedisLock1.unlock();
+    }
+
+    @Test
+    public void testYieldIfContendedWithWaiter() throws InterruptedException {
+        String lockname = getUniqueName();
+        JedisLock jedisLock1 = new JedisLock(jedis,lockname);
+        jedisLock1.setYieldCheckInterval(0, TimeUnit.MILLISECONDS);
+        jedisLock1.lock();
+        JedisLock jedisLock2 = new JedisLock(jedis,lockname);
+        jedisLock2.setWaitCylce(50, TimeUnit.MILLISECONDS);
+        final AtomicBoolean secondLocked = new AtomicBoolean(false);
+        Thread t = new Thread(() -> {
+            jedisLock2.lock();
+            secondLocked.set(true);
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                //NOOP
+            }
+            jedisLock2.unlock();
+        });
+        t.setDaemon(true);
+        t.start();
+        Thread.sleep(100);
+        assertEquals(1L, jedisLock1.getWaiters());
+        assertTrue(jedisLock1.yieldIfContended());
+        assertTrue(secondLocked.get());
+        assertTrue(jedisLock1.isLocked());
+        assertEquals(0L, jedisLock1.getWaiters());
+        assertFalse(mockOfJedis.getCurrentSortedSets().containsKey(lockname + JedisLock.WAITERS_SUFFIX));
+        jedisLock1.unlock();
+    }
+
     @Test
     public void testEqualsAndHashcode() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException, InterruptedException {
         String lockname = getUniqueName();
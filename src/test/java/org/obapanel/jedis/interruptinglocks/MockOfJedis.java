@@ -6,6 +6,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Builder;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 import redis.clients.jedis.Response;
 import redis.clients.jedis.Transaction;
 import redis.clients.jedis.params.SetParams;
@@ -74,9 +77,14 @@ public class MockOfJedis {
     }
 
     private Jedis jedis;
+    private JedisPool jedisPool;
     private Transaction transaction;
+    private Pipeline pipeline;
     private List<TransactionOrder> transactionActions = new ArrayList<>();
+    private List<TransactionOrder> pipelineActions = new ArrayList<>();
+    private boolean failNextPipelineSync = false;
     private Map<String, String> data = Collections.synchronizedMap(new HashMap<>());
+    private Map<String, Map<String, Long>> sortedSets = Collections.synchronizedMap(new HashMap<>());
     private Timer timer;
 
     public MockOfJedis() {
@@ -112,6 +120,20 @@ public class MockOfJedis {
             return mockTransactionSet(key, value, setParams);
         });
         Mockito.when(transaction.exec()).thenAnswer(ioc -> mockTransactionExec());
+        pipeline = Mockito.mock(Pipeline.class);
+        Mockito.when(jedis.pipelined()).thenReturn(pipeline);
+        Mockito.when(pipeline.set(anyString(), anyString(), any(SetParams.class))).thenAnswer(ioc -> {
+            String key = ioc.getArgument(0);
+            String value = ioc.getArgument(1);
+            SetParams setParams = ioc.getArgument(2);
+            return mockPipelineSet(key, value, setParams);
+        });
+        Mockito.doAnswer(ioc -> {
+            mockPipelineSync();
+            return null;
+        }).when(pipeline).sync();
+        jedisPool = Mockito.mock(JedisPool.class);
+        Mockito.when(jedisPool.getResource()).thenReturn(jedis);
     }
 
     private synchronized String mockGet(String key) {
@@ -125,6 +147,26 @@ public class MockOfJedis {
                 String removed = data.remove(keys.get(0));
                 response = removed != null ? 1 : 0;
             }
+        } else if (script.equalsIgnoreCase(JedisLock.REGISTER_WAITER_LUA_SCRIPT)) {
+            sortedSets.computeIfAbsent(keys.get(0), k -> new HashMap<>()).
+                    put(values.get(0), System.currentTimeMillis() + Long.parseLong(values.get(1)));
+            response = 1L;
+        } else if (script.equalsIgnoreCase(JedisLock.UNREGISTER_WAITER_LUA_SCRIPT)) {
+            Map<String, Long> waiters = sortedSets.get(keys.get(0));
+            if (waiters != null) {
+                waiters.remove(values.get(0));
+                if (waiters.isEmpty()) {
+                    sortedSets.remove(keys.get(0));
+                }
+            }
+            response = 1L;
+        } else if (script.equalsIgnoreCase(JedisLock.COUNT_WAITERS_LUA_SCRIPT)) {
+            Map<String, Long> waiters = sortedSets.get(keys.get(0));
+            if (waiters != null) {
+                long now = System.currentTimeMillis();
+                waiters.values().removeIf(expiration -> expiration <= now);
+            }
+            response = waiters != null ? (long) waiters.size() : 0L;
         }
         return response;
     }
@@ -168,13 +210,40 @@ public class MockOfJedis {
     }
 
 
+    private synchronized Response<String> mockPipelineSet(String key, String value, SetParams setParams){
+        TransactionOrder<String> transactionOrder = new TransactionOrder<>(() -> mockSet(key, value, setParams));
+        pipelineActions.add(transactionOrder);
+        return transactionOrder.getResponse();
+    }
+
+    private synchronized void mockPipelineSync(){
+        pipelineActions.forEach(TransactionOrder::execute);
+        pipelineActions.clear();
+        if (failNextPipelineSync) {
+            // Commands executed, but the response is lost
+            failNextPipelineSync = false;
+            throw new JedisConnectionException("Mock of lost connection");
+        }
+    }
+
+    public synchronized void failNextPipelineSync() {
+        failNextPipelineSync = true;
+    }
+
+
     public Jedis getJedis(){
         return jedis;
     }
 
+    public JedisPool getJedisPool(){
+        return jedisPool;
+    }
+
     public synchronized void clearData(){
         data.clear();
+        sortedSets.clear();
         transactionActions.clear();
+        pipelineActions.clear();
     }
 
 
@@ -182,6 +251,10 @@ public class MockOfJedis {
         return new HashMap<>(data);
     }
 
+    public synchronized Map<String, Map<String, Long>> getCurrentSortedSets() {
+        return new HashMap<>(sortedSets);
+    }
+
     boolean isSetParamsNX(SetParams setParams) {
         boolean result = false;
         for(byte[] b: setParams.getByteParams()){
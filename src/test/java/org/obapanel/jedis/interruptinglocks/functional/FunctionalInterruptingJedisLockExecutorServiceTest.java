@@ -0,0 +1,103 @@
+package org.obapanel.jedis.interruptinglocks.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.interruptinglocks.InterruptingJedisLockExecutorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.interruptinglocks.functional.JedisTestFactory.functionalTestEnabled;
+
+public class FunctionalInterruptingJedisLockExecutorServiceTest {
+
+    private static final Logger log = LoggerFactory.getLogger(FunctionalInterruptingJedisLockExecutorServiceTest.class);
+
+    private String lockName;
+    private JedisPool jedisPool;
+    private InterruptingJedisLockExecutorService executorService;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        jedisPool = JedisTestFactory.createJedisPool();
+        lockName = "lock_" + this.getClass().getName() + "_" + System.currentTimeMillis();
+    }
+
+    @After
+    public void after() {
+        if (executorService != null) executorService.shutdownNow();
+        if (jedisPool != null) jedisPool.close();
+    }
+
+    @Test
+    public void testManyTasksWithFewLocks() throws Exception {
+        AtomicInteger executed = new AtomicInteger(0);
+        AtomicBoolean errorInCriticalZone = new AtomicBoolean(false);
+        List<AtomicBoolean> criticalZones = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            criticalZones.add(new AtomicBoolean(false));
+        }
+        executorService = new InterruptingJedisLockExecutorService(jedisPool,
+                task -> lockName + "_" + Math.abs(task.hashCode() % 4), 5, TimeUnit.SECONDS).
+                withWaitCycle(20, TimeUnit.MILLISECONDS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            futures.add(executorService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    AtomicBoolean criticalZone = criticalZones.get(Math.abs(this.hashCode() % 4));
+                    if (criticalZone.getAndSet(true)) {
+                        errorInCriticalZone.set(true);
+                    }
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        log.debug("interrupted", e);
+                    }
+                    criticalZone.set(false);
+                    executed.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        assertEquals(40, executed.get());
+        assertFalse(errorInCriticalZone.get());
+    }
+
+    @Test
+    public void testTaskInterruptedOnLeaseExpiration() throws Exception {
+        AtomicBoolean interrupted = new AtomicBoolean(false);
+        executorService = new InterruptingJedisLockExecutorService(jedisPool, task -> lockName, 1, TimeUnit.SECONDS);
+        Future<?> future = executorService.submit(() -> {
+            try {
+                Thread.sleep(5000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+        });
+        Thread.sleep(1500);
+        assertTrue(future.isCancelled());
+        assertTrue(interrupted.get());
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertNull(jedis.get(lockName));
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package org.obapanel.jedis.interruptinglocks.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.interruptinglocks.InterruptingJedisJedisLockPreemptible;
+import org.obapanel.jedis.interruptinglocks.JedisLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.interruptinglocks.functional.JedisTestFactory.functionalTestEnabled;
+
+public class FunctionalInterruptingLocksPreemptibleTest {
+
+    private static final Logger log = LoggerFactory.getLogger(FunctionalInterruptingLocksPreemptibleTest.class);
+
+    private String lockName;
+    private JedisPool jedisPool;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        jedisPool = JedisTestFactory.createJedisPool();
+        lockName = "lock_" + this.getClass().getName() + "_" + System.currentTimeMillis();
+    }
+
+    @After
+    public void after() {
+        if (jedisPool != null) jedisPool.close();
+    }
+
+    @Test
+    public void testHighPriorityPreemptsLowPriority() throws InterruptedException {
+        AtomicBoolean lowInterrupted = new AtomicBoolean(false);
+        CountDownLatch lowLocked = new CountDownLatch(1);
+        Thread lowThread = new Thread(() -> {
+            try (Jedis jedis = jedisPool.getResource()) {
+                InterruptingJedisJedisLockPreemptible lowLock = new InterruptingJedisJedisLockPreemptible(jedis, jedisPool, lockName, 30, TimeUnit.SECONDS, 1);
+                lowLock.lock();
+                lowLocked.countDown();
+                try {
+                    Thread.sleep(30000);
+                } catch (InterruptedException e) {
+                    log.debug("low priority interrupted");
+                    lowInterrupted.set(true);
+                } finally {
+                    lowLock.unlock();
+                }
+            }
+        });
+        lowThread.setDaemon(true);
+        lowThread.start();
+        assertTrue(lowLocked.await(5, TimeUnit.SECONDS));
+        Thread.sleep(500);
+        long start = System.currentTimeMillis();
+        try (Jedis jedis = jedisPool.getResource()) {
+            InterruptingJedisJedisLockPreemptible highLock = new InterruptingJedisJedisLockPreemptible(jedis, jedisPool, lockName, 30, TimeUnit.SECONDS, 10);
+            assertTrue(highLock.tryLockForAWhile(10, TimeUnit.SECONDS));
+            long elapsed = System.currentTimeMillis() - start;
+            assertTrue(highLock.isLocked());
+            highLock.unlock();
+            assertTrue(elapsed < 5000);
+        }
+        lowThread.join(5000);
+        assertTrue(lowInterrupted.get());
+    }
+
+    @Test
+    public void testLowPriorityDoesNotPreempt() throws InterruptedException {
+        try (Jedis jedis = jedisPool.getResource(); Jedis otherJedis = jedisPool.getResource()) {
+            InterruptingJedisJedisLockPreemptible highLock = new InterruptingJedisJedisLockPreemptible(jedis, jedisPool, lockName, 30, TimeUnit.SECONDS, 10);
+            highLock.lock();
+            InterruptingJedisJedisLockPreemptible lowLock = new InterruptingJedisJedisLockPreemptible(otherJedis, jedisPool, lockName, 30, TimeUnit.SECONDS, 1);
+            assertFalse(lowLock.tryLockForAWhile(1, TimeUnit.SECONDS));
+            assertTrue(highLock.isLocked());
+            highLock.unlock();
+            assertTrue(lowLock.tryLock());
+            lowLock.unlock();
+        }
+    }
+
+    @Test
+    public void testWaitersOnlyByPriority() throws InterruptedException {
+        try (Jedis jedis = jedisPool.getResource(); Jedis otherJedis = jedisPool.getResource()) {
+            InterruptingJedisJedisLockPreemptible highLock = new InterruptingJedisJedisLockPreemptible(jedis, jedisPool, lockName, 30, TimeUnit.SECONDS, 10);
+            highLock.lock();
+            Thread lowThread = new Thread(() -> {
+                InterruptingJedisJedisLockPreemptible lowLock = new InterruptingJedisJedisLockPreemptible(otherJedis, jedisPool, lockName, 30, TimeUnit.SECONDS, 1);
+                try {
+                    lowLock.tryLockForAWhile(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    log.debug("low priority interrupted");
+                }
+            });
+            lowThread.start();
+            Thread.sleep(300);
+            assertEquals(1L, jedis.zcard(lockName + InterruptingJedisJedisLockPreemptible.PREEMPTION_WAITERS_SUFFIX).longValue());
+            assertFalse(jedis.exists(lockName + JedisLock.WAITERS_SUFFIX));
+            lowThread.join(3000);
+            assertEquals(0L, jedis.zcard(lockName + InterruptingJedisJedisLockPreemptible.PREEMPTION_WAITERS_SUFFIX).longValue());
+            highLock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.obapanel.jedis.interruptinglocks.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.common.SharedJedisSubscriber;
+import org.obapanel.jedis.interruptinglocks.InterruptingJedisJedisLockBase;
+import org.obapanel.jedis.interruptinglocks.JedisLockRevocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.interruptinglocks.functional.JedisTestFactory.functionalTestEnabled;
+
+public class FunctionalJedisLockRevocationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(FunctionalJedisLockRevocationTest.class);
+
+    private String lockName;
+    private JedisPool jedisPool;
+
+    @Before
+    public void before() throws InterruptedException {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        jedisPool = JedisTestFactory.createJedisPool();
+        lockName = "lock_" + this.getClass().getName() + "_" + System.currentTimeMillis();
+        JedisLockRevocation.enableListening(jedisPool);
+        SharedJedisSubscriber.forPool(jedisPool).awaitSubscription(JedisLockRevocation.REVOCATION_CHANNEL, 5, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void after() {
+        JedisLockRevocation.disableListening();
+        if (jedisPool != null) {
+            SharedJedisSubscriber.forPool(jedisPool).close();
+            jedisPool.close();
+        }
+    }
+
+    @Test
+    public void testRevokeInterruptsHolder() throws InterruptedException {
+        AtomicBoolean interrupted = new AtomicBoolean(false);
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try (Jedis jedis = jedisPool.getResource()) {
+                InterruptingJedisJedisLockBase lock = new InterruptingJedisJedisLockBase(jedis, lockName, 30, TimeUnit.SECONDS);
+                lock.lock();
+                locked.countDown();
+                try {
+                    Thread.sleep(30000);
+                } catch (InterruptedException e) {
+                    log.debug("holder interrupted");
+                    interrupted.set(true);
+                }
+                lock.unlock();
+            }
+            finished.countDown();
+        });
+        holder.setDaemon(true);
+        holder.start();
+        assertTrue(locked.await(5, TimeUnit.SECONDS));
+        boolean existed;
+        try (Jedis jedis = jedisPool.getResource()) {
+            existed = JedisLockRevocation.revoke(jedis, lockName);
+        }
+        assertTrue(finished.await(2, TimeUnit.SECONDS));
+        assertTrue(existed);
+        assertTrue(interrupted.get());
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertNull(jedis.get(lockName));
+        }
+    }
+
+    @Test
+    public void testRevokeNotHeldLock() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertFalse(JedisLockRevocation.revoke(jedis, lockName));
+        }
+    }
+
+}
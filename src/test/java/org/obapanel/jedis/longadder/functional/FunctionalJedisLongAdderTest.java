@@ -0,0 +1,88 @@
+package org.obapanel.jedis.longadder.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.longadder.JedisLongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.obapanel.jedis.longadder.functional.JedisTestFactory.createJedisPool;
+import static org.obapanel.jedis.longadder.functional.JedisTestFactory.functionalTestEnabled;
+
+/**
+ * Test to see that JedisLongAdder counts all the adds of many threads and adders
+ */
+public class FunctionalJedisLongAdderTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FunctionalJedisLongAdderTest.class);
+
+    private String adder;
+    private JedisPool jedisPool;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        adder = "adder:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        jedisPool = createJedisPool();
+    }
+
+    @After
+    public void after() {
+        if (jedisPool != null) {
+            new JedisLongAdder(jedisPool, adder, 4).destroy();
+            jedisPool.close();
+        }
+    }
+
+    @Test
+    public void manyThreadsTest() throws InterruptedException {
+        JedisLongAdder first = new JedisLongAdder(jedisPool, adder, 4);
+        JedisLongAdder second = new JedisLongAdder(jedisPool, adder, 4).withFlushInterval(20, TimeUnit.MILLISECONDS);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            JedisLongAdder jedisLongAdder = i % 2 == 0 ? first : second;
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    jedisLongAdder.increment();
+                }
+                jedisLongAdder.add(-1000);
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        LOG.debug("sum first {} second {}", first.sum(), second.sum());
+        first.close();
+        second.close();
+        assertEquals(72000L, first.sumFlushed());
+        assertEquals(72000L, new JedisLongAdder(jedisPool, adder, 4).sum());
+    }
+
+    @Test
+    public void flushTest() throws InterruptedException {
+        JedisLongAdder jedisLongAdder = new JedisLongAdder(jedisPool, adder, 4).withFlushInterval(1, TimeUnit.HOURS);
+        JedisLongAdder other = new JedisLongAdder(jedisPool, adder, 4);
+        jedisLongAdder.add(5);
+        jedisLongAdder.decrement();
+        assertEquals(4L, jedisLongAdder.sum());
+        assertEquals(0L, other.sum());
+        jedisLongAdder.flush();
+        assertEquals(4L, other.sum());
+        JedisLongAdder writeThrough = new JedisLongAdder(jedisPool, adder, 4).withFlushInterval(0, TimeUnit.MILLISECONDS);
+        writeThrough.add(10);
+        assertEquals(14L, other.sum());
+        jedisLongAdder.close();
+        writeThrough.close();
+    }
+
+}
@@ -0,0 +1,126 @@
+package org.obapanel.jedis.phaser.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.phaser.JedisPhaser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.phaser.functional.JedisTestFactory.createJedisPool;
+import static org.obapanel.jedis.phaser.functional.JedisTestFactory.functionalTestEnabled;
+
+/**
+ * Test to see that JedisPhaser advances the phases with a changing number of parties
+ */
+public class FunctionalJedisPhaserTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FunctionalJedisPhaserTest.class);
+
+    private String phaser;
+    private JedisPool jedisPool;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        phaser = "phaser:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        jedisPool = createJedisPool();
+    }
+
+    @After
+    public void after() {
+        if (jedisPool != null) {
+            new JedisPhaser(jedisPool, phaser).destroy();
+            jedisPool.close();
+        }
+    }
+
+    @Test
+    public void stagesTest() throws InterruptedException {
+        // Controller party
+        JedisPhaser jedisPhaser = new JedisPhaser(jedisPool, phaser, 1);
+        AtomicInteger workDone = new AtomicInteger(0);
+        AtomicBoolean error = new AtomicBoolean(false);
+        List<Thread> threads = new ArrayList<>();
+        // Worker i works on stages 0 to i
+        for (int i = 0; i < 4; i++) {
+            final int lastStage = i;
+            jedisPhaser.register();
+            Thread t = new Thread(() -> {
+                try (JedisPhaser workerPhaser = new JedisPhaser(jedisPool, phaser)) {
+                    for (int stage = 0; stage <= lastStage; stage++) {
+                        Thread.sleep(20L * lastStage);
+                        workDone.incrementAndGet();
+                        if (stage < lastStage) {
+                            if (workerPhaser.arriveAndAwaitAdvance() != stage + 1) {
+                                error.set(true);
+                            }
+                        } else {
+                            workerPhaser.arriveAndDeregister();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    LOG.error("Error in thread", e);
+                    error.set(true);
+                }
+            });
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+        int[] expectedWork = {4, 7, 9, 10};
+        for (int stage = 0; stage < 4; stage++) {
+            assertEquals(stage + 1, jedisPhaser.arriveAndAwaitAdvance());
+            assertEquals(expectedWork[stage], workDone.get());
+            assertEquals(4 - stage, jedisPhaser.getRegisteredParties());
+        }
+        assertEquals(4, jedisPhaser.arriveAndDeregister());
+        assertTrue(jedisPhaser.isTerminated());
+        for (Thread t : threads) {
+            t.join(1000);
+        }
+        assertFalse(error.get());
+    }
+
+    @Test
+    public void timeoutAndTerminationTest() throws InterruptedException {
+        JedisPhaser jedisPhaser = new JedisPhaser(jedisPool, phaser, 2);
+        assertEquals(0, jedisPhaser.arrive());
+        assertEquals(1, jedisPhaser.getArrivedParties());
+        boolean timeout = false;
+        try {
+            jedisPhaser.awaitAdvance(0, 200, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeout = true;
+        }
+        assertTrue(timeout);
+        AtomicInteger result = new AtomicInteger(0);
+        Thread t = new Thread(() -> {
+            try (JedisPhaser waiterPhaser = new JedisPhaser(jedisPool, phaser)) {
+                result.set(waiterPhaser.awaitAdvance(0));
+            } catch (InterruptedException e) {
+                LOG.error("Error in thread", e);
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+        Thread.sleep(200);
+        jedisPhaser.forceTermination();
+        t.join(1000);
+        assertTrue(result.get() < 0);
+        assertTrue(jedisPhaser.arrive() < 0);
+    }
+
+}
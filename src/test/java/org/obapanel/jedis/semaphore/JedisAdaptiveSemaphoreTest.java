@@ -0,0 +1,118 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.MockOfJedis.unitTestEnabled;
+
+public class JedisAdaptiveSemaphoreTest {
+
+    private MockOfJedis mockOfJedis;
+    private String semaphoreName;
+
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(unitTestEnabled());
+        if (!unitTestEnabled()) return;
+        semaphoreName = "semaphore:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        mockOfJedis = new MockOfJedis();
+    }
+
+    @After
+    public void after() {
+        if (mockOfJedis != null) mockOfJedis.clearData();
+    }
+
+    @Test
+    public void testLimitOfOperations() {
+        JedisAdaptiveSemaphore jedisSemaphore = new JedisAdaptiveSemaphore(mockOfJedis.getJedis(), semaphoreName, 2, 1, 10);
+        assertTrue(jedisSemaphore.tryAcquire());
+        assertTrue(jedisSemaphore.tryAcquire());
+        assertFalse(jedisSemaphore.tryAcquire());
+        assertEquals(2, jedisSemaphore.getInFlight());
+        jedisSemaphore.release();
+        assertEquals(1, jedisSemaphore.getInFlight());
+        assertTrue(jedisSemaphore.tryAcquire());
+    }
+
+    @Test
+    public void testLimitIncreasesWithGoodReportsWhenSaturated() {
+        JedisAdaptiveSemaphore jedisSemaphore = new JedisAdaptiveSemaphore(mockOfJedis.getJedis(), semaphoreName, 2, 1, 4).
+                withReportBatch(2, 60000).
+                withLatencyThreshold(100, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 3; i++) {
+            int limit = jedisSemaphore.getLimit();
+            for (int j = 0; j < limit; j++) {
+                assertTrue(jedisSemaphore.tryAcquire());
+            }
+            assertFalse(jedisSemaphore.tryAcquire());
+            jedisSemaphore.release(10, TimeUnit.MILLISECONDS, true);
+            // Batch not complete, not sent
+            assertEquals(limit, jedisSemaphore.getLimit());
+            for (int j = 1; j < limit; j++) {
+                jedisSemaphore.release(10, TimeUnit.MILLISECONDS, true);
+            }
+        }
+        assertEquals(4, jedisSemaphore.getLimit());
+        assertEquals(0, jedisSemaphore.getInFlight());
+    }
+
+    @Test
+    public void testLimitNotIncreasesWithoutSaturation() {
+        JedisAdaptiveSemaphore jedisSemaphore = new JedisAdaptiveSemaphore(mockOfJedis.getJedis(), semaphoreName, 3, 1, 10).
+                withReportBatch(1, 60000).
+                withLatencyThreshold(100, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 6; i++) {
+            assertTrue(jedisSemaphore.tryAcquire());
+            jedisSemaphore.release(10, TimeUnit.MILLISECONDS, true);
+        }
+        assertEquals(3, jedisSemaphore.getLimit());
+        assertEquals(0, jedisSemaphore.getInFlight());
+    }
+
+    @Test
+    public void testExpiredOperationsAreNotCounted() throws InterruptedException {
+        JedisAdaptiveSemaphore jedisSemaphore1 = new JedisAdaptiveSemaphore(mockOfJedis.getJedis(), semaphoreName, 2, 1, 10).
+                withLeaseTime(50, TimeUnit.MILLISECONDS);
+        JedisAdaptiveSemaphore jedisSemaphore2 = new JedisAdaptiveSemaphore(mockOfJedis.getJedis(), semaphoreName, 2, 1, 10);
+        assertTrue(jedisSemaphore1.tryAcquire());
+        assertTrue(jedisSemaphore1.tryAcquire());
+        assertFalse(jedisSemaphore2.tryAcquire());
+        // The first client dies without releasing
+        Thread.sleep(100);
+        assertEquals(0, jedisSemaphore2.getInFlight());
+        assertTrue(jedisSemaphore2.tryAcquire());
+        assertEquals(1, jedisSemaphore2.getInFlight());
+    }
+
+    @Test
+    public void testLimitDecreasesWithBadReports() {
+        JedisAdaptiveSemaphore jedisSemaphore = new JedisAdaptiveSemaphore(mockOfJedis.getJedis(), semaphoreName, 10, 2, 10).
+                withReportBatch(1, 60000).
+                withBackoffRatio(0.5).
+                withLatencyThreshold(100, TimeUnit.MILLISECONDS);
+        assertTrue(jedisSemaphore.tryAcquire());
+        jedisSemaphore.release(500, TimeUnit.MILLISECONDS, true);
+        assertEquals(5, jedisSemaphore.getLimit());
+        assertTrue(jedisSemaphore.tryAcquire());
+        jedisSemaphore.release(10, TimeUnit.MILLISECONDS, false);
+        assertEquals(2, jedisSemaphore.getLimit());
+        assertTrue(jedisSemaphore.tryAcquire());
+        jedisSemaphore.release(10, TimeUnit.MILLISECONDS, false);
+        assertEquals(2, jedisSemaphore.getLimit());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testErrorOnLimits() {
+        new JedisAdaptiveSemaphore(mockOfJedis.getJedis(), semaphoreName, 20, 1, 10);
+    }
+
+}
@@ -0,0 +1,87 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.MockOfJedis.unitTestEnabled;
+
+public class JedisCompositeSemaphoreTest {
+
+    private MockOfJedis mockOfJedis;
+    private String semaphoreName;
+
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(unitTestEnabled());
+        if (!unitTestEnabled()) return;
+        semaphoreName = "semaphore:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        mockOfJedis = new MockOfJedis();
+    }
+
+    @After
+    public void after() {
+        if (mockOfJedis != null) mockOfJedis.clearData();
+    }
+
+    @Test
+    public void testAllOrNone() {
+        JedisSemaphore global = new JedisSemaphore(mockOfJedis.getJedis(), semaphoreName + ":global", 3);
+        JedisSemaphore tenant = new JedisSemaphore(mockOfJedis.getJedis(), semaphoreName + ":tenant", 1);
+        Map<String, Integer> permits = new LinkedHashMap<>();
+        permits.put(global.getName(), 2);
+        permits.put(tenant.getName(), 1);
+        JedisCompositeSemaphore composite = new JedisCompositeSemaphore(mockOfJedis.getJedis(), permits);
+        assertTrue(composite.tryAcquire());
+        assertEquals(1, global.availablePermits());
+        assertEquals(0, tenant.availablePermits());
+        assertFalse(composite.tryAcquire());
+        assertEquals(1, global.availablePermits());
+        assertEquals(0, tenant.availablePermits());
+        composite.release();
+        assertEquals(3, global.availablePermits());
+        assertEquals(1, tenant.availablePermits());
+    }
+
+    @Test
+    public void testNotCreatedSemaphoreHasNoPermits() {
+        JedisSemaphore global = new JedisSemaphore(mockOfJedis.getJedis(), semaphoreName + ":global", 3);
+        Map<String, Integer> permits = new LinkedHashMap<>();
+        permits.put(global.getName(), 1);
+        permits.put(semaphoreName + ":notCreated", 1);
+        JedisCompositeSemaphore composite = new JedisCompositeSemaphore(mockOfJedis.getJedis(), permits);
+        assertFalse(composite.tryAcquire());
+        assertEquals(3, global.availablePermits());
+    }
+
+    @Test
+    public void testHierarchy() {
+        JedisSemaphore global = new JedisSemaphore(mockOfJedis.getJedis(), semaphoreName, 10);
+        JedisSemaphore tenant = new JedisSemaphore(mockOfJedis.getJedis(), semaphoreName + ":tenantA", 2);
+        JedisSemaphore user = new JedisSemaphore(mockOfJedis.getJedis(), semaphoreName + ":tenantA:user1", 1);
+        JedisCompositeSemaphore composite = JedisCompositeSemaphore.hierarchy(mockOfJedis.getJedis(), 1, semaphoreName, "tenantA", "user1");
+        assertEquals(Arrays.asList(global.getName(), tenant.getName(), user.getName()), composite.getNames());
+        assertTrue(composite.tryAcquire());
+        assertFalse(composite.tryAcquire());
+        assertEquals(9, global.availablePermits());
+        assertEquals(1, tenant.availablePermits());
+        assertEquals(0, user.availablePermits());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testErrorOnZeroPermits() {
+        Map<String, Integer> permits = new LinkedHashMap<>();
+        permits.put(semaphoreName, 0);
+        new JedisCompositeSemaphore(mockOfJedis.getJedis(), permits);
+    }
+
+}
@@ -0,0 +1,71 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.MockOfJedis.unitTestEnabled;
+
+public class JedisKeyedSemaphoreTest {
+
+    private MockOfJedis mockOfJedis;
+    private String semaphoreName;
+
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(unitTestEnabled());
+        if (!unitTestEnabled()) return;
+        semaphoreName = "semaphore:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        mockOfJedis = new MockOfJedis();
+    }
+
+    @After
+    public void after() {
+        if (mockOfJedis != null) mockOfJedis.clearData();
+    }
+
+    @Test
+    public void testLazyCreationAndRemoval() {
+        JedisKeyedSemaphore jedisSemaphore = new JedisKeyedSemaphore(mockOfJedis.getJedis(), semaphoreName, 2);
+        assertTrue(mockOfJedis.getCurrentData().isEmpty());
+        assertEquals(2, jedisSemaphore.availablePermits("customer1"));
+        assertTrue(jedisSemaphore.tryAcquire("customer1", 1));
+        assertTrue(jedisSemaphore.tryAcquire("customer1", 1));
+        assertFalse(jedisSemaphore.tryAcquire("customer1", 1));
+        assertTrue(jedisSemaphore.tryAcquire("customer2", 2));
+        assertEquals("0", mockOfJedis.getCurrentData().get(semaphoreName + ":customer1"));
+        jedisSemaphore.release("customer1", 1);
+        assertEquals(1, jedisSemaphore.availablePermits("customer1"));
+        jedisSemaphore.release("customer1", 1);
+        jedisSemaphore.release("customer2", 2);
+        assertTrue(mockOfJedis.getCurrentData().isEmpty());
+    }
+
+    @Test
+    public void testCacheOfKeys() {
+        JedisKeyedSemaphore jedisSemaphore = new JedisKeyedSemaphore(mockOfJedis.getJedis(), semaphoreName, 1, 2);
+        JedisKeyedSemaphore.KeySemaphore keySemaphore1 = jedisSemaphore.forKey("customer1");
+        assertSame(keySemaphore1, jedisSemaphore.forKey("customer1"));
+        jedisSemaphore.forKey("customer2");
+        jedisSemaphore.forKey("customer3");
+        assertEquals(2, jedisSemaphore.cachedKeys());
+        assertNotSame(keySemaphore1, jedisSemaphore.forKey("customer1"));
+        assertTrue(keySemaphore1.tryAcquire());
+        assertFalse(jedisSemaphore.forKey("customer1").tryAcquire());
+        keySemaphore1.release();
+        assertEquals(1, keySemaphore1.availablePermits());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testErrorOnPermitsOverKey() {
+        new JedisKeyedSemaphore(mockOfJedis.getJedis(), semaphoreName, 2).tryAcquire("customer1", 3);
+    }
+
+}
@@ -0,0 +1,69 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.MockOfJedis.unitTestEnabled;
+
+public class JedisNotifiedSemaphoreTest {
+
+    private MockOfJedis mockOfJedis;
+    private String semaphoreName;
+
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(unitTestEnabled());
+        if (!unitTestEnabled()) return;
+        semaphoreName = "semaphore:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        mockOfJedis = new MockOfJedis();
+    }
+
+    @After
+    public void after() {
+        if (mockOfJedis != null) mockOfJedis.clearData();
+    }
+
+    @Test
+    public void testNumOfPermits(){
+        JedisNotifiedSemaphore jedisSemaphore = new JedisNotifiedSemaphore(mockOfJedis.getJedisPool(),semaphoreName,3);
+        assertEquals(3, jedisSemaphore.availablePermits());
+        assertFalse( jedisSemaphore.tryAcquire(5));
+        assertTrue( jedisSemaphore.tryAcquire(1));
+        assertTrue( jedisSemaphore.tryAcquire(2));
+        assertEquals(0, jedisSemaphore.availablePermits());
+        assertFalse( jedisSemaphore.tryAcquire(1));
+        jedisSemaphore.release(2);
+        assertEquals(2, jedisSemaphore.availablePermits());
+        assertTrue( jedisSemaphore.tryAcquire());
+        assertEquals(1, jedisSemaphore.availablePermits());
+        jedisSemaphore.close();
+    }
+
+    @Test
+    public void testSharedByName(){
+        JedisNotifiedSemaphore jedisSemaphore1 = new JedisNotifiedSemaphore(mockOfJedis.getJedisPool(),semaphoreName,1);
+        JedisNotifiedSemaphore jedisSemaphore2 = new JedisNotifiedSemaphore(mockOfJedis.getJedisPool(),semaphoreName,5);
+        assertEquals(1, jedisSemaphore2.availablePermits());
+        assertTrue( jedisSemaphore1.tryAcquire());
+        assertFalse( jedisSemaphore2.tryAcquire());
+        jedisSemaphore1.release();
+        assertTrue( jedisSemaphore2.tryAcquire());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNumOfPermitsErrorRelease(){
+        JedisNotifiedSemaphore jedisSemaphore = new JedisNotifiedSemaphore(mockOfJedis.getJedisPool(),semaphoreName,0);
+        jedisSemaphore.release(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNumOfPermitsErrorOnCreation(){
+        new JedisNotifiedSemaphore(mockOfJedis.getJedisPool(),semaphoreName,-1);
+    }
+}
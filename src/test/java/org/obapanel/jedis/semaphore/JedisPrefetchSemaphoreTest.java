@@ -0,0 +1,118 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.MockOfJedis.unitTestEnabled;
+
+public class JedisPrefetchSemaphoreTest {
+
+    private MockOfJedis mockOfJedis;
+    private String semaphoreName;
+
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(unitTestEnabled());
+        if (!unitTestEnabled()) return;
+        semaphoreName = "semaphore:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        mockOfJedis = new MockOfJedis();
+    }
+
+    @After
+    public void after() {
+        if (mockOfJedis != null) mockOfJedis.clearData();
+    }
+
+    @Test
+    public void testPrefetchInBatches() {
+        JedisPrefetchSemaphore jedisSemaphore = new JedisPrefetchSemaphore(mockOfJedis.getJedisPool(), semaphoreName, 10, 4);
+        assertTrue(jedisSemaphore.tryAcquire());
+        assertEquals(6, jedisSemaphore.availablePermits());
+        assertEquals(3, jedisSemaphore.localPermits());
+        assertTrue(jedisSemaphore.tryAcquire(3));
+        assertEquals(6, jedisSemaphore.availablePermits());
+        assertEquals(0, jedisSemaphore.localPermits());
+        assertTrue(jedisSemaphore.tryAcquire(5));
+        assertEquals(1, jedisSemaphore.availablePermits());
+        assertFalse(jedisSemaphore.tryAcquire(2));
+        assertEquals(1, jedisSemaphore.availablePermits());
+        jedisSemaphore.close();
+    }
+
+    @Test
+    public void testReleaseKeepsUpToBatch() {
+        JedisPrefetchSemaphore jedisSemaphore = new JedisPrefetchSemaphore(mockOfJedis.getJedisPool(), semaphoreName, 10, 4);
+        assertTrue(jedisSemaphore.tryAcquire(4));
+        assertEquals(6, jedisSemaphore.availablePermits());
+        jedisSemaphore.release(2);
+        assertEquals(2, jedisSemaphore.localPermits());
+        assertEquals(6, jedisSemaphore.availablePermits());
+        jedisSemaphore.release(2);
+        jedisSemaphore.release(1);
+        assertEquals(4, jedisSemaphore.localPermits());
+        assertEquals(7, jedisSemaphore.availablePermits());
+        jedisSemaphore.close();
+        assertEquals(0, jedisSemaphore.localPermits());
+        assertEquals(11, jedisSemaphore.availablePermits());
+    }
+
+    @Test
+    public void testFailedAcquireReturnsLocalPermits() {
+        JedisPrefetchSemaphore jedisSemaphore1 = new JedisPrefetchSemaphore(mockOfJedis.getJedisPool(), semaphoreName, 10, 4);
+        JedisPrefetchSemaphore jedisSemaphore2 = new JedisPrefetchSemaphore(mockOfJedis.getJedisPool(), semaphoreName, 10, 4);
+        assertTrue(jedisSemaphore1.tryAcquire());
+        assertEquals(3, jedisSemaphore1.localPermits());
+        assertTrue(jedisSemaphore2.tryAcquire(6));
+        assertEquals(0, jedisSemaphore1.availablePermits());
+        assertFalse(jedisSemaphore1.tryAcquire(5));
+        assertEquals(0, jedisSemaphore1.localPermits());
+        assertEquals(3, jedisSemaphore1.availablePermits());
+        jedisSemaphore2.release(6);
+        assertTrue(jedisSemaphore1.tryAcquire(5));
+        jedisSemaphore1.close();
+        jedisSemaphore2.close();
+    }
+
+    @Test
+    public void testIdleReturn() throws InterruptedException {
+        JedisPrefetchSemaphore jedisSemaphore = new JedisPrefetchSemaphore(mockOfJedis.getJedisPool(), semaphoreName, 10, 4).
+                withIdleReturnMilis(100);
+        assertTrue(jedisSemaphore.tryAcquire());
+        assertEquals(3, jedisSemaphore.localPermits());
+        Thread.sleep(350);
+        assertEquals(0, jedisSemaphore.localPermits());
+        assertEquals(9, jedisSemaphore.availablePermits());
+        jedisSemaphore.close();
+    }
+
+    @Test
+    public void testLocalReleaseWakesWaiter() throws InterruptedException {
+        JedisPrefetchSemaphore jedisSemaphore = new JedisPrefetchSemaphore(mockOfJedis.getJedisPool(), semaphoreName, 1, 4).
+                withWaitingMilis(5000);
+        assertTrue(jedisSemaphore.tryAcquire());
+        AtomicBoolean acquired = new AtomicBoolean(false);
+        Thread t = new Thread(() -> {
+            try {
+                acquired.set(jedisSemaphore.tryAcquire(1, 10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                // NOOP
+            }
+        });
+        t.start();
+        Thread.sleep(100);
+        jedisSemaphore.release();
+        t.join(1000);
+        assertTrue(acquired.get());
+        jedisSemaphore.close();
+    }
+
+}
@@ -0,0 +1,64 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.MockOfJedis.unitTestEnabled;
+
+public class JedisRateLimiterTest {
+
+    private MockOfJedis mockOfJedis;
+    private String limiterName;
+
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(unitTestEnabled());
+        if (!unitTestEnabled()) return;
+        limiterName = "limiter:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        mockOfJedis = new MockOfJedis();
+    }
+
+    @After
+    public void after() {
+        if (mockOfJedis != null) mockOfJedis.clearData();
+    }
+
+    @Test
+    public void testBurstAndRetryAfter() {
+        JedisRateLimiter jedisRateLimiter = new JedisRateLimiter(mockOfJedis.getJedis(), limiterName, 10, 1, TimeUnit.SECONDS).
+                withBurst(3);
+        assertEquals(0L, jedisRateLimiter.tryAcquire());
+        assertEquals(0L, jedisRateLimiter.tryAcquire(2));
+        long retryAfter = jedisRateLimiter.tryAcquire();
+        assertTrue(retryAfter > 0 && retryAfter <= 100);
+    }
+
+    @Test
+    public void testAcquireWaitsRetryAfter() throws InterruptedException {
+        JedisRateLimiter jedisRateLimiter = new JedisRateLimiter(mockOfJedis.getJedis(), limiterName, 20, 1, TimeUnit.SECONDS).
+                withBurst(1);
+        long t = System.currentTimeMillis();
+        for (int i = 0; i < 5; i++) {
+            jedisRateLimiter.acquire();
+        }
+        long elapsed = System.currentTimeMillis() - t;
+        assertTrue(elapsed >= 190);
+        assertFalse(jedisRateLimiter.tryAcquire(1, 1, TimeUnit.MILLISECONDS));
+        assertTrue(jedisRateLimiter.tryAcquire(1, 100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testErrorOnPermitsOverBurst() {
+        new JedisRateLimiter(mockOfJedis.getJedis(), limiterName, 10, 1, TimeUnit.SECONDS).
+                withBurst(2).tryAcquire(3);
+    }
+
+}
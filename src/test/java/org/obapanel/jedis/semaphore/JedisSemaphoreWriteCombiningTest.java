@@ -0,0 +1,131 @@
+package org.obapanel.jedis.semaphore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.obapanel.jedis.common.JedisWriteCombiner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.MockOfJedis.unitTestEnabled;
+
+public class JedisSemaphoreWriteCombiningTest {
+
+    private MockOfJedis mockOfJedis;
+    private String semaphoreName;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(unitTestEnabled());
+        if (!unitTestEnabled()) return;
+        semaphoreName = "semaphore:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        // Every mock has its own pool, so every test has its own combiner
+        mockOfJedis = new MockOfJedis();
+    }
+
+    @After
+    public void after() {
+        if (mockOfJedis != null) mockOfJedis.clearData();
+    }
+
+    @Test
+    public void testWindowCombinesReleases() throws Exception {
+        JedisWriteCombiner.forPool(mockOfJedis.getJedisPool(), 100, 1000);
+        JedisSemaphore jedisSemaphore = new JedisSemaphore(mockOfJedis.getJedis(), semaphoreName, 0).
+                withWriteCombining(mockOfJedis.getJedisPool());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(jedisSemaphore.releaseAsync());
+        }
+        assertEquals(0, jedisSemaphore.availablePermits());
+        assertFalse(futures.get(0).isDone());
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(1, TimeUnit.SECONDS);
+        assertEquals(10, jedisSemaphore.availablePermits());
+        assertEquals(1, mockOfJedis.getPipelineSyncs());
+    }
+
+    @Test
+    public void testOneValuePerKey() throws Exception {
+        JedisWriteCombiner jedisWriteCombiner = JedisWriteCombiner.forPool(mockOfJedis.getJedisPool(), 100, 1000);
+        new JedisSemaphore(mockOfJedis.getJedis(), semaphoreName + "1", 0);
+        new JedisSemaphore(mockOfJedis.getJedis(), semaphoreName + "2", 5);
+        CompletableFuture<Long> future1 = jedisWriteCombiner.incrBy(semaphoreName + "1", 2);
+        CompletableFuture<Long> future2 = jedisWriteCombiner.incrBy(semaphoreName + "2", 1);
+        CompletableFuture<Long> future3 = jedisWriteCombiner.incrBy(semaphoreName + "1", 3);
+        assertEquals(3, jedisWriteCombiner.pendingOperations());
+        jedisWriteCombiner.flush();
+        assertEquals(0, jedisWriteCombiner.pendingOperations());
+        assertEquals(5L, future1.get().longValue());
+        assertEquals(5L, future3.get().longValue());
+        assertEquals(6L, future2.get().longValue());
+        assertEquals(1, mockOfJedis.getPipelineSyncs());
+    }
+
+    @Test
+    public void testBatchSizeClosesWindow() throws Exception {
+        JedisWriteCombiner.forPool(mockOfJedis.getJedisPool(), 60_000, 5);
+        JedisSemaphore jedisSemaphore = new JedisSemaphore(mockOfJedis.getJedis(), semaphoreName, 0).
+                withWriteCombining(mockOfJedis.getJedisPool());
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(jedisSemaphore.releaseAsync(2));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(1, TimeUnit.SECONDS);
+        assertEquals(10, jedisSemaphore.availablePermits());
+        assertEquals(1, mockOfJedis.getPipelineSyncs());
+    }
+
+    @Test
+    public void testFailedSyncMayBeApplied() throws Exception {
+        JedisWriteCombiner jedisWriteCombiner = JedisWriteCombiner.forPool(mockOfJedis.getJedisPool(), 60_000, 1000);
+        JedisSemaphore jedisSemaphore = new JedisSemaphore(mockOfJedis.getJedis(), semaphoreName, 0).
+                withWriteCombining(mockOfJedis.getJedisPool());
+        CompletableFuture<Void> future = jedisSemaphore.releaseAsync();
+        mockOfJedis.failNextPipelineSync();
+        jedisWriteCombiner.flush();
+        boolean failed = false;
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            failed = true;
+        }
+        assertTrue(failed);
+        // The release has been applied anyway
+        assertEquals(1, jedisSemaphore.availablePermits());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSharedCombinerCanNotBeReconfigured() {
+        JedisWriteCombiner jedisWriteCombiner = JedisWriteCombiner.forPool(mockOfJedis.getJedisPool());
+        assertEquals(JedisWriteCombiner.DEFAULT_WINDOW_MILIS, jedisWriteCombiner.getWindowMilis());
+        JedisWriteCombiner.forPool(mockOfJedis.getJedisPool(), 50, 10);
+    }
+
+    @Test
+    public void testCombinerOfClosedPoolIsDiscarded() throws Exception {
+        JedisWriteCombiner jedisWriteCombiner = JedisWriteCombiner.forPool(mockOfJedis.getJedisPool(), 60_000, 1000);
+        new JedisSemaphore(mockOfJedis.getJedis(), semaphoreName, 0);
+        CompletableFuture<Long> future = jedisWriteCombiner.incrBy(semaphoreName, 1);
+        Mockito.when(mockOfJedis.getJedisPool().isClosed()).thenReturn(true);
+        jedisWriteCombiner.flush();
+        boolean failed = false;
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            failed = e.getCause() instanceof IllegalStateException;
+        }
+        assertTrue(failed);
+        assertEquals(0, mockOfJedis.getPipelineSyncs());
+        assertNotSame(jedisWriteCombiner, JedisWriteCombiner.forPool(mockOfJedis.getJedisPool()));
+    }
+
+}
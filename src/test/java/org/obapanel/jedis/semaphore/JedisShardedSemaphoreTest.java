@@ -0,0 +1,87 @@
+package org.obapanel.jedis.semaphore;
+
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.MockOfJedis.unitTestEnabled;
+
+public class JedisShardedSemaphoreTest {
+
+    private MockOfJedis mockOfJedis;
+    private String semaphoreName;
+
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(unitTestEnabled());
+        if (!unitTestEnabled()) return;
+        semaphoreName = "semaphore:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+        mockOfJedis = new MockOfJedis();
+    }
+
+    @After
+    public void after() {
+        if (mockOfJedis != null) mockOfJedis.clearData();
+    }
+
+    @Test
+    public void testInitialSplit() {
+        JedisShardedSemaphore jedisSemaphore = new JedisShardedSemaphore(mockOfJedis.getJedis(), semaphoreName, 10, 4);
+        assertEquals(10, jedisSemaphore.availablePermits());
+        assertEquals("3", mockOfJedis.getCurrentData().get(jedisSemaphore.getShardNames().get(0)));
+        assertEquals("3", mockOfJedis.getCurrentData().get(jedisSemaphore.getShardNames().get(1)));
+        assertEquals("2", mockOfJedis.getCurrentData().get(jedisSemaphore.getShardNames().get(2)));
+        assertEquals("2", mockOfJedis.getCurrentData().get(jedisSemaphore.getShardNames().get(3)));
+    }
+
+    @Test
+    public void testAcquireScansAndGathers() {
+        JedisShardedSemaphore jedisSemaphore = new JedisShardedSemaphore(mockOfJedis.getJedis(), semaphoreName, 4, 4);
+        assertTrue(jedisSemaphore.tryAcquire());
+        assertTrue(jedisSemaphore.tryAcquire());
+        assertTrue(jedisSemaphore.tryAcquire());
+        assertTrue(jedisSemaphore.tryAcquire());
+        assertEquals(0, jedisSemaphore.availablePermits());
+        assertFalse(jedisSemaphore.tryAcquire());
+        jedisSemaphore.release(3);
+        assertEquals(3, jedisSemaphore.availablePermits());
+        assertFalse(jedisSemaphore.tryAcquire(4));
+        assertEquals(3, jedisSemaphore.availablePermits());
+        jedisSemaphore.rebalance();
+        assertTrue(jedisSemaphore.tryAcquire(3));
+        assertEquals(0, jedisSemaphore.availablePermits());
+    }
+
+    @Test
+    public void testAffinityAndRebalance() {
+        JedisShardedSemaphore jedisSemaphore = new JedisShardedSemaphore(mockOfJedis.getJedis(), semaphoreName, 0, 3).
+                withAffinityKey("client1");
+        jedisSemaphore.release(7);
+        assertEquals(7, jedisSemaphore.availablePermits());
+        int withPermits = 0;
+        for (String shardName : jedisSemaphore.getShardNames()) {
+            if (!"0".equals(mockOfJedis.getCurrentData().get(shardName))) withPermits++;
+        }
+        assertEquals(1, withPermits);
+        jedisSemaphore.rebalance();
+        assertEquals(7, jedisSemaphore.availablePermits());
+        assertEquals("3", mockOfJedis.getCurrentData().get(jedisSemaphore.getShardNames().get(0)));
+        assertEquals("2", mockOfJedis.getCurrentData().get(jedisSemaphore.getShardNames().get(1)));
+        assertEquals("2", mockOfJedis.getCurrentData().get(jedisSemaphore.getShardNames().get(2)));
+    }
+
+    @Test
+    public void testDestroy() {
+        JedisShardedSemaphore jedisSemaphore = new JedisShardedSemaphore(mockOfJedis.getJedis(), semaphoreName, 5, 2);
+        jedisSemaphore.destroy();
+        assertNull(mockOfJedis.getCurrentData().get(jedisSemaphore.getShardNames().get(0)));
+        assertEquals(-1, jedisSemaphore.availablePermits());
+    }
+
+}
@@ -1,12 +1,18 @@
 package org.obapanel.jedis.semaphore;
 
 import org.mockito.Mockito;
+import org.obapanel.jedis.common.test.TransactionOrder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 import redis.clients.jedis.params.SetParams;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -42,7 +48,12 @@ public class MockOfJedis {
     private JedisPool jedisPool;
     private Jedis jedis;
     private Map<String, String> data = Collections.synchronizedMap(new HashMap<>());
+    private Map<String, Map<String, Long>> sortedSets = Collections.synchronizedMap(new HashMap<>());
     private Timer timer;
+    private Pipeline pipeline;
+    private List<TransactionOrder> pipelineActions = new ArrayList<>();
+    private int pipelineSyncs = 0;
+    private boolean failNextPipelineSync = false;
 
     public MockOfJedis() {
         timer = new Timer();
@@ -74,10 +85,38 @@ public class MockOfJedis {
             List<String> values = ioc.getArgument(2);
             return mockEval(script, keys, values);
         });
+        pipeline = Mockito.mock(Pipeline.class);
+        Mockito.when(jedis.pipelined()).thenReturn(pipeline);
+        Mockito.when(pipeline.incrBy(anyString(), anyLong())).thenAnswer(ioc -> {
+            String key = ioc.getArgument(0);
+            long value = ioc.getArgument(1);
+            return mockPipelineIncrBy(key, value);
+        });
+        Mockito.doAnswer(ioc -> {
+            mockPipelineSync();
+            return null;
+        }).when(pipeline).sync();
         jedisPool = Mockito.mock(JedisPool.class);
         Mockito.when(jedisPool.getResource()).thenReturn(jedis);
     }
 
+    private synchronized Response<Long> mockPipelineIncrBy(String key, long value) {
+        TransactionOrder<Long> transactionOrder = new TransactionOrder<>(() -> mockIncrBy(key, value));
+        pipelineActions.add(transactionOrder);
+        return transactionOrder.getResponse();
+    }
+
+    private synchronized void mockPipelineSync() {
+        pipelineActions.forEach(TransactionOrder::execute);
+        pipelineActions.clear();
+        pipelineSyncs++;
+        if (failNextPipelineSync) {
+            // Commands executed, but the response is lost
+            failNextPipelineSync = false;
+            throw new JedisConnectionException("Mock of lost connection");
+        }
+    }
+
     private synchronized Long mockIncrBy(String key, long value) {
         if (data.containsKey(key)) {
             long permitsAvalible = data.containsKey(key) ? Long.parseLong(data.get(key)) : -1;
@@ -97,6 +136,48 @@ public class MockOfJedis {
         Object response = null;
         if (script.equalsIgnoreCase(JedisAdvancedSemaphore.SEMAPHORE_LUA_SCRIPT)) {
             response = mockEvalSemaphoreLuaScript(keys, values);
+        } else if (script.equalsIgnoreCase(JedisNotifiedSemaphore.SEMAPHORE_RELEASE_LUA_SCRIPT)) {
+            long permitsAvalible = data.containsKey(keys.get(0)) ? Long.parseLong(data.get(keys.get(0))) : 0;
+            permitsAvalible = permitsAvalible + Long.parseLong(values.get(0));
+            data.put(keys.get(0), String.valueOf(permitsAvalible));
+            response = permitsAvalible;
+        } else if (script.equalsIgnoreCase(JedisPrefetchSemaphore.SEMAPHORE_PREFETCH_LUA_SCRIPT)) {
+            response = mockEvalPrefetchLuaScript(keys, values);
+        } else if (script.equalsIgnoreCase(JedisShardedSemaphore.SEMAPHORE_TAKE_UP_TO_LUA_SCRIPT)) {
+            response = mockEvalPrefetchLuaScript(keys, Arrays.asList("1", values.get(0)));
+        } else if (script.equalsIgnoreCase(JedisAdaptiveSemaphore.ADAPTIVE_ACQUIRE_LUA_SCRIPT)) {
+            response = mockEvalAdaptiveAcquireLuaScript(keys, values);
+        } else if (script.equalsIgnoreCase(JedisAdaptiveSemaphore.ADAPTIVE_RELEASE_LUA_SCRIPT)) {
+            response = mockEvalAdaptiveReleaseLuaScript(keys, values);
+        } else if (script.equalsIgnoreCase(JedisAdaptiveSemaphore.ADAPTIVE_IN_FLIGHT_LUA_SCRIPT)) {
+            response = (long) mockExpireInFlight(keys.get(0)).size();
+        } else if (script.equalsIgnoreCase(JedisRateLimiter.GCRA_LUA_SCRIPT)) {
+            response = mockEvalGcraLuaScript(keys, values);
+        } else if (script.equalsIgnoreCase(JedisKeyedSemaphore.KEYED_ACQUIRE_LUA_SCRIPT)) {
+            long permitsAvalible = Long.parseLong(data.containsKey(keys.get(0)) ? data.get(keys.get(0)) : values.get(0));
+            if (permitsAvalible >= Long.parseLong(values.get(1))) {
+                data.put(keys.get(0), String.valueOf(permitsAvalible - Long.parseLong(values.get(1))));
+                response = "true";
+            } else {
+                response = "false";
+            }
+        } else if (script.equalsIgnoreCase(JedisKeyedSemaphore.KEYED_RELEASE_LUA_SCRIPT)) {
+            long permitsAvalible = Long.parseLong(data.containsKey(keys.get(0)) ? data.get(keys.get(0)) : values.get(0)) +
+                    Long.parseLong(values.get(1));
+            if (permitsAvalible < Long.parseLong(values.get(0))) {
+                data.put(keys.get(0), String.valueOf(permitsAvalible));
+            } else {
+                data.remove(keys.get(0));
+            }
+            response = "true";
+        } else if (script.equalsIgnoreCase(JedisCompositeSemaphore.COMPOSITE_ACQUIRE_LUA_SCRIPT)) {
+            response = mockEvalCompositeAcquireLuaScript(keys, values);
+        } else if (script.equalsIgnoreCase(JedisCompositeSemaphore.COMPOSITE_RELEASE_LUA_SCRIPT)) {
+            for (int i = 0; i < keys.size(); i++) {
+                long permitsAvalible = data.containsKey(keys.get(i)) ? Long.parseLong(data.get(keys.get(i))) : 0;
+                data.put(keys.get(i), String.valueOf(permitsAvalible + Long.parseLong(values.get(i))));
+            }
+            response = "true";
         }
         return response;
     }
@@ -117,6 +198,88 @@ public class MockOfJedis {
     }
 
 
+    private synchronized Map<String, Long> mockExpireInFlight(String key) {
+        Map<String, Long> inFlight = sortedSets.computeIfAbsent(key, k -> new HashMap<>());
+        long now = System.currentTimeMillis();
+        inFlight.values().removeIf(expiration -> expiration <= now);
+        return inFlight;
+    }
+
+    private synchronized Object mockEvalAdaptiveAcquireLuaScript(List<String> keys, List<String> values) {
+        Map<String, Long> inFlight = mockExpireInFlight(keys.get(0));
+        if (!data.containsKey(keys.get(1))) {
+            return "false";
+        }
+        double limit = Math.floor(Double.parseDouble(data.get(keys.get(1))));
+        if (inFlight.size() + 1 >= limit) {
+            data.put(keys.get(2), "1");
+        }
+        if (inFlight.size() + 1 <= limit) {
+            inFlight.put(values.get(0), System.currentTimeMillis() + Long.parseLong(values.get(1)));
+            return "true";
+        } else {
+            return "false";
+        }
+    }
+
+    private synchronized Object mockEvalAdaptiveReleaseLuaScript(List<String> keys, List<String> values) {
+        Map<String, Long> inFlight = sortedSets.get(keys.get(0));
+        if (inFlight != null) {
+            inFlight.remove(values.get(0));
+        }
+        if (Long.parseLong(values.get(1)) > 0 && data.containsKey(keys.get(1))) {
+            double limit = Double.parseDouble(data.get(keys.get(1)));
+            if (Long.parseLong(values.get(2)) > 0 || Long.parseLong(values.get(3)) > Long.parseLong(values.get(4))) {
+                limit = limit * Double.parseDouble(values.get(5));
+            } else if (data.containsKey(keys.get(2))) {
+                limit = limit + 1;
+            }
+            data.remove(keys.get(2));
+            limit = Math.max(Double.parseDouble(values.get(6)), Math.min(Double.parseDouble(values.get(7)), limit));
+            data.put(keys.get(1), String.format(java.util.Locale.ROOT, "%.4f", limit));
+        }
+        return "true";
+    }
+
+    private synchronized Object mockEvalCompositeAcquireLuaScript(List<String> keys, List<String> values) {
+        for (int i = 0; i < keys.size(); i++) {
+            if (!data.containsKey(keys.get(i)) || Long.parseLong(data.get(keys.get(i))) < Long.parseLong(values.get(i))) {
+                return "false";
+            }
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            data.put(keys.get(i), String.valueOf(Long.parseLong(data.get(keys.get(i))) - Long.parseLong(values.get(i))));
+        }
+        return "true";
+    }
+
+    private synchronized Object mockEvalGcraLuaScript(List<String> keys, List<String> values) {
+        double now = System.currentTimeMillis();
+        double interval = Double.parseDouble(values.get(0));
+        double tat = data.containsKey(keys.get(0)) ? Math.max(Double.parseDouble(data.get(keys.get(0))), now) : now;
+        double newTat = tat + interval * Long.parseLong(values.get(2));
+        double retryAfter = newTat - interval * Long.parseLong(values.get(1)) - now;
+        if (retryAfter > 0) {
+            return (long) Math.ceil(retryAfter);
+        }
+        data.put(keys.get(0), String.format(java.util.Locale.ROOT, "%.3f", newTat));
+        return 0L;
+    }
+
+    private synchronized Object mockEvalPrefetchLuaScript(List<String> keys, List<String> values) {
+        String key = keys.get(0);
+        long minimum = Long.parseLong(values.get(0));
+        long maximum = Long.parseLong(values.get(1));
+        long permitsAvalible =  data.containsKey(key) ? Long.parseLong(data.get(key)) : -1;
+        if (!data.containsKey(key) || permitsAvalible < minimum) {
+            return 0L;
+        }
+        long taken = Math.min(permitsAvalible, maximum);
+        data.put(key, String.valueOf(permitsAvalible - taken));
+        return taken;
+    }
+
+
     private synchronized String mockSet(final String key, String value, SetParams setParams) {
         boolean insert = true;
         if (isSetParamsNX(setParams)) {
@@ -135,7 +298,9 @@ public class MockOfJedis {
     }
 
     private synchronized Long mockDel(String key) {
-        if (data.containsKey(key)) {
+        if (sortedSets.remove(key) != null) {
+            return 1L;
+        } else if (data.containsKey(key)) {
             data.remove(key);
             return 1L;
         } else {
@@ -153,6 +318,16 @@ public class MockOfJedis {
 
     public synchronized void clearData(){
         data.clear();
+        sortedSets.clear();
+        pipelineActions.clear();
+    }
+
+    public synchronized int getPipelineSyncs() {
+        return pipelineSyncs;
+    }
+
+    public synchronized void failNextPipelineSync() {
+        failNextPipelineSync = true;
     }
 
 
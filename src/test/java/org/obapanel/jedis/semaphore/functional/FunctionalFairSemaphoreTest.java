@@ -0,0 +1,142 @@
+package org.obapanel.jedis.semaphore.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.semaphore.JedisFairSemaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.functional.JedisTestFactory.functionalTestEnabled;
+
+/**
+ * Test to see that JedisFairSemaphore gives the permits in order
+ */
+public class FunctionalFairSemaphoreTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FunctionalFairSemaphoreTest.class);
+
+    private JedisPool jedisPool;
+    private String semaphoreName;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        jedisPool = JedisTestFactory.createJedisPool();
+        semaphoreName = "semaphore:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+    }
+
+    @After
+    public void after() {
+        if (!functionalTestEnabled()) return;
+        if (jedisPool != null) {
+            new JedisFairSemaphore(jedisPool, semaphoreName, 0).destroy();
+            jedisPool.close();
+        }
+    }
+
+    @Test
+    public void testBigWaiterIsNotStarved() throws InterruptedException {
+        JedisFairSemaphore jedisSemaphore = new JedisFairSemaphore(jedisPool, semaphoreName, 0);
+        AtomicBoolean bigAcquired = new AtomicBoolean(false);
+        AtomicBoolean smallAcquired = new AtomicBoolean(false);
+        Thread big = new Thread(() -> {
+            try {
+                new JedisFairSemaphore(jedisPool, semaphoreName, 0).acquire(5);
+                bigAcquired.set(true);
+            } catch (InterruptedException e) {
+                LOG.debug("interrupted", e);
+            }
+        });
+        big.start();
+        Thread.sleep(200);
+        Thread small = new Thread(() -> {
+            try {
+                new JedisFairSemaphore(jedisPool, semaphoreName, 0).acquire(1);
+                smallAcquired.set(true);
+            } catch (InterruptedException e) {
+                LOG.debug("interrupted", e);
+            }
+        });
+        small.start();
+        Thread.sleep(200);
+        assertEquals(2, jedisSemaphore.getQueueLength());
+        jedisSemaphore.release(1);
+        Thread.sleep(300);
+        assertFalse(smallAcquired.get());
+        assertFalse(jedisSemaphore.tryAcquire());
+        jedisSemaphore.release(4);
+        big.join(1000);
+        assertTrue(bigAcquired.get());
+        assertFalse(smallAcquired.get());
+        jedisSemaphore.release(1);
+        small.join(1000);
+        assertTrue(smallAcquired.get());
+        assertEquals(0, jedisSemaphore.getQueueLength());
+    }
+
+    @Test
+    public void testTimeoutLeavesQueue() throws InterruptedException {
+        JedisFairSemaphore jedisSemaphore = new JedisFairSemaphore(jedisPool, semaphoreName, 1);
+        assertFalse(jedisSemaphore.tryAcquire(2, 1, TimeUnit.SECONDS));
+        assertEquals(0, jedisSemaphore.getQueueLength());
+        assertTrue(jedisSemaphore.tryAcquire());
+    }
+
+    @Test
+    public void testShortTimeoutReturnsOnTime() throws InterruptedException {
+        JedisFairSemaphore jedisSemaphore = new JedisFairSemaphore(jedisPool, semaphoreName, 0);
+        long start = System.currentTimeMillis();
+        assertFalse(jedisSemaphore.tryAcquire(1, 100, TimeUnit.MILLISECONDS));
+        long elapsed = System.currentTimeMillis() - start;
+        LOG.debug("testShortTimeoutReturnsOnTime elapsed {}", elapsed);
+        assertTrue(elapsed >= 100);
+        assertTrue(elapsed < 500);
+        assertEquals(0, jedisSemaphore.getQueueLength());
+    }
+
+    @Test
+    public void testMoreWaitersThanPoolConnections() throws InterruptedException {
+        JedisPool smallJedisPool = JedisTestFactory.createJedisPool(3);
+        try {
+            JedisFairSemaphore jedisSemaphore = new JedisFairSemaphore(smallJedisPool, semaphoreName, 0);
+            AtomicInteger acquired = new AtomicInteger(0);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                threads.add(new Thread(() -> {
+                    try {
+                        new JedisFairSemaphore(smallJedisPool, semaphoreName, 0).acquire();
+                        acquired.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        LOG.debug("interrupted", e);
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            Thread.sleep(500);
+            assertEquals(10, jedisSemaphore.getQueueLength());
+            for (int i = 0; i < 10; i++) {
+                jedisSemaphore.release();
+            }
+            for (Thread thread : threads) {
+                thread.join(5000);
+            }
+            assertEquals(10, acquired.get());
+            assertEquals(0, jedisSemaphore.getQueueLength());
+        } finally {
+            smallJedisPool.close();
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.obapanel.jedis.semaphore.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.semaphore.JedisLeasedSemaphore;
+import redis.clients.jedis.Jedis;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.functional.JedisTestFactory.functionalTestEnabled;
+
+/**
+ * Test to see that JedisLeasedSemaphore recovers the permits of expired leases
+ */
+public class FunctionalLeasedSemaphoreTest {
+
+    private Jedis jedis;
+    private String semaphoreName;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        jedis = JedisTestFactory.createJedisClient();
+        semaphoreName = "semaphore:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+    }
+
+    @After
+    public void after() {
+        if (!functionalTestEnabled()) return;
+        if (jedis != null) {
+            new JedisLeasedSemaphore(jedis, semaphoreName, 0, 1, TimeUnit.SECONDS).destroy();
+            jedis.close();
+        }
+    }
+
+    @Test
+    public void testAcquireAndRelease() {
+        JedisLeasedSemaphore jedisSemaphore = new JedisLeasedSemaphore(jedis, semaphoreName, 3, 10, TimeUnit.SECONDS);
+        String token1 = jedisSemaphore.tryAcquire(2);
+        assertNotNull(token1);
+        assertEquals(1, jedisSemaphore.availablePermits());
+        assertNull(jedisSemaphore.tryAcquire(2));
+        assertTrue(jedisSemaphore.release(token1));
+        assertFalse(jedisSemaphore.release(token1));
+        assertEquals(3, jedisSemaphore.availablePermits());
+    }
+
+    @Test
+    public void testExpiredLeaseIsReclaimed() throws InterruptedException {
+        JedisLeasedSemaphore crashedSemaphore = new JedisLeasedSemaphore(jedis, semaphoreName, 2, 500, TimeUnit.MILLISECONDS);
+        assertNotNull(crashedSemaphore.tryAcquire(2));
+        JedisLeasedSemaphore otherSemaphore = new JedisLeasedSemaphore(jedis, semaphoreName, 2, 500, TimeUnit.MILLISECONDS);
+        assertNull(otherSemaphore.tryAcquire());
+        String token = otherSemaphore.tryAcquire(1, 2, TimeUnit.SECONDS);
+        assertNotNull(token);
+        assertEquals(1, otherSemaphore.availablePermits());
+        List<String> lost = crashedSemaphore.renewAll();
+        assertEquals(1, lost.size());
+        assertTrue(crashedSemaphore.getHeldTokens().isEmpty());
+    }
+
+    @Test
+    public void testRenewKeepsLease() throws InterruptedException {
+        JedisLeasedSemaphore jedisSemaphore = new JedisLeasedSemaphore(jedis, semaphoreName, 1, 500, TimeUnit.MILLISECONDS);
+        String token = jedisSemaphore.tryAcquire();
+        assertNotNull(token);
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(300);
+            assertTrue(jedisSemaphore.renewAll().isEmpty());
+        }
+        assertEquals(0, jedisSemaphore.availablePermits());
+        assertTrue(jedisSemaphore.renew(token));
+        assertTrue(jedisSemaphore.release(token));
+        assertEquals(1, jedisSemaphore.availablePermits());
+    }
+
+}
@@ -0,0 +1,94 @@
+package org.obapanel.jedis.semaphore.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.semaphore.JedisNotifiedSemaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.functional.JedisTestFactory.functionalTestEnabled;
+
+/**
+ * Test to see that JedisNotifiedSemaphore wakes up with the release messages
+ */
+public class FunctionalNotifiedSemaphoreWaitingTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FunctionalNotifiedSemaphoreWaitingTest.class);
+
+    private JedisPool jedisPool;
+    private String semaphoreName;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        jedisPool = JedisTestFactory.createJedisPool();
+        semaphoreName = "semaphore:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+    }
+
+    @After
+    public void after() {
+        if (!functionalTestEnabled()) return;
+        if (jedisPool != null) {
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.del(semaphoreName);
+            }
+            jedisPool.close();
+        }
+    }
+
+    @Test
+    public void testAcquireWokenByRelease() throws InterruptedException {
+        AtomicBoolean acquired = new AtomicBoolean(false);
+        AtomicLong acquiredMoment = new AtomicLong(0L);
+        JedisNotifiedSemaphore jedisSemaphore1 = new JedisNotifiedSemaphore(jedisPool, semaphoreName, 0).
+                withSafetyWaitMilis(5000);
+        Thread t1 = new Thread(() -> {
+            try {
+                jedisSemaphore1.acquire(1);
+                acquiredMoment.set(System.currentTimeMillis());
+                acquired.set(true);
+            } catch (InterruptedException e) {
+                LOG.debug("interrupted", e);
+            }
+        });
+        t1.setName("FunctionalNotifiedSemaphoreWaitingTest_THREAD1");
+        t1.start();
+        Thread.sleep(1000);
+        JedisNotifiedSemaphore jedisSemaphore2 = new JedisNotifiedSemaphore(jedisPool, semaphoreName, 0);
+        long releaseMoment = System.currentTimeMillis();
+        jedisSemaphore2.release();
+        t1.join(5000);
+        assertTrue(acquired.get());
+        // Woken by the message, not by the safety wait
+        assertTrue(acquiredMoment.get() - releaseMoment < 1000);
+        jedisSemaphore1.close();
+    }
+
+    @Test
+    public void testTryAcquireWithTimeout() throws InterruptedException {
+        JedisNotifiedSemaphore jedisSemaphore1 = new JedisNotifiedSemaphore(jedisPool, semaphoreName, 0);
+        assertFalse(jedisSemaphore1.tryAcquire(1, 500, TimeUnit.MILLISECONDS));
+        Thread t2 = new Thread(() -> {
+            try {
+                Thread.sleep(500);
+                new JedisNotifiedSemaphore(jedisPool, semaphoreName, 0).release(2);
+            } catch (InterruptedException e) {
+                LOG.debug("interrupted", e);
+            }
+        });
+        t2.start();
+        assertTrue(jedisSemaphore1.tryAcquire(2, 2500, TimeUnit.MILLISECONDS));
+        jedisSemaphore1.close();
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.obapanel.jedis.semaphore.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.common.JedisWriteCombiner;
+import org.obapanel.jedis.semaphore.JedisSemaphore;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.functional.JedisTestFactory.functionalTestEnabled;
+
+
+public class FunctionalSemaphoreWriteCombiningTest {
+
+    private Jedis jedis;
+    private JedisPool jedisPool;
+    private String semaphoreName;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        jedis = JedisTestFactory.createJedisClient();
+        jedisPool = JedisTestFactory.createJedisPool();
+        semaphoreName = "semaphore:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+    }
+
+    @After
+    public void after() {
+        if (!functionalTestEnabled()) return;
+        if (jedisPool != null) {
+            JedisWriteCombiner.forPool(jedisPool).flush();
+            jedisPool.close();
+        }
+        if (jedis != null) {
+            jedis.del(semaphoreName);
+            jedis.close();
+        }
+    }
+
+    @Test
+    public void testReleaseAsync() throws Exception {
+        JedisSemaphore jedisSemaphore = new JedisSemaphore(jedis, semaphoreName, 0).
+                withWriteCombining(jedisPool);
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread t = new Thread(() -> {
+                for (int j = 0; j < 50; j++) {
+                    CompletableFuture<Void> future = jedisSemaphore.releaseAsync();
+                    synchronized (futures) {
+                        futures.add(future);
+                    }
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(1, TimeUnit.SECONDS);
+        assertEquals(400, jedisSemaphore.availablePermits());
+        assertTrue(jedisSemaphore.tryAcquire(400));
+    }
+
+    @Test
+    public void testCombinedIncrements() throws Exception {
+        // The pool is created for this test, so the combiner is created with this configuration
+        JedisWriteCombiner jedisWriteCombiner = JedisWriteCombiner.forPool(jedisPool, 50, 1000);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            futures.add(jedisWriteCombiner.incrBy(semaphoreName, 2));
+        }
+        Set<Long> values = new HashSet<>();
+        for (CompletableFuture<Long> future : futures) {
+            values.add(future.get(1, TimeUnit.SECONDS));
+        }
+        // All sent with only one INCRBY
+        assertEquals(1, values.size());
+        assertEquals(200L, values.iterator().next().longValue());
+        assertEquals(0, jedisWriteCombiner.pendingOperations());
+    }
+
+}
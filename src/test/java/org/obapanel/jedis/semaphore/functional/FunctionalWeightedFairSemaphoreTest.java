@@ -0,0 +1,141 @@
+package org.obapanel.jedis.semaphore.functional;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.obapanel.jedis.semaphore.JedisWeightedFairSemaphore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.obapanel.jedis.semaphore.functional.JedisTestFactory.functionalTestEnabled;
+
+/**
+ * Test to see that JedisWeightedFairSemaphore shares the permits by the weight of the tenants
+ */
+public class FunctionalWeightedFairSemaphoreTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FunctionalWeightedFairSemaphoreTest.class);
+
+    private JedisPool jedisPool;
+    private String semaphoreName;
+
+    @Before
+    public void before() {
+        org.junit.Assume.assumeTrue(functionalTestEnabled());
+        if (!functionalTestEnabled()) return;
+        jedisPool = JedisTestFactory.createJedisPool();
+        semaphoreName = "semaphore:" + this.getClass().getName() + ":" + System.currentTimeMillis();
+    }
+
+    @After
+    public void after() {
+        if (!functionalTestEnabled()) return;
+        if (jedisPool != null) {
+            new JedisWeightedFairSemaphore(jedisPool, semaphoreName, 0, "none", 1).destroy();
+            jedisPool.close();
+        }
+    }
+
+    @Test
+    public void testPermitsByWeight() throws InterruptedException {
+        JedisWeightedFairSemaphore jedisSemaphore = new JedisWeightedFairSemaphore(jedisPool, semaphoreName, 0, "other", 1);
+        AtomicInteger acquiredA = new AtomicInteger(0);
+        AtomicInteger acquiredB = new AtomicInteger(0);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(waiter("tenantA", 3, acquiredA));
+            threads.add(waiter("tenantB", 1, acquiredB));
+        }
+        threads.forEach(Thread::start);
+        Thread.sleep(500);
+        for (int i = 0; i < 8; i++) {
+            jedisSemaphore.release(1);
+            Thread.sleep(50);
+        }
+        Thread.sleep(500);
+        LOG.debug("acquired tenantA {} tenantB {}", acquiredA.get(), acquiredB.get());
+        assertEquals(8, acquiredA.get() + acquiredB.get());
+        assertTrue(acquiredA.get() >= 5);
+        assertTrue(acquiredB.get() >= 1);
+        threads.forEach(Thread::interrupt);
+        for (Thread thread : threads) {
+            thread.join(3000);
+        }
+        assertEquals(0, jedisSemaphore.availablePermits());
+    }
+
+    @Test
+    public void testTimeoutLeavesQueue() throws InterruptedException {
+        JedisWeightedFairSemaphore jedisSemaphore = new JedisWeightedFairSemaphore(jedisPool, semaphoreName, 1, "tenantA", 1);
+        assertFalse(jedisSemaphore.tryAcquire(2, 1, TimeUnit.SECONDS));
+        assertEquals(0, jedisSemaphore.getQueueLength());
+        assertTrue(jedisSemaphore.tryAcquire());
+        assertFalse(jedisSemaphore.tryAcquire());
+    }
+
+    @Test
+    public void testShortTimeoutReturnsOnTime() throws InterruptedException {
+        JedisWeightedFairSemaphore jedisSemaphore = new JedisWeightedFairSemaphore(jedisPool, semaphoreName, 0, "tenantA", 1);
+        long start = System.currentTimeMillis();
+        assertFalse(jedisSemaphore.tryAcquire(1, 100, TimeUnit.MILLISECONDS));
+        long elapsed = System.currentTimeMillis() - start;
+        LOG.debug("testShortTimeoutReturnsOnTime elapsed {}", elapsed);
+        assertTrue(elapsed >= 100);
+        assertTrue(elapsed < 500);
+        assertEquals(0, jedisSemaphore.getQueueLength());
+    }
+
+    @Test
+    public void testMoreWaitersThanPoolConnections() throws InterruptedException {
+        JedisPool smallJedisPool = JedisTestFactory.createJedisPool(3);
+        try {
+            JedisWeightedFairSemaphore jedisSemaphore = new JedisWeightedFairSemaphore(smallJedisPool, semaphoreName, 0, "other", 1);
+            AtomicInteger acquired = new AtomicInteger(0);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                String tenant = i % 2 == 0 ? "tenantA" : "tenantB";
+                threads.add(new Thread(() -> {
+                    try {
+                        new JedisWeightedFairSemaphore(smallJedisPool, semaphoreName, 0, tenant, 1).acquire();
+                        acquired.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        LOG.debug("interrupted", e);
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            Thread.sleep(500);
+            for (int i = 0; i < 10; i++) {
+                jedisSemaphore.release();
+            }
+            for (Thread thread : threads) {
+                thread.join(5000);
+            }
+            assertEquals(10, acquired.get());
+            assertEquals(0, jedisSemaphore.availablePermits());
+        } finally {
+            smallJedisPool.close();
+        }
+    }
+
+    private Thread waiter(String tenant, int weight, AtomicInteger acquired) {
+        return new Thread(() -> {
+            try {
+                new JedisWeightedFairSemaphore(jedisPool, semaphoreName, 0, tenant, weight).acquire();
+                acquired.incrementAndGet();
+            } catch (InterruptedException e) {
+                LOG.debug("interrupted", e);
+            }
+        });
+    }
+
+}
@@ -45,10 +45,14 @@ public class JedisTestFactory {
     }
 
     static JedisPool createJedisPool() {
+        return createJedisPool(128);
+    }
+
+    static JedisPool createJedisPool(int maxTotal) {
         JedisPoolConfig jedisPoolConfig = new JedisPoolConfig();
-        jedisPoolConfig.setMaxTotal(128);
-        jedisPoolConfig.setMaxIdle(128);
-        jedisPoolConfig.setMinIdle(16);
+        jedisPoolConfig.setMaxTotal(maxTotal);
+        jedisPoolConfig.setMaxIdle(maxTotal);
+        jedisPoolConfig.setMinIdle(Math.min(16, maxTotal));
         jedisPoolConfig.setTestOnBorrow(true);
         jedisPoolConfig.setTestOnReturn(true);
         jedisPoolConfig.setTestWhileIdle(true);